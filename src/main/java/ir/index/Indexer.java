@@ -7,10 +7,8 @@ import ir.util.FileLoader;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Implementazione robusta dell'indicizzazione con gestione migliorata degli errori.
@@ -22,7 +20,8 @@ public class Indexer {
     private PorterStemmer stemmer;
     private boolean useStopList;
     private boolean useStemming;
-    private Pattern tokenPattern;
+    private TermFrequencyAccumulator termFrequencies;
+    private char[] tokenBuffer;
     
     /**
      * Costruttore dell'indicizzatore.
@@ -34,10 +33,8 @@ public class Indexer {
         stopList = new StopList(); // Initialize to avoid NullPointerException
         useStopList = false;
         useStemming = false;
-        
-        // Pattern per tokenizzare il testo (solo parole, no numeri o simboli)
-        // Using \p{L}+ for Unicode letter support
-        tokenPattern = Pattern.compile("[\\p{L}]+");
+        termFrequencies = new TermFrequencyAccumulator();
+        tokenBuffer = new char[64];
     }
     
     /**
@@ -92,7 +89,7 @@ public class Indexer {
         }
         
         // Converti in minuscolo
-        term = term.toLowerCase();
+        term = TermNormalizer.toLowerCase(term);
         
         // Verifica se è una stop word
         if (useStopList && stopList != null && stopList.isStopWord(term)) {
@@ -125,6 +122,9 @@ public class Indexer {
         
         System.out.println("Indicizzazione documento " + doc.getId() + ": " + doc.getName());
         
+        // Il documento fa parte della collezione anche se è vuoto (rilevante per le negazioni)
+        dictionary.addDocument(doc.getId());
+        
         // Controllo se il contenuto del documento è null
         String content = doc.getContent();
         if (content == null || content.isEmpty()) {
@@ -132,44 +132,64 @@ public class Indexer {
             return;
         }
         
-        // Mappa temporanea per contare le occorrenze dei termini nel documento
-        Map<String, Integer> termFrequencies = new HashMap<>();
-        
-        // Tokenizzazione del contenuto del documento
-        java.util.regex.Matcher matcher = tokenPattern.matcher(content);
-        
-        // Conteggio delle frequenze dei termini
-        while (matcher.find()) {
-            String term = matcher.group();
-            
-            // Elabora il termine
-            term = processTerm(term);
-            
-            // Salta i termini nulli (stop words)
-            if (term == null || term.isEmpty()) {
+        // Tokenizzazione del contenuto: sequenze massimali di lettere Unicode, convertite
+        // in minuscolo direttamente nel buffer riusato tra un token e l'altro
+        int length = content.length();
+        int position = 0;
+        while (position < length) {
+            int codePoint = content.codePointAt(position);
+            if (!Character.isLetter(codePoint)) {
+                position += Character.charCount(codePoint);
                 continue;
             }
-            
-            // Incrementa la frequenza del termine
-            termFrequencies.put(term, termFrequencies.getOrDefault(term, 0) + 1);
+            int tokenLength = 0;
+            while (position < length) {
+                codePoint = content.codePointAt(position);
+                if (!Character.isLetter(codePoint)) {
+                    break;
+                }
+                if (tokenLength + 2 > tokenBuffer.length) {
+                    tokenBuffer = Arrays.copyOf(tokenBuffer, tokenBuffer.length * 2);
+                }
+                tokenLength += Character.toChars(TermNormalizer.toLowerCase(codePoint), tokenBuffer, tokenLength);
+                position += Character.charCount(codePoint);
+            }
+            addToken(tokenLength);
         }
         
-        // Aggiungi i termini al dizionario
-        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
-            String term = entry.getKey();
-            int frequency = entry.getValue();
-            
-            try {
-                // Aggiunge il termine al dizionario
-                dictionary.addTerm(term);
-                
-                // Aggiungi il posting ripetutamente in base alla frequenza
-                for (int i = 0; i < frequency; i++) {
-                    dictionary.addPosting(term, doc.getId());
-                }
-            } catch (Exception e) {
-                System.err.println("Errore nell'aggiungere il termine '" + term + "' al dizionario: " + e.getMessage());
+        // Aggiungi i termini al dizionario con un solo posting per termine
+        try {
+            for (int i = 0; i < termFrequencies.size(); i++) {
+                dictionary.addPostings(termFrequencies.getTermId(i), doc.getId(), termFrequencies.getFrequency(i));
             }
+        } finally {
+            termFrequencies.clear();
+        }
+    }
+    
+    /**
+     * Elabora il token presente nel buffer e ne conta l'occorrenza, senza allocare stringhe
+     * per i termini già presenti nel dizionario.
+     * 
+     * @param tokenLength La lunghezza del token nel buffer
+     */
+    private void addToken(int tokenLength) {
+        // Verifica se è una stop word
+        if (useStopList && stopList != null && stopList.isStopWord(tokenBuffer, 0, tokenLength)) {
+            return;
+        }
+        
+        char[] term = tokenBuffer;
+        int termLength = tokenLength;
+        
+        // Applica lo stemming
+        if (useStemming && tokenLength > 1) { // Avoid stemming very short terms
+            termLength = stemmer.stem(tokenBuffer, 0, tokenLength);
+            term = stemmer.getResultBuffer();
+        }
+        
+        if (termLength > 0) {
+            termFrequencies.add(dictionary.addTerm(term, 0, termLength));
         }
     }
     
@@ -199,6 +219,9 @@ public class Indexer {
             }
         }
         
+        // Precalcola le norme dei documenti per la ricerca classificata
+        dictionary.getDocumentNorms();
+        
         long endTime = System.currentTimeMillis();
         
         System.out.println("Indicizzazione completata in " + (endTime - startTime) / 1000.0 + " secondi.");
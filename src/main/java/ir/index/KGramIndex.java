@@ -0,0 +1,264 @@
+package ir.index;
+
+import ir.model.Dictionary;
+import ir.model.FrozenDictionary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indice dei k-grammi di caratteri dei termini del dizionario, usato per le query
+ * con caratteri jolly. Ogni termine viene racchiuso tra i delimitatori '$' e scomposto
+ * nei suoi k-grammi; per ogni k-gramma l'indice conserva la lista ordinata degli ID
+ * dei termini che lo contengono. Gli ID sono le posizioni dei termini nell'ordine del
+ * dizionario; se il dizionario è congelato coincidono con gli ID del
+ * {@link FrozenDictionary} e i testi non vengono duplicati.
+ */
+public class KGramIndex {
+    /**
+     * Lunghezza predefinita dei k-grammi.
+     */
+    public static final int DEFAULT_K = 3;
+
+    private static final char BOUNDARY = '$';
+    private static final int[] EMPTY = new int[0];
+
+    private final int k;
+    private final Map<String, int[]> grams;
+    private final FrozenDictionary frozen;
+    private final String[] vocabulary;
+    private final int[] documentFrequencies;
+    private final int termCount;
+
+    private KGramIndex(int k, Map<String, int[]> grams, FrozenDictionary frozen, String[] vocabulary,
+                       int[] documentFrequencies, int termCount) {
+        this.k = k;
+        this.grams = grams;
+        this.frozen = frozen;
+        this.vocabulary = vocabulary;
+        this.documentFrequencies = documentFrequencies;
+        this.termCount = termCount;
+    }
+
+    /**
+     * Costruisce l'indice dei k-grammi di tutti i termini del dizionario.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @param k La lunghezza dei k-grammi
+     * @return L'indice dei k-grammi
+     * @throws IllegalArgumentException Se k non è almeno 2
+     */
+    public static KGramIndex build(Dictionary dictionary, int k) {
+        if (k < 2) {
+            throw new IllegalArgumentException("La lunghezza dei k-grammi deve essere almeno 2: " + k);
+        }
+
+        FrozenDictionary frozen = dictionary.getFrozenDictionary();
+        String[] vocabulary = null;
+        int[] documentFrequencies = null;
+        if (frozen == null) {
+            vocabulary = dictionary.getTerms().toArray(new String[0]);
+            documentFrequencies = new int[vocabulary.length];
+            for (int i = 0; i < vocabulary.length; i++) {
+                documentFrequencies[i] = dictionary.getTerm(vocabulary[i]).getDocumentFrequency();
+            }
+        }
+        int termCount = dictionary.size();
+
+        // Liste in costruzione: gli ID vengono aggiunti in ordine crescente
+        Map<String, GramList> building = new HashMap<>();
+        int termId = 0;
+        for (String text : dictionary.getTerms()) {
+            String padded = BOUNDARY + text + BOUNDARY;
+            for (int i = 0; i + k <= padded.length(); i++) {
+                building.computeIfAbsent(padded.substring(i, i + k), gram -> new GramList()).add(termId);
+            }
+            termId++;
+        }
+
+        Map<String, int[]> grams = new HashMap<>();
+        for (Map.Entry<String, GramList> entry : building.entrySet()) {
+            grams.put(entry.getKey(), Arrays.copyOf(entry.getValue().ids, entry.getValue().size));
+        }
+        return new KGramIndex(k, grams, frozen, vocabulary, documentFrequencies, termCount);
+    }
+
+    /**
+     * Restituisce gli ID dei termini che possono soddisfare un'espressione con caratteri
+     * jolly '*': sono i termini che contengono tutti i k-grammi dei frammenti fissi
+     * dell'espressione. I candidati vanno poi verificati con {@link #matches(String, String)}.
+     *
+     * @param pattern L'espressione con caratteri jolly
+     * @return Gli ID dei candidati in ordine crescente
+     */
+    public int[] candidates(String pattern) {
+        String[] pieces = pattern.split("\\*", -1);
+        int[] result = null;
+
+        for (int p = 0; p < pieces.length; p++) {
+            String piece = pieces[p];
+            if (p == 0) {
+                piece = BOUNDARY + piece;
+            }
+            if (p == pieces.length - 1) {
+                piece = piece + BOUNDARY;
+            }
+            for (int i = 0; i + k <= piece.length(); i++) {
+                int[] ids = grams.get(piece.substring(i, i + k));
+                if (ids == null) {
+                    return EMPTY;
+                }
+                result = result == null ? ids : intersect(result, ids);
+                if (result.length == 0) {
+                    return EMPTY;
+                }
+            }
+        }
+
+        if (result == null) {
+            // Nessun frammento abbastanza lungo: tutti i termini sono candidati
+            result = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                result[i] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce gli ID dei termini che soddisfano un'espressione con caratteri jolly,
+     * verificando i candidati prodotti dai k-grammi.
+     *
+     * @param pattern L'espressione con caratteri jolly
+     * @return Gli ID dei termini in ordine crescente
+     */
+    public int[] expand(String pattern) {
+        int[] candidates = candidates(pattern);
+        if (pattern.replace("*", "").isEmpty()) {
+            // Solo caratteri jolly: tutti i termini soddisfano l'espressione
+            return candidates;
+        }
+
+        int[] result = new int[candidates.length];
+        int count = 0;
+        if (frozen != null) {
+            // I candidati sono ordinati: i blocchi del dizionario congelato vengono decodificati una volta
+            String[] texts = frozen.getTexts(candidates);
+            for (int i = 0; i < candidates.length; i++) {
+                if (matches(pattern, texts[i])) {
+                    result[count++] = candidates[i];
+                }
+            }
+        } else {
+            for (int termId : candidates) {
+                if (matches(pattern, vocabulary[termId])) {
+                    result[count++] = termId;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Restituisce il testo di un termine dato il suo ID.
+     *
+     * @param termId L'ID del termine
+     * @return Il testo del termine
+     */
+    public String getText(int termId) {
+        return frozen != null ? frozen.getText(termId) : vocabulary[termId];
+    }
+
+    /**
+     * Restituisce la frequenza dei documenti di un termine dato il suo ID.
+     *
+     * @param termId L'ID del termine
+     * @return Il numero di documenti che contengono il termine
+     */
+    public int getDocumentFrequency(int termId) {
+        return frozen != null ? frozen.getDocumentFrequency(termId) : documentFrequencies[termId];
+    }
+
+    /**
+     * Restituisce il numero di termini indicizzati.
+     *
+     * @return Il numero di termini
+     */
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * Verifica se un termine soddisfa un'espressione in cui '*' corrisponde a qualsiasi
+     * sequenza di caratteri, anche vuota.
+     *
+     * @param pattern L'espressione con caratteri jolly
+     * @param text Il termine
+     * @return true se il termine soddisfa l'espressione
+     */
+    public static boolean matches(String pattern, String text) {
+        int p = 0;
+        int t = 0;
+        int star = -1;
+        int backtrack = 0;
+
+        while (t < text.length()) {
+            if (p < pattern.length() && pattern.charAt(p) != '*' && pattern.charAt(p) == text.charAt(t)) {
+                p++;
+                t++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                // Ricorda l'ultimo '*' e prova prima a fargli corrispondere la sequenza vuota
+                star = p++;
+                backtrack = t;
+            } else if (star >= 0) {
+                p = star + 1;
+                t = ++backtrack;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Lista di ID in costruzione per un k-gramma.
+     */
+    private static class GramList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int termId) {
+            // Un k-gramma ripetuto nello stesso termine viene registrato una sola volta
+            if (size > 0 && ids[size - 1] == termId) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = termId;
+        }
+    }
+}
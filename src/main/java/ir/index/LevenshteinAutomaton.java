@@ -0,0 +1,91 @@
+package ir.index;
+
+/**
+ * Automa di Levenshtein per una parola e una distanza massima di modifica.
+ * Lo stato dopo aver letto un prefisso è la riga della matrice di programmazione dinamica
+ * delle distanze tra il prefisso e i prefissi della parola, limitata a distanza massima + 1.
+ * Uno stato è morto quando tutte le distanze superano il massimo: nessuna estensione del
+ * prefisso può più essere accettata, quindi chi scorre un dizionario ordinato può saltare
+ * tutti i termini con quel prefisso.
+ */
+public class LevenshteinAutomaton {
+    private final String word;
+    private final int maxEdits;
+
+    /**
+     * Costruttore per un nuovo automa.
+     *
+     * @param word La parola di riferimento
+     * @param maxEdits La distanza massima di modifica (1 o 2)
+     * @throws IllegalArgumentException Se la distanza non è 1 o 2
+     */
+    public LevenshteinAutomaton(String word, int maxEdits) {
+        if (maxEdits < 1 || maxEdits > 2) {
+            throw new IllegalArgumentException("La distanza di modifica deve essere 1 o 2: " + maxEdits);
+        }
+        this.word = word;
+        this.maxEdits = maxEdits;
+    }
+
+    /**
+     * Restituisce lo stato iniziale, corrispondente al prefisso vuoto.
+     *
+     * @return Lo stato iniziale
+     */
+    public int[] start() {
+        int[] state = new int[word.length() + 1];
+        for (int j = 0; j < state.length; j++) {
+            state[j] = Math.min(j, maxEdits + 1);
+        }
+        return state;
+    }
+
+    /**
+     * Calcola lo stato successivo dopo aver letto un carattere.
+     *
+     * @param state Lo stato corrente
+     * @param c Il carattere letto
+     * @param next L'array in cui scrivere il nuovo stato, della stessa lunghezza
+     * @return true se il nuovo stato è ancora vivo
+     */
+    public boolean step(int[] state, char c, int[] next) {
+        int limit = maxEdits + 1;
+        next[0] = Math.min(state[0] + 1, limit);
+        int min = next[0];
+        for (int j = 1; j < next.length; j++) {
+            int substitution = state[j - 1] + (word.charAt(j - 1) == c ? 0 : 1);
+            int value = Math.min(Math.min(state[j] + 1, next[j - 1] + 1), substitution);
+            next[j] = Math.min(value, limit);
+            min = Math.min(min, next[j]);
+        }
+        return min <= maxEdits;
+    }
+
+    /**
+     * Verifica se uno stato è di accettazione.
+     *
+     * @param state Lo stato
+     * @return true se il prefisso letto è entro la distanza massima dalla parola
+     */
+    public boolean isAccepting(int[] state) {
+        return state[state.length - 1] <= maxEdits;
+    }
+
+    /**
+     * Restituisce la distanza tra il prefisso letto e la parola, se accettato.
+     *
+     * @param state Lo stato
+     * @return La distanza di modifica
+     */
+    public int distance(int[] state) {
+        return state[state.length - 1];
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+}
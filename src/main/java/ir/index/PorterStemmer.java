@@ -72,6 +72,29 @@ public class PorterStemmer {
         return new String(b, 0, j);
     }
     
+    /**
+     * Esegue lo stemming di una parola letta da un buffer di caratteri senza allocare
+     * stringhe. Il risultato occupa i primi caratteri di {@link #getResultBuffer()}.
+     * 
+     * @return La lunghezza del risultato
+     */
+    public int stem(char[] buffer, int offset, int length) {
+        i = 0;
+        j = 0;
+        for (int n = 0; n < length; n++) {
+            add(buffer[offset + n]);
+        }
+        stem();
+        return j;
+    }
+    
+    /**
+     * Restituisce il buffer interno che contiene il risultato dell'ultimo stemming.
+     */
+    public char[] getResultBuffer() {
+        return b;
+    }
+    
     /**
      * Verifica se il carattere nella stringa di lavoro è una consonante.
      */
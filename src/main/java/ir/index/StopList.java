@@ -1,5 +1,7 @@
 package ir.index;
 
+import ir.model.TermHash;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
@@ -11,6 +13,7 @@ import java.util.Set;
  */
 public class StopList {
     private Set<String> stopWords;
+    private TermHash index;
 
     /**
      * Costruttore per una nuova stop list vuota.
@@ -42,10 +45,11 @@ public class StopList {
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
                 if (!line.isEmpty()) {
-                    stopWords.add(line.toLowerCase());
+                    stopWords.add(TermNormalizer.toLowerCase(line));
                 }
             }
         }
+        index = null;
     }
 
     /**
@@ -54,7 +58,8 @@ public class StopList {
      * @param word La parola da aggiungere
      */
     public void addStopWord(String word) {
-        stopWords.add(word.toLowerCase());
+        stopWords.add(TermNormalizer.toLowerCase(word));
+        index = null;
     }
 
     /**
@@ -63,7 +68,8 @@ public class StopList {
      * @param word La parola da rimuovere
      */
     public void removeStopWord(String word) {
-        stopWords.remove(word.toLowerCase());
+        stopWords.remove(TermNormalizer.toLowerCase(word));
+        index = null;
     }
 
     /**
@@ -73,7 +79,27 @@ public class StopList {
      * @return true se la parola è una stop word, false altrimenti
      */
     public boolean isStopWord(String word) {
-        return stopWords.contains(word.toLowerCase());
+        return stopWords.contains(TermNormalizer.toLowerCase(word));
+    }
+
+    /**
+     * Verifica se una parola già in minuscolo, letta da un buffer di caratteri, è una
+     * stop word, senza allocare una stringa.
+     * 
+     * @param buffer Il buffer che contiene la parola
+     * @param offset La posizione del primo carattere
+     * @param length Il numero di caratteri
+     * @return true se la parola è una stop word, false altrimenti
+     */
+    public boolean isStopWord(char[] buffer, int offset, int length) {
+        if (index == null) {
+            TermHash words = new TermHash();
+            for (String word : stopWords) {
+                words.add(word);
+            }
+            index = words;
+        }
+        return index.find(buffer, offset, length) >= 0;
     }
 
     /**
@@ -0,0 +1,82 @@
+package ir.index;
+
+import java.util.Arrays;
+
+/**
+ * Accumulatore delle frequenze dei termini di un documento, indicizzato per ID del termine.
+ * I conteggi sono in un array denso e gli ID toccati vengono registrati nell'ordine della
+ * prima occorrenza, così che {@link #clear()} azzeri solo le celle usate. Ogni thread di
+ * indicizzazione riusa la propria istanza per tutti i documenti.
+ */
+public class TermFrequencyAccumulator {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] counts;
+    private int[] termIds;
+    private int size;
+
+    /**
+     * Costruttore per un nuovo accumulatore vuoto.
+     */
+    public TermFrequencyAccumulator() {
+        this.counts = new int[INITIAL_CAPACITY];
+        this.termIds = new int[64];
+        this.size = 0;
+    }
+
+    /**
+     * Registra un'occorrenza di un termine.
+     *
+     * @param termId L'ID del termine
+     */
+    public void add(int termId) {
+        if (termId >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(termId + 1, counts.length * 2));
+        }
+        if (counts[termId]++ == 0) {
+            if (size == termIds.length) {
+                termIds = Arrays.copyOf(termIds, size * 2);
+            }
+            termIds[size++] = termId;
+        }
+    }
+
+    /**
+     * Restituisce il numero di termini distinti registrati.
+     *
+     * @return Il numero di termini distinti
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce l'ID dell'i-esimo termine distinto, nell'ordine della prima occorrenza.
+     *
+     * @param index La posizione del termine
+     * @return L'ID del termine
+     */
+    public int getTermId(int index) {
+        return termIds[index];
+    }
+
+    /**
+     * Restituisce la frequenza dell'i-esimo termine distinto.
+     *
+     * @param index La posizione del termine
+     * @return Il numero di occorrenze del termine
+     */
+    public int getFrequency(int index) {
+        return counts[termIds[index]];
+    }
+
+    /**
+     * Azzera l'accumulatore per il documento successivo.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            counts[termIds[i]] = 0;
+        }
+        size = 0;
+    }
+}
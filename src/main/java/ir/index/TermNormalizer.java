@@ -0,0 +1,53 @@
+package ir.index;
+
+/**
+ * Conversione in minuscolo dei termini, condivisa da indicizzazione, stop list e query.
+ * Ogni code point viene convertito singolarmente con {@link Character#toLowerCase(int)},
+ * senza le regole dipendenti dal contesto o dalla lingua di {@link String#toLowerCase()}
+ * (ad esempio il sigma finale greco o la I turca): lo stesso testo produce sempre lo
+ * stesso termine, sia quando viene letto da un documento che da una query.
+ */
+public class TermNormalizer {
+    private TermNormalizer() {
+    }
+
+    /**
+     * Converte in minuscolo un code point.
+     *
+     * @param codePoint Il code point
+     * @return Il code point in minuscolo
+     */
+    public static int toLowerCase(int codePoint) {
+        return Character.toLowerCase(codePoint);
+    }
+
+    /**
+     * Converte in minuscolo un testo, un code point alla volta.
+     *
+     * @param text Il testo
+     * @return Il testo in minuscolo, lo stesso oggetto se non cambia
+     */
+    public static String toLowerCase(String text) {
+        int length = text.length();
+        int position = 0;
+        while (position < length) {
+            int codePoint = text.codePointAt(position);
+            if (toLowerCase(codePoint) != codePoint) {
+                break;
+            }
+            position += Character.charCount(codePoint);
+        }
+        if (position == length) {
+            return text;
+        }
+
+        StringBuilder lower = new StringBuilder(length);
+        lower.append(text, 0, position);
+        while (position < length) {
+            int codePoint = text.codePointAt(position);
+            lower.appendCodePoint(toLowerCase(codePoint));
+            position += Character.charCount(codePoint);
+        }
+        return lower.toString();
+    }
+}
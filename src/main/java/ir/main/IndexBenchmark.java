@@ -0,0 +1,153 @@
+package ir.main;
+
+import ir.model.Dictionary;
+import ir.model.Term;
+import ir.search.QueryProcessor;
+import ir.search.RankedQueryProcessor;
+import ir.search.TopKStrategy;
+import ir.util.BinaryIndexFormat;
+import ir.util.IndexSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Misura salvataggio e caricamento dell'indice su una collezione generata da
+ * {@link SyntheticCorpus}: tempo di scrittura e dimensione del file binario, tempo di
+ * lettura nello heap e di apertura con mappatura in memoria, e memoria heap trattenuta
+ * dopo la prima query in entrambe le modalità, e tempo medio della ricerca approssimata
+ * di un termine a distanza 1 e 2 sull'indice mappato. Se viene indicato un indice salvato
+ * con la serializzazione Java delle versioni precedenti ne misura anche il caricamento.
+ *
+ * Uso: IndexBenchmark [documenti] [indice legacy]
+ */
+public class IndexBenchmark {
+    private static final int ROUNDS = 3;
+    private static final int QUERY_TERMS = 3;
+    private static final int K = 10;
+    private static final int FUZZY_WORDS = 200;
+    private static final long FUZZY_SEED = 11;
+
+    public static void main(String[] args) {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : SyntheticCorpus.DEFAULT_DOCUMENTS;
+
+        File file = null;
+        try {
+            file = File.createTempFile("indice", ".idx");
+            Dictionary dictionary = SyntheticCorpus.indexDictionary(documents);
+            String query = buildQuery(dictionary);
+            System.out.println("Documenti: " + documents + ", termini: " + dictionary.size() + ", query: " + query);
+            System.out.println();
+
+            long startTime = System.nanoTime();
+            IndexSerializer.serializeDictionary(dictionary, file.getPath());
+            System.out.printf("Salvataggio: %.1f ms, %d byte%n", (System.nanoTime() - startTime) / 1e6, file.length());
+            dictionary = null;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                startTime = System.nanoTime();
+                BinaryIndexFormat.read(file.getPath());
+                long readTime = System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                BinaryIndexFormat.open(file.getPath());
+                long openTime = System.nanoTime() - startTime;
+                System.out.printf("Lettura nello heap: %.1f ms, apertura mappata: %.1f ms%n", readTime / 1e6, openTime / 1e6);
+            }
+            System.out.println();
+
+            measureRetainedHeap("Lettura nello heap", file.getPath(), query, false);
+            measureRetainedHeap("Apertura mappata", file.getPath(), query, true);
+            System.out.println();
+
+            measureFuzzyLookup(BinaryIndexFormat.open(file.getPath()));
+
+            if (args.length > 1) {
+                System.out.println();
+                for (int round = 0; round < ROUNDS; round++) {
+                    startTime = System.nanoTime();
+                    IndexSerializer.deserializeDictionary(args[1]);
+                    System.out.printf("Caricamento legacy: %.1f ms%n", (System.nanoTime() - startTime) / 1e6);
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Errore durante il benchmark: " + e.getMessage());
+        } finally {
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Compone una query con i termini più frequenti della collezione.
+     */
+    private static String buildQuery(Dictionary dictionary) {
+        List<Term> terms = dictionary.getCollectionStatistics().getTopTermsByCollectionFrequency(QUERY_TERMS);
+        StringBuilder query = new StringBuilder();
+        for (Term term : terms) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(term.getText());
+        }
+        return query.toString();
+    }
+
+    /**
+     * Misura il tempo medio di {@link QueryProcessor#expandFuzzy(String, int)} su termini
+     * del vocabolario con una lettera sostituita, dopo un giro di riscaldamento.
+     */
+    private static void measureFuzzyLookup(Dictionary dictionary) {
+        List<String> vocabulary = new ArrayList<>(dictionary.getTerms());
+        Random random = new Random(FUZZY_SEED);
+        String[] words = new String[FUZZY_WORDS];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = vocabulary.get(random.nextInt(vocabulary.size())).toCharArray();
+            word[random.nextInt(word.length)] = (char) ('a' + random.nextInt(26));
+            words[i] = new String(word);
+        }
+
+        QueryProcessor processor = new QueryProcessor(dictionary);
+        for (int maxEdits = 1; maxEdits <= 2; maxEdits++) {
+            long elapsed = 0;
+            int matches = 0;
+            for (int round = 0; round < 2; round++) {
+                long startTime = System.nanoTime();
+                matches = 0;
+                for (String word : words) {
+                    matches += processor.expandFuzzy(word, maxEdits).size();
+                }
+                elapsed = System.nanoTime() - startTime;
+            }
+            System.out.printf("Ricerca approssimata a distanza %d: %.3f ms per termine, %d termini, %d espansioni%n",
+                    maxEdits, elapsed / 1e6 / words.length, words.length, matches);
+        }
+    }
+
+    /**
+     * Carica l'indice, esegue una query e misura la memoria heap occupata in più rispetto
+     * a prima del caricamento, dopo una garbage collection.
+     */
+    private static void measureRetainedHeap(String label, String filePath, String query, boolean mapped)
+            throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        long startTime = System.nanoTime();
+        Dictionary dictionary = mapped ? BinaryIndexFormat.open(filePath) : BinaryIndexFormat.read(filePath);
+        RankedQueryProcessor processor = new RankedQueryProcessor(dictionary);
+        int results = processor.search(query, K, TopKStrategy.MAX_SCORE).length;
+        long elapsed = System.nanoTime() - startTime;
+        System.gc();
+        long retained = runtime.totalMemory() - runtime.freeMemory() - before;
+        System.out.printf("%s: prima query dopo %.1f ms, %d risultati, heap trattenuto %.1f MB%n",
+                label, elapsed / 1e6, results, retained / 1e6);
+        // Il dizionario e il processore devono restare raggiungibili fino alla misura
+        Reference.reachabilityFence(processor);
+        Reference.reachabilityFence(dictionary);
+    }
+}
@@ -2,18 +2,37 @@ package ir.main;
 
 import ir.index.Indexer;
 import ir.index.StopList;
+import ir.model.CollectionStatistics;
 import ir.model.Dictionary;
 import ir.model.Document;
-import ir.model.Posting;
-import ir.model.PostingList;
+import ir.model.PostingListCache;
+import ir.model.Term;
+import ir.search.BM25Similarity;
+import ir.search.ChampionLists;
+import ir.search.DocIdIterator;
+import ir.search.ImpactIndex;
+import ir.search.IntersectionCache;
 import ir.search.OptimizedQueryProcessor;
+import ir.search.QueryNode;
+import ir.search.QueryLog;
 import ir.search.QueryProcessor;
+import ir.search.QueryResultCache;
+import ir.search.RankedQueryProcessor;
+import ir.search.ScoredDocument;
+import ir.search.Similarity;
+import ir.search.TfIdfSimilarity;
+import ir.search.TopKStrategy;
 import ir.util.DirectoryChecker;
+import ir.util.DocumentStore;
 import ir.util.FileLoader;
+import ir.util.IndexCommit;
 import ir.util.IndexSerializer;
+import ir.util.IndexWarmer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.util.List;
 import java.util.Scanner;
 
@@ -23,6 +42,17 @@ public class MainModified {
     private static final String STOPWORDS_PATH = "src/main/resources/stopwords.txt";
     private static final String INDEX_PATH = "C:\\Users\\migue\\OneDrive\\Desktop\\Risorse\\index.ser";
     private static final String DOCUMENTS_INDEX_PATH = "C:\\Users\\migue\\OneDrive\\Desktop\\Risorse\\documents.ser";
+    private static final String MANIFEST_PATH = "C:\\Users\\migue\\OneDrive\\Desktop\\Risorse\\index.manifest";
+    private static final String QUERY_LOG_PATH = "C:\\Users\\migue\\OneDrive\\Desktop\\Risorse\\query.log";
+    private static final int MAX_RANKED_RESULTS = 100;
+    private static final int MAX_SUGGESTIONS = 3;
+    private static final int TOP_TERMS = 10;
+    private static final int GROWTH_POINTS_SHOWN = 8;
+    private static final int WARMUP_TERMS = IndexWarmer.DEFAULT_MAX_TERMS;
+    
+    // Le funzioni di punteggio mantengono tabelle precalcolate, quindi vengono riutilizzate tra le query
+    private static final Similarity TF_IDF = new TfIdfSimilarity();
+    private static final Similarity BM25 = new BM25Similarity();
     
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
@@ -53,100 +83,197 @@ public class MainModified {
                 System.out.println("Trovati " + filesFound + " file .txt nel percorso specificato.");
             }
             
-            // Il resto del codice originale
-            boolean indexExists = new File(INDEX_PATH).exists() && new File(DOCUMENTS_INDEX_PATH).exists();
-            Dictionary dictionary;
-            List<Document> documents;
+            // L'indice pubblicato è descritto dal manifest; i file precedenti restano leggibili
+            IndexCommit commit = readCommit();
+            boolean legacyIndexExists = commit == null && !new File(MANIFEST_PATH).exists()
+                    && new File(INDEX_PATH).exists() && new File(DOCUMENTS_INDEX_PATH).exists();
+            Dictionary dictionary = null;
+            List<Document> documents = null;
+            boolean mapped = false;
             
-            if (indexExists) {
+            if (commit != null || legacyIndexExists) {
                 System.out.println("Caricamento dell'indice esistente...");
-                dictionary = IndexSerializer.deserializeDictionary(INDEX_PATH);
-                documents = IndexSerializer.deserializeDocuments(DOCUMENTS_INDEX_PATH);
-                System.out.println("Indice caricato con successo.");
+                try {
+                    if (commit != null) {
+                        dictionary = commit.openDictionary();
+                        documents = commit.openDocuments();
+                        mapped = true;
+                    } else {
+                        dictionary = IndexSerializer.deserializeDictionary(INDEX_PATH);
+                        documents = IndexSerializer.deserializeDocuments(DOCUMENTS_INDEX_PATH);
+                    }
+                    System.out.println("Indice caricato con successo.");
+                } catch (IOException e) {
+                    System.out.println("ATTENZIONE: indice non valido (" + e.getMessage() + ")");
+                    dictionary = null;
+                    mapped = false;
+                }
                 
                 // NUOVO: Verifica che ci siano effettivamente documenti
-                if (documents == null || documents.isEmpty()) {
+                if (dictionary != null && (documents == null || documents.isEmpty())) {
                     System.out.println("ATTENZIONE: Nessun documento trovato nell'indice!");
                     System.out.println("Vuoi ricreare l'indice? (S/N): ");
                     if (scanner.nextLine().trim().toUpperCase().equals("S")) {
-                        System.out.println("Eliminazione dell'indice esistente...");
-                        new File(INDEX_PATH).delete();
-                        new File(DOCUMENTS_INDEX_PATH).delete();
-                        
                         System.out.println("Creazione di un nuovo indice...");
                         dictionary = createIndex();
                         documents = loadDocuments();
+                        commit = readCommit();
+                        mapped = false;
                     }
                 }
-            } else {
+            }
+            
+            if (dictionary == null) {
                 System.out.println("Creazione di un nuovo indice...");
                 dictionary = createIndex();
                 documents = loadDocuments();
+                commit = readCommit();
                 System.out.println("Indice creato con successo.");
             }
             
-            System.out.println("Statistiche dell'indice:");
-            System.out.println("- Numero di termini: " + dictionary.size());
-            System.out.println("- Numero di documenti: " + documents.size());
-            
-            // Resto del codice come l'originale...
-            // Crea i processori di query
-            QueryProcessor standardProcessor = new QueryProcessor(dictionary);
-            OptimizedQueryProcessor optimizedProcessor = new OptimizedQueryProcessor(dictionary);
-            
-            // Carica la stop list se esiste
-            if (FileLoader.isFileReadable(STOPWORDS_PATH)) {
-                StopList stopList = new StopList(STOPWORDS_PATH);
-                standardProcessor.setStopList(stopList);
-                standardProcessor.setUseStopList(true);
-                optimizedProcessor.setStopList(stopList);
-                optimizedProcessor.setUseStopList(true);
+            // Una sezione danneggiata dell'indice viene scoperta solo quando viene letta: in quel
+            // caso l'indice viene ricostruito e la sessione riprende sul nuovo indice
+            while (runSession(scanner, dictionary, documents, commit, mapped)) {
+                System.out.println("Ricostruzione dell'indice...");
+                dictionary = createIndex();
+                documents = loadDocuments();
+                commit = readCommit();
+                mapped = false;
+                System.out.println("Indice ricostruito con successo.");
             }
             
-            // Attiva lo stemming
-            standardProcessor.setUseStemming(true);
-            optimizedProcessor.setUseStemming(true);
+        } catch (Exception e) {
+            System.err.println("Errore: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            scanner.close();
+        }
+    }
+    
+    // Il resto dei metodi come l'originale...
+    
+    /**
+     * Esegue la sessione interattiva su un indice caricato.
+     * 
+     * @param scanner Lo scanner per l'input
+     * @param dictionary Il dizionario dell'indice
+     * @param documents La lista dei documenti
+     * @param commit L'indice pubblicato, oppure null se non esiste
+     * @param mapped true se il dizionario è mappato dai file dell'indice pubblicato, false se è nello heap
+     * @return true se la sessione si è interrotta perché l'indice è danneggiato e va ricostruito
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    private static boolean runSession(Scanner scanner, Dictionary dictionary, List<Document> documents,
+                                      IndexCommit commit, boolean mapped) throws IOException {
+        System.out.println("Statistiche dell'indice:");
+        System.out.println("- Numero di termini: " + dictionary.size());
+        System.out.println("- Numero di documenti: " + documents.size());
+        
+        // L'indice non viene più modificato: il vocabolario viene congelato in forma compatta
+        dictionary.freeze();
+        
+        // Resto del codice come l'originale...
+        // Crea i processori di query
+        QueryProcessor standardProcessor = new QueryProcessor(dictionary);
+        OptimizedQueryProcessor optimizedProcessor = new OptimizedQueryProcessor(dictionary);
+        RankedQueryProcessor rankedProcessor = new RankedQueryProcessor(dictionary);
+        
+        // Carica la stop list se esiste
+        if (FileLoader.isFileReadable(STOPWORDS_PATH)) {
+            StopList stopList = new StopList(STOPWORDS_PATH);
+            standardProcessor.setStopList(stopList);
+            standardProcessor.setUseStopList(true);
+            optimizedProcessor.setStopList(stopList);
+            optimizedProcessor.setUseStopList(true);
+            rankedProcessor.setStopList(stopList);
+            rankedProcessor.setUseStopList(true);
+        }
+        
+        // Attiva lo stemming
+        standardProcessor.setUseStemming(true);
+        optimizedProcessor.setUseStemming(true);
+        rankedProcessor.setUseStemming(true);
+        
+        // I termini cercati vengono contati e salvati per il riscaldamento dei prossimi avvii
+        QueryLog queryLog = loadQueryLog();
+        standardProcessor.setQueryLog(queryLog);
+        optimizedProcessor.setQueryLog(queryLog);
+        rankedProcessor.setQueryLog(queryLog);
+        
+        // Le intersezioni delle coppie di termini cercate più spesso vengono riusate dalle query AND,
+        // i risultati delle query ripetute vengono serviti dalla cache
+        IntersectionCache intersectionCache = new IntersectionCache(IntersectionCache.DEFAULT_MAX_BYTES);
+        optimizedProcessor.setIntersectionCache(intersectionCache);
+        QueryResultCache resultCache = new QueryResultCache(QueryResultCache.DEFAULT_MAX_BYTES,
+                QueryResultCache.Policy.TINY_LFU);
+        optimizedProcessor.setResultCache(resultCache);
+        
+        // Indici per impatto e liste dei campioni pubblicati con l'indice vengono letti subito, così
+        // la prima ricerca score-at-a-time o a campioni non deve calcolarli
+        for (Similarity similarity : new Similarity[] {TF_IDF, BM25}) {
+            rankedProcessor.setImpactIndex(loadImpactIndex(dictionary, commit, similarity));
+            rankedProcessor.setChampionLists(loadChampionLists(dictionary, commit, similarity));
+        }
+        
+        // Un indice mappato dal disco tiene in cache le liste decodificate e viene riscaldato in
+        // background mentre l'utente inserisce le query
+        Thread warmerThread = null;
+        if (mapped) {
+            dictionary.getFrozenDictionary().enablePostingCache(PostingListCache.DEFAULT_MAX_BYTES);
+            IndexWarmer warmer = new IndexWarmer(dictionary, commit.getIndexPath());
+            warmer.setQueryLog(queryLog);
+            warmer.setMaxTerms(WARMUP_TERMS);
+            warmerThread = warmer.start();
+        }
+        
+        // Interfaccia utente interattiva
+        boolean running = true;
+        while (running) {
+            System.out.println("\nOpzioni:");
+            System.out.println("1. Esegui una query");
+            System.out.println("2. Esegui una ricerca classificata (TF-IDF/BM25)");
+            System.out.println("3. Mostra dettagli di un documento");
+            System.out.println("4. Mostra statistiche dell'indice");
+            System.out.println("5. Esci");
+            System.out.print("\nScegli un'opzione (1-5): ");
+            
+            String choice = scanner.nextLine();
             
-            // Interfaccia utente interattiva
-            boolean running = true;
-            while (running) {
-                System.out.println("\nOpzioni:");
-                System.out.println("1. Esegui una query");
-                System.out.println("2. Mostra dettagli di un documento");
-                System.out.println("3. Mostra statistiche dell'indice");
-                System.out.println("4. Esci");
-                System.out.print("\nScegli un'opzione (1-4): ");
-                
-                String choice = scanner.nextLine();
-                
+            try {
                 switch (choice) {
                     case "1":
                         executeQuery(scanner, standardProcessor, optimizedProcessor, documents);
                         break;
                     case "2":
-                        showDocumentDetails(scanner, documents);
+                        executeRankedQuery(scanner, rankedProcessor, documents);
                         break;
                     case "3":
-                        showIndexStatistics(dictionary);
+                        showDocumentDetails(scanner, documents);
                         break;
                     case "4":
+                        showIndexStatistics(dictionary, resultCache, intersectionCache);
+                        break;
+                    case "5":
                         running = false;
+                        saveQueryLog(queryLog);
                         break;
                     default:
                         System.out.println("Opzione non valida. Riprova.");
                 }
+            } catch (UncheckedIOException e) {
+                // Sezione di posting o blocco di documenti con checksum non valido
+                System.out.println("ATTENZIONE: indice danneggiato (" + e.getCause().getMessage() + ")");
+                saveQueryLog(queryLog);
+                // La ricostruzione elimina i file che il riscaldamento potrebbe ancora leggere
+                if (warmerThread != null) {
+                    IndexWarmer.stop(warmerThread);
+                }
+                return true;
             }
-            
-        } catch (Exception e) {
-            System.err.println("Errore: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            scanner.close();
         }
+        return false;
     }
     
-    // Il resto dei metodi come l'originale...
-    
     /**
      * Crea un nuovo indice invertito.
      * 
@@ -169,22 +296,110 @@ public class MainModified {
         indexer.loadDocumentsFromDirectory(DOCUMENTS_PATH);
         indexer.indexAllDocuments();
         
-        // Serializza l'indice per uso futuro
-        IndexSerializer.serializeDictionary(indexer.getDictionary(), INDEX_PATH);
-        IndexSerializer.serializeDocuments(indexer.getDocuments(), DOCUMENTS_INDEX_PATH);
+        // Pubblica l'indice per uso futuro: un'interruzione lascia valido l'indice precedente
+        IndexCommit.write(indexer.getDictionary(), indexer.getDocuments(), MANIFEST_PATH, TF_IDF, BM25);
         
         return indexer.getDictionary();
     }
     
     /**
-     * Carica i documenti dall'indice serializzato.
+     * Legge l'indice per impatto pubblicato per una funzione di punteggio, oppure lo costruisce
+     * se manca, non è valido o non corrisponde al dizionario.
+     * 
+     * @param dictionary Il dizionario dell'indice
+     * @param commit L'indice pubblicato, oppure null se non esiste
+     * @param similarity La funzione di punteggio
+     * @return L'indice per impatto
+     */
+    private static ImpactIndex loadImpactIndex(Dictionary dictionary, IndexCommit commit, Similarity similarity) {
+        if (commit != null) {
+            try {
+                return ImpactIndex.read(commit.getImpactPath(similarity), dictionary, similarity);
+            } catch (NoSuchFileException e) {
+                // Indice pubblicato senza indici per impatto
+            } catch (IOException e) {
+                System.out.println("ATTENZIONE: indice per impatto non valido (" + e.getMessage() + ")");
+            }
+        }
+        return ImpactIndex.build(dictionary, similarity, ImpactIndex.DEFAULT_BITS);
+    }
+    
+    /**
+     * Legge le liste dei campioni pubblicate per una funzione di punteggio, oppure le calcola
+     * se mancano, non sono valide o non corrispondono al dizionario.
+     * 
+     * @param dictionary Il dizionario dell'indice
+     * @param commit L'indice pubblicato, oppure null se non esiste
+     * @param similarity La funzione di punteggio
+     * @return Le liste dei campioni
+     */
+    private static ChampionLists loadChampionLists(Dictionary dictionary, IndexCommit commit,
+                                                   Similarity similarity) {
+        if (commit != null) {
+            try {
+                return ChampionLists.read(commit.getChampionsPath(similarity), dictionary, similarity);
+            } catch (NoSuchFileException e) {
+                // Indice pubblicato senza liste dei campioni
+            } catch (IOException e) {
+                System.out.println("ATTENZIONE: liste dei campioni non valide (" + e.getMessage() + ")");
+            }
+        }
+        return ChampionLists.build(dictionary, similarity, ChampionLists.DEFAULT_SIZE);
+    }
+    
+    /**
+     * Carica le statistiche delle query salvate.
+     * 
+     * @return Le statistiche salvate, oppure vuote se non esistono o non sono leggibili
+     */
+    private static QueryLog loadQueryLog() {
+        try {
+            return QueryLog.load(QUERY_LOG_PATH);
+        } catch (IOException e) {
+            System.out.println("ATTENZIONE: statistiche delle query non leggibili (" + e.getMessage() + ")");
+            return new QueryLog();
+        }
+    }
+    
+    /**
+     * Salva le statistiche delle query per il riscaldamento del prossimo avvio.
+     * 
+     * @param queryLog Le statistiche delle query
+     */
+    private static void saveQueryLog(QueryLog queryLog) {
+        try {
+            queryLog.save(QUERY_LOG_PATH);
+        } catch (IOException e) {
+            System.out.println("ATTENZIONE: statistiche delle query non salvate (" + e.getMessage() + ")");
+        }
+    }
+    
+    /**
+     * Legge il manifest dell'indice pubblicato.
+     * 
+     * @return L'indice pubblicato, oppure null se non esiste o non è valido
+     */
+    private static IndexCommit readCommit() {
+        try {
+            return IndexCommit.read(MANIFEST_PATH);
+        } catch (IOException e) {
+            System.out.println("ATTENZIONE: indice non valido (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+    
+    /**
+     * Carica i documenti dall'indice pubblicato o, in sua assenza, da quello serializzato.
      * 
      * @return La lista dei documenti
      * @throws IOException Se si verifica un errore di I/O
      * @throws ClassNotFoundException Se la classe serializzata non è trovata
      */
     private static List<Document> loadDocuments() throws IOException, ClassNotFoundException {
-        if (FileLoader.isFileReadable(DOCUMENTS_INDEX_PATH)) {
+        IndexCommit commit = readCommit();
+        if (commit != null) {
+            return commit.openDocuments();
+        } else if (FileLoader.isFileReadable(DOCUMENTS_INDEX_PATH)) {
             return IndexSerializer.deserializeDocuments(DOCUMENTS_INDEX_PATH);
         } else {
             return FileLoader.loadDocumentsFromDirectory(DOCUMENTS_PATH);
@@ -201,7 +416,7 @@ public class MainModified {
      */
     private static void executeQuery(Scanner scanner, QueryProcessor standardProcessor, 
                                     OptimizedQueryProcessor optimizedProcessor, List<Document> documents) {
-        System.out.print("\nInserisci la query (termini separati da spazio): ");
+        System.out.print("\nInserisci la query (es. (great OR excellent) AND act* NOT boring, oppure NOT boring): ");
         String query = scanner.nextLine().trim();
         
         if (query.isEmpty()) {
@@ -209,46 +424,46 @@ public class MainModified {
             return;
         }
         
-        System.out.print("Tipo di query (AND/OR): ");
+        System.out.print("Operatore tra termini adiacenti (AND/OR): ");
         String queryType = scanner.nextLine().trim().toUpperCase();
         
         System.out.print("Usa processore ottimizzato (S/N): ");
         boolean useOptimized = scanner.nextLine().trim().equalsIgnoreCase("S");
         
-        long startTime = System.nanoTime();
+        QueryProcessor processor = useOptimized ? optimizedProcessor : standardProcessor;
         
-        PostingList result;
-        String[] terms = query.split("\\s+");
+        long startTime = System.nanoTime();
         
-        if (useOptimized) {
-            if (queryType.equals("AND")) {
-                result = optimizedProcessor.processConjunctiveQuery(terms);
-            } else {
-                result = optimizedProcessor.processDisjunctiveQuery(terms);
-            }
-        } else {
-            if (queryType.equals("AND")) {
-                result = standardProcessor.processConjunctiveQuery(terms);
-            } else {
-                result = standardProcessor.processDisjunctiveQuery(terms);
-            }
+        // L'iteratore è pigro: i documenti vengono calcolati solo quando vengono mostrati
+        DocIdIterator result;
+        try {
+            QueryNode plan = processor.planQuery(query, queryType.equals("AND"));
+            System.out.println("Piano di esecuzione: " + plan);
+            result = processor.createQueryIterator(plan);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Query non valida: " + e.getMessage());
+            return;
         }
         
+        int docId = result.nextDoc();
+        
         long endTime = System.nanoTime();
         double executionTime = (endTime - startTime) / 1_000_000.0; // in millisecondi
         
-        System.out.println("\nRisultati della query (" + result.size() + " documenti trovati in " + executionTime + " ms):");
+        System.out.println("\nRisultati della query (primo risultato in " + executionTime + " ms):");
         
-        if (result.isEmpty()) {
+        if (docId == DocIdIterator.NO_MORE_DOCS) {
             System.out.println("Nessun documento trovato.");
+            printSuggestions(processor, query);
         } else {
             int count = 0;
-            for (Posting posting : result) {
-                int docId = posting.getDocumentId();
+            int total = 0;
+            for (; docId != DocIdIterator.NO_MORE_DOCS; docId = result.nextDoc()) {
                 Document doc = findDocumentById(documents, docId);
                 if (doc != null) {
                     count++;
-                    System.out.println(count + ". " + doc.getName() + " (ID: " + doc.getId() + ", Score: " + posting.getFrequency() + ")");
+                    total++;
+                    System.out.println(total + ". " + doc.getName() + " (ID: " + doc.getId() + ", Score: " + result.frequency() + ")");
                     
                     if (count == 10) {
                         System.out.print("\nMostrare altri risultati? (S/N): ");
@@ -259,6 +474,107 @@ public class MainModified {
                     }
                 }
             }
+            System.out.println("Documenti mostrati: " + total);
+        }
+    }
+    
+    /**
+     * Mostra i suggerimenti di correzione per le parole della query assenti dal dizionario.
+     * 
+     * @param processor Il processore di query
+     * @param query La query
+     */
+    private static void printSuggestions(QueryProcessor processor, String query) {
+        for (String word : query.split("[^\\p{L}*~]+")) {
+            if (word.isEmpty() || word.equalsIgnoreCase("AND") || word.equalsIgnoreCase("OR")
+                    || word.equalsIgnoreCase("NOT") || word.indexOf('*') >= 0 || word.indexOf('~') >= 0) {
+                continue;
+            }
+            List<String> suggestions = processor.suggest(word, MAX_SUGGESTIONS);
+            if (!suggestions.isEmpty()) {
+                System.out.println("Forse cercavi: " + word + " -> " + String.join(", ", suggestions)
+                        + " (prova " + word + "~)");
+            }
+        }
+    }
+    
+    /**
+     * Esegue una ricerca classificata e visualizza i risultati in ordine di punteggio.
+     * 
+     * @param scanner Lo scanner per l'input
+     * @param rankedProcessor Il processore di query classificate
+     * @param documents La lista dei documenti
+     */
+    private static void executeRankedQuery(Scanner scanner, RankedQueryProcessor rankedProcessor,
+                                           List<Document> documents) {
+        System.out.print("\nInserisci la query (testo libero, parola~ per la ricerca approssimata): ");
+        String query = scanner.nextLine().trim();
+        
+        if (query.isEmpty()) {
+            System.out.println("Query vuota. Riprova.");
+            return;
+        }
+        
+        System.out.print("Modello di punteggio (TFIDF/BM25): ");
+        boolean useBM25 = scanner.nextLine().trim().equalsIgnoreCase("BM25");
+        rankedProcessor.setSimilarity(useBM25 ? BM25 : TF_IDF);
+        
+        System.out.print("Strategia top-k (EXHAUSTIVE/WAND/BLOCK_MAX_WAND/MAX_SCORE/SCORE_AT_A_TIME/CHAMPION_LISTS): ");
+        TopKStrategy strategy;
+        try {
+            strategy = TopKStrategy.valueOf(scanner.nextLine().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            strategy = TopKStrategy.EXHAUSTIVE;
+        }
+        
+        long postingBudget = Long.MAX_VALUE;
+        if (strategy == TopKStrategy.SCORE_AT_A_TIME) {
+            System.out.print("Limite di posting (invio per nessun limite): ");
+            try {
+                postingBudget = Long.parseLong(scanner.nextLine().trim());
+            } catch (NumberFormatException e) {
+                postingBudget = Long.MAX_VALUE;
+            }
+        }
+        
+        long startTime = System.nanoTime();
+        ScoredDocument[] results;
+        try {
+            results = strategy == TopKStrategy.SCORE_AT_A_TIME
+                    ? rankedProcessor.searchAnytime(query, MAX_RANKED_RESULTS, postingBudget, Long.MAX_VALUE)
+                    : rankedProcessor.search(query, MAX_RANKED_RESULTS, strategy);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Query non valida: " + e.getMessage());
+            return;
+        }
+        long endTime = System.nanoTime();
+        double executionTime = (endTime - startTime) / 1_000_000.0; // in millisecondi
+        
+        System.out.println("\nMigliori " + results.length + " risultati " + rankedProcessor.getSimilarity()
+                + " (calcolati in " + executionTime + " ms):");
+        System.out.println("Strumentazione: " + rankedProcessor.getLastStatistics());
+        if (strategy == TopKStrategy.CHAMPION_LISTS) {
+            System.out.printf("Tasso di ripiego delle liste dei campioni: %.2f%%%n",
+                    rankedProcessor.getChampionFallbackRate() * 100);
+        }
+        
+        if (results.length == 0) {
+            System.out.println("Nessun documento trovato.");
+            printSuggestions(rankedProcessor, query);
+            return;
+        }
+        
+        for (int i = 0; i < results.length; i++) {
+            Document doc = findDocumentById(documents, results[i].getDocumentId());
+            String name = doc != null ? doc.getName() : "?";
+            System.out.printf("%d. %s (ID: %d, Score: %.4f)%n", i + 1, name, results[i].getDocumentId(), results[i].getScore());
+            
+            if ((i + 1) % 10 == 0 && i + 1 < results.length) {
+                System.out.print("\nMostrare altri risultati? (S/N): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("S")) {
+                    break;
+                }
+            }
         }
     }
     
@@ -304,28 +620,52 @@ public class MainModified {
      * Mostra le statistiche dell'indice.
      * 
      * @param dictionary Il dizionario dell'indice
+     * @param resultCache La cache dei risultati del processore ottimizzato
+     * @param intersectionCache La cache delle intersezioni del processore ottimizzato
      */
-    private static void showIndexStatistics(Dictionary dictionary) {
+    private static void showIndexStatistics(Dictionary dictionary, QueryResultCache resultCache,
+                                            IntersectionCache intersectionCache) {
+        CollectionStatistics statistics = dictionary.getCollectionStatistics();
+        int documentCount = dictionary.getLiveDocs().cardinality();
+        
         System.out.println("\nStatistiche dell'indice:");
         System.out.println("- Numero di termini unici: " + dictionary.size());
+        System.out.println("- Numero di documenti: " + documentCount);
+        System.out.println("- Occorrenze totali: " + statistics.getTotalTokens());
+        System.out.printf("- Lunghezza media dei documenti: %.1f%n", statistics.getAverageDocumentLength(documentCount));
         
-        // Trova i termini più frequenti
-        String[] mostFrequentTerms = dictionary.getTerms().stream()
-                .sorted((t1, t2) -> {
-                    int cf1 = dictionary.getTerm(t1).getCollectionFrequency();
-                    int cf2 = dictionary.getTerm(t2).getCollectionFrequency();
-                    return Integer.compare(cf2, cf1); // ordine decrescente
-                })
-                .limit(10)
-                .toArray(String[]::new);
-        
+        // I termini più frequenti sono mantenuti durante l'indicizzazione, senza ordinare il vocabolario
+        List<Term> mostFrequentTerms = statistics.getTopTermsByCollectionFrequency(TOP_TERMS);
         System.out.println("\nTermini più frequenti:");
-        for (int i = 0; i < mostFrequentTerms.length; i++) {
-            String term = mostFrequentTerms[i];
-            int cf = dictionary.getTerm(term).getCollectionFrequency();
-            int df = dictionary.getTerm(term).getDocumentFrequency();
-            System.out.println((i + 1) + ". " + term + " (CF: " + cf + ", DF: " + df + ")");
+        for (int i = 0; i < mostFrequentTerms.size(); i++) {
+            Term term = mostFrequentTerms.get(i);
+            System.out.println((i + 1) + ". " + term.getText() + " (CF: " + term.getCollectionFrequency()
+                    + ", DF: " + term.getDocumentFrequency() + ")");
+        }
+        
+        List<Term> widestTerms = statistics.getTopTermsByDocumentFrequency(TOP_TERMS);
+        System.out.println("\nTermini presenti in più documenti:");
+        for (int i = 0; i < widestTerms.size(); i++) {
+            Term term = widestTerms.get(i);
+            System.out.println((i + 1) + ". " + term.getText() + " (DF: " + term.getDocumentFrequency() + ")");
+        }
+        
+        long[] growthTokens = statistics.getGrowthTokens();
+        int[] growthVocabulary = statistics.getGrowthVocabulary();
+        if (growthTokens.length > 0) {
+            System.out.println("\nCrescita del vocabolario (occorrenze -> termini unici):");
+            int step = Math.max(1, growthTokens.length / GROWTH_POINTS_SHOWN);
+            for (int i = step - 1; i < growthTokens.length; i += step) {
+                System.out.println("  " + growthTokens[i] + " -> " + growthVocabulary[i]);
+            }
         }
+        
+        PostingListCache postingCache = dictionary.isFrozen() ? dictionary.getFrozenDictionary().getPostingCache() : null;
+        if (postingCache != null) {
+            System.out.println("\nCache delle liste di posting: " + postingCache);
+        }
+        System.out.println("\nCache dei risultati: " + resultCache);
+        System.out.println("Cache delle intersezioni: " + intersectionCache);
     }
     
     /**
@@ -336,6 +676,10 @@ public class MainModified {
      * @return Il documento trovato o null
      */
     private static Document findDocumentById(List<Document> documents, int id) {
+        if (documents instanceof DocumentStore) {
+            // Ricerca per ID senza decomprimere gli altri blocchi
+            return ((DocumentStore) documents).getById(id);
+        }
         for (Document doc : documents) {
             if (doc.getId() == id) {
                 return doc;
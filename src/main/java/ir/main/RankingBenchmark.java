@@ -0,0 +1,314 @@
+package ir.main;
+
+import ir.index.StopList;
+import ir.model.Dictionary;
+import ir.search.BM25Similarity;
+import ir.search.DocIdIterator;
+import ir.search.OptimizedQueryProcessor;
+import ir.search.QueryResultCache;
+import ir.search.RankedQueryProcessor;
+import ir.search.ScoredDocument;
+import ir.search.SearchStatistics;
+import ir.search.TfIdfSimilarity;
+import ir.search.TopKStrategy;
+import ir.util.IndexSerializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Confronta le strategie di valutazione top-k su un log di query (una query per riga).
+ * Per ogni strategia riporta i tempi medi e i percentili, i posting valutati e i documenti
+ * valutati completamente; come riferimento misura anche la disgiunzione booleana non
+ * classificata dell'{@link OptimizedQueryProcessor} sulle stesse query, senza cache e con
+ * una {@link QueryResultCache} per ogni politica.
+ *
+ * I risultati di ogni strategia vengono confrontati con quelli della valutazione
+ * esaustiva: per le strategie esatte ogni differenza nei documenti o nei punteggi oltre
+ * la tolleranza interrompe il benchmark con un errore, per quelle approssimate viene
+ * riportata la frazione di documenti in comune.
+ * 
+ * Con l'opzione --sintetico l'indice e le 200 query vengono generati da
+ * {@link SyntheticCorpus}, quindi le misure sono riproducibili senza file di input.
+ *
+ * Uso: RankingBenchmark &lt;indice&gt; &lt;log delle query&gt; [k] [TFIDF|BM25] [stopwords]
+ * oppure RankingBenchmark --sintetico [documenti] [k] [TFIDF|BM25]
+ */
+public class RankingBenchmark {
+    private static final int DEFAULT_K = 10;
+    private static final int WARMUP_ROUNDS = 2;
+    private static final String SYNTHETIC_OPTION = "--sintetico";
+    private static final int SYNTHETIC_QUERIES = 200;
+
+    /**
+     * Tolleranza relativa sui punteggi: le strategie sommano i contributi dei termini in
+     * ordini diversi, quindi i punteggi in float possono differire nelle ultime cifre.
+     */
+    private static final float SCORE_EPSILON = 1e-4f;
+
+    public static void main(String[] args) {
+        if (args.length < 1 || (args.length < 2 && !args[0].equals(SYNTHETIC_OPTION))) {
+            System.out.println("Uso: RankingBenchmark <indice> <log delle query> [k] [TFIDF|BM25] [stopwords]");
+            System.out.println("     RankingBenchmark " + SYNTHETIC_OPTION + " [documenti] [k] [TFIDF|BM25]");
+            return;
+        }
+
+        try {
+            Dictionary dictionary;
+            List<String> queries;
+            int k;
+            boolean useBM25;
+            OptimizedQueryProcessor optimizedProcessor;
+            RankedQueryProcessor rankedProcessor;
+            if (args[0].equals(SYNTHETIC_OPTION)) {
+                // Collezione generata, senza stemming né stop list
+                int documents = args.length > 1 ? Integer.parseInt(args[1]) : SyntheticCorpus.DEFAULT_DOCUMENTS;
+                dictionary = SyntheticCorpus.rankingDictionary(documents);
+                queries = SyntheticCorpus.rankingQueries(dictionary, SYNTHETIC_QUERIES);
+                dictionary.freeze();
+                k = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_K;
+                useBM25 = args.length > 3 && args[3].equalsIgnoreCase("BM25");
+                optimizedProcessor = new OptimizedQueryProcessor(dictionary);
+                rankedProcessor = new RankedQueryProcessor(dictionary);
+            } else {
+                dictionary = IndexSerializer.deserializeDictionary(args[0]);
+                dictionary.freeze();
+                queries = loadQueries(args[1]);
+                k = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_K;
+                useBM25 = args.length > 3 && args[3].equalsIgnoreCase("BM25");
+                optimizedProcessor = new OptimizedQueryProcessor(dictionary);
+                rankedProcessor = new RankedQueryProcessor(dictionary);
+                if (args.length > 4) {
+                    StopList stopList = new StopList(args[4]);
+                    optimizedProcessor.setStopList(stopList);
+                    optimizedProcessor.setUseStopList(true);
+                    rankedProcessor.setStopList(stopList);
+                    rankedProcessor.setUseStopList(true);
+                }
+                optimizedProcessor.setUseStemming(true);
+                rankedProcessor.setUseStemming(true);
+            }
+            rankedProcessor.setSimilarity(useBM25 ? new BM25Similarity() : new TfIdfSimilarity());
+
+            System.out.println("Query: " + queries.size() + ", k = " + k + ", punteggio: " + (useBM25 ? "BM25" : "TFIDF"));
+            System.out.println();
+
+            runBaseline(optimizedProcessor, queries);
+            for (QueryResultCache.Policy policy : QueryResultCache.Policy.values()) {
+                runCachedBaseline(optimizedProcessor, queries, policy);
+            }
+            List<ScoredDocument[]> reference = new ArrayList<>(queries.size());
+            for (String query : queries) {
+                reference.add(rankedProcessor.search(query, k, TopKStrategy.EXHAUSTIVE));
+            }
+            for (TopKStrategy strategy : TopKStrategy.values()) {
+                runStrategy(rankedProcessor, queries, k, strategy, reference);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Errore durante il benchmark: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Legge il log delle query ignorando le righe vuote.
+     */
+    private static List<String> loadQueries(String path) throws IOException {
+        List<String> queries = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+            String query = line.trim();
+            if (!query.isEmpty()) {
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Pianifica ed esegue una query come disgiunzione dei suoi termini, sullo stesso percorso
+     * delle query booleane dell'applicazione, e conta i documenti restituiti.
+     */
+    private static int countResults(OptimizedQueryProcessor processor, String query) {
+        DocIdIterator iterator = processor.createQueryIterator(processor.planQuery(query, false));
+        int count = 0;
+        while (iterator.nextDoc() != DocIdIterator.NO_MORE_DOCS) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Misura la disgiunzione booleana dell'OptimizedQueryProcessor, senza classificazione.
+     */
+    private static void runBaseline(OptimizedQueryProcessor processor, List<String> queries) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String query : queries) {
+                countResults(processor, query);
+            }
+        }
+
+        long[] latencies = new long[queries.size()];
+        long results = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long startTime = System.nanoTime();
+            results += countResults(processor, queries.get(i));
+            latencies[i] = System.nanoTime() - startTime;
+        }
+
+        System.out.println("OptimizedQueryProcessor (OR non classificato)");
+        printLatencies(latencies);
+        System.out.println("  documenti restituiti: " + results);
+        System.out.println();
+    }
+
+    /**
+     * Misura la stessa disgiunzione con una cache dei risultati, partendo da una cache vuota.
+     */
+    private static void runCachedBaseline(OptimizedQueryProcessor processor, List<String> queries,
+                                          QueryResultCache.Policy policy) {
+        QueryResultCache cache = new QueryResultCache(QueryResultCache.DEFAULT_MAX_BYTES, policy);
+        processor.setResultCache(cache);
+
+        long[] latencies = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            long startTime = System.nanoTime();
+            countResults(processor, queries.get(i));
+            latencies[i] = System.nanoTime() - startTime;
+        }
+        processor.setResultCache(null);
+
+        System.out.println("OptimizedQueryProcessor (OR non classificato, cache " + policy + ")");
+        printLatencies(latencies);
+        System.out.printf("  tasso di successo: %.2f%%%n", cache.getHitRatio() * 100);
+        System.out.println("  " + cache);
+        System.out.println();
+    }
+
+    /**
+     * Misura una strategia top-k sommando la strumentazione di tutte le query e ne
+     * confronta i risultati con quelli della valutazione esaustiva.
+     *
+     * @throws IllegalStateException Se una strategia esatta restituisce risultati diversi
+     */
+    private static void runStrategy(RankedQueryProcessor processor, List<String> queries, int k, TopKStrategy strategy,
+                                    List<ScoredDocument[]> reference) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String query : queries) {
+                processor.search(query, k, strategy);
+            }
+        }
+
+        long[] latencies = new long[queries.size()];
+        long scoredPostings = 0;
+        long evaluatedDocuments = 0;
+        long skippedBlocks = 0;
+        long matchingDocuments = 0;
+        long referenceDocuments = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            ScoredDocument[] results = processor.search(queries.get(i), k, strategy);
+            if (strategy.isExact()) {
+                verify(strategy, queries.get(i), reference.get(i), results);
+            }
+            matchingDocuments += countCommon(reference.get(i), results);
+            referenceDocuments += reference.get(i).length;
+            SearchStatistics statistics = processor.getLastStatistics();
+            latencies[i] = statistics.getElapsedNanos();
+            scoredPostings += statistics.getScoredPostings();
+            evaluatedDocuments += statistics.getEvaluatedDocuments();
+            skippedBlocks += statistics.getSkippedBlocks();
+        }
+
+        System.out.println(strategy);
+        printLatencies(latencies);
+        System.out.println("  posting valutati: " + scoredPostings);
+        System.out.println("  documenti valutati: " + evaluatedDocuments);
+        System.out.println("  blocchi saltati: " + skippedBlocks);
+        if (strategy.isExact()) {
+            System.out.println("  risultati verificati con " + TopKStrategy.EXHAUSTIVE);
+        } else {
+            System.out.printf("  documenti in comune con %s: %.2f%%%n", TopKStrategy.EXHAUSTIVE,
+                    referenceDocuments > 0 ? 100.0 * matchingDocuments / referenceDocuments : 100.0);
+        }
+        if (strategy == TopKStrategy.CHAMPION_LISTS) {
+            System.out.printf("  tasso di ripiego: %.2f%%%n", processor.getChampionFallbackRate() * 100);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Verifica che i risultati di una strategia esatta coincidano con quelli esaustivi: a
+     * ogni posizione i punteggi devono coincidere entro la tolleranza, e un documento
+     * assente dai risultati esaustivi è ammesso solo se il suo punteggio è pari all'ultimo
+     * di quelli esaustivi, cioè se i due documenti sono a pari merito.
+     */
+    private static void verify(TopKStrategy strategy, String query, ScoredDocument[] expected,
+                               ScoredDocument[] actual) {
+        if (actual.length != expected.length) {
+            throw mismatch(strategy, query, expected, actual);
+        }
+        for (int i = 0; i < actual.length; i++) {
+            if (!sameScore(actual[i].getScore(), expected[i].getScore())) {
+                throw mismatch(strategy, query, expected, actual);
+            }
+            if (!contains(expected, actual[i].getDocumentId())
+                    && !sameScore(actual[i].getScore(), expected[expected.length - 1].getScore())) {
+                throw mismatch(strategy, query, expected, actual);
+            }
+        }
+    }
+
+    private static IllegalStateException mismatch(TopKStrategy strategy, String query, ScoredDocument[] expected,
+                                                  ScoredDocument[] actual) {
+        return new IllegalStateException("Risultati di " + strategy + " diversi da " + TopKStrategy.EXHAUSTIVE
+                + " per la query '" + query + "': attesi " + Arrays.toString(expected)
+                + ", ottenuti " + Arrays.toString(actual));
+    }
+
+    private static boolean sameScore(float a, float b) {
+        return Math.abs(a - b) <= SCORE_EPSILON * Math.max(1.0f, Math.max(Math.abs(a), Math.abs(b)));
+    }
+
+    private static boolean contains(ScoredDocument[] results, int documentId) {
+        for (ScoredDocument result : results) {
+            if (result.getDocumentId() == documentId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countCommon(ScoredDocument[] expected, ScoredDocument[] actual) {
+        int count = 0;
+        for (ScoredDocument result : actual) {
+            if (contains(expected, result.getDocumentId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void printLatencies(long[] latencies) {
+        if (latencies.length == 0) {
+            return;
+        }
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long latency : sorted) {
+            total += latency;
+        }
+        System.out.printf("  tempo medio: %.3f ms, p50: %.3f ms, p99: %.3f ms%n",
+                total / 1_000_000.0 / sorted.length,
+                percentile(sorted, 0.50) / 1_000_000.0,
+                percentile(sorted, 0.99) / 1_000_000.0);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
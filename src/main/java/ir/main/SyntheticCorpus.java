@@ -0,0 +1,135 @@
+package ir.main;
+
+import ir.model.Dictionary;
+import ir.model.Term;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Collezioni sintetiche riproducibili per i benchmark, con frequenze dei termini
+ * distribuite approssimativamente secondo la legge di Zipf: l'indice di ogni occorrenza
+ * nel vocabolario è {@code floor(V^u) - 1} con u uniforme in [0, 1). Lo stesso seme
+ * produce sempre lo stesso indice. I dizionari vengono costruiti direttamente, senza
+ * tokenizzazione, stemming né stop list.
+ */
+public class SyntheticCorpus {
+    /**
+     * Numero predefinito di documenti.
+     */
+    public static final int DEFAULT_DOCUMENTS = 20000;
+
+    private static final int RANKING_VOCABULARY = 20000;
+    private static final int RANKING_MAX_LENGTH = 300;
+    private static final long VOCABULARY_SEED = 7;
+    private static final long RANKING_SEED = 1;
+    private static final long QUERY_SEED = 5;
+
+    private static final int INDEX_VOCABULARY = 200000;
+    private static final int INDEX_MIN_LENGTH = 20;
+    private static final int INDEX_MAX_EXTRA_LENGTH = 300;
+    private static final long INDEX_SEED = 3;
+
+    private SyntheticCorpus() {
+    }
+
+    /**
+     * Costruisce la collezione usata da {@link RankingBenchmark}: vocabolario di 20000
+     * termini, documenti da 1 a 300 occorrenze, ID da 1.
+     *
+     * @param documentCount Il numero di documenti
+     * @return Il dizionario della collezione
+     */
+    public static Dictionary rankingDictionary(int documentCount) {
+        Random letters = new Random(VOCABULARY_SEED);
+        String[] vocabulary = new String[RANKING_VOCABULARY];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 3 + letters.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                text.append((char) ('a' + letters.nextInt(26)));
+            }
+            // Il suffisso rende i termini distinti
+            int id = i;
+            do {
+                text.append((char) ('a' + id % 26));
+                id /= 26;
+            } while (id > 0);
+            vocabulary[i] = text.toString();
+        }
+
+        Random random = new Random(RANKING_SEED);
+        Dictionary dictionary = new Dictionary();
+        for (int documentId = 1; documentId <= documentCount; documentId++) {
+            dictionary.addDocument(documentId);
+            int length = random.nextInt(RANKING_MAX_LENGTH) + 1;
+            for (int j = 0; j < length; j++) {
+                dictionary.addPosting(vocabulary[zipf(random, RANKING_VOCABULARY)], documentId);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Genera query da 2 a 7 termini per la collezione di {@link #rankingDictionary(int)}:
+     * i termini in posizione pari sono scelti tra i 50 con frequenza di documento più
+     * alta, quelli in posizione dispari tra i primi 2000.
+     *
+     * @param dictionary Il dizionario della collezione
+     * @param queryCount Il numero di query
+     * @return Le query, una stringa di termini separati da spazi per query
+     */
+    public static List<String> rankingQueries(Dictionary dictionary, int queryCount) {
+        List<String> terms = new ArrayList<>(dictionary.getTerms());
+        terms.sort((a, b) -> Integer.compare(frequency(dictionary, b), frequency(dictionary, a)));
+
+        Random random = new Random(QUERY_SEED);
+        List<String> queries = new ArrayList<>(queryCount);
+        for (int q = 0; q < queryCount; q++) {
+            StringBuilder query = new StringBuilder();
+            int length = 2 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    query.append(' ');
+                }
+                query.append(terms.get(random.nextInt(Math.min(terms.size(), i % 2 == 0 ? 50 : 2000))));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Costruisce la collezione usata da {@link IndexBenchmark}: vocabolario di 200000
+     * termini di sole lettere, documenti da 20 a 319 occorrenze, ID da 0.
+     *
+     * @param documentCount Il numero di documenti
+     * @return Il dizionario della collezione
+     */
+    public static Dictionary indexDictionary(int documentCount) {
+        Random random = new Random(INDEX_SEED);
+        Dictionary dictionary = new Dictionary();
+        for (int documentId = 0; documentId < documentCount; documentId++) {
+            dictionary.addDocument(documentId);
+            int length = INDEX_MIN_LENGTH + random.nextInt(INDEX_MAX_EXTRA_LENGTH);
+            for (int j = 0; j < length; j++) {
+                int rank = (int) Math.floor(Math.pow(INDEX_VOCABULARY, random.nextDouble()));
+                String text = "w" + Integer.toString(rank, 26).replaceAll("[0-9]", "x");
+                dictionary.addPosting(text, documentId);
+            }
+        }
+        dictionary.getDocumentNorms();
+        return dictionary;
+    }
+
+    private static int zipf(Random random, int vocabularySize) {
+        int index = (int) Math.floor(Math.pow(vocabularySize, random.nextDouble())) - 1;
+        return Math.max(0, Math.min(vocabularySize - 1, index));
+    }
+
+    private static int frequency(Dictionary dictionary, String text) {
+        Term term = dictionary.getTerm(text);
+        return term.getDocumentFrequency();
+    }
+}
@@ -0,0 +1,315 @@
+package ir.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Statistiche della collezione aggiornate durante l'indicizzazione: numero totale di
+ * occorrenze, termini più frequenti per frequenza di collezione e di documento e curva di
+ * crescita del vocabolario. I termini più frequenti sono conservati in due min-heap di
+ * dimensione limitata; poiché le frequenze possono solo crescere, un termine fuori dallo
+ * heap non supera mai il minimo dello heap e il risultato è esatto. Ogni heap tiene la
+ * posizione dei suoi termini, così l'aggiornamento di un termine presente costa O(log k)
+ * invece di una scansione dello heap. La curva di crescita
+ * ha un numero limitato di punti a intervalli regolari: quando è piena si tiene un punto
+ * su due e l'intervallo raddoppia. Tutte le interrogazioni hanno un costo che dipende
+ * solo dalla capacità degli heap e non dalla dimensione del vocabolario.
+ */
+public class CollectionStatistics {
+    /**
+     * Numero predefinito di termini più frequenti conservati.
+     */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Numero massimo di punti della curva di crescita del vocabolario.
+     */
+    public static final int MAX_GROWTH_POINTS = 128;
+
+    private static final long INITIAL_SAMPLE_INTERVAL = 64;
+    private static final ToIntFunction<Term> COLLECTION_FREQUENCY = Term::getCollectionFrequency;
+    private static final ToIntFunction<Term> DOCUMENT_FREQUENCY = Term::getDocumentFrequency;
+
+    private final TermHeap byCollectionFrequency;
+    private final TermHeap byDocumentFrequency;
+    private long totalTokens;
+    private long[] growthTokens;
+    private int[] growthVocabulary;
+    private int growthSize;
+    private long sampleInterval;
+
+    /**
+     * Costruttore per statistiche vuote.
+     *
+     * @param capacity Il numero di termini più frequenti da conservare
+     * @throws IllegalArgumentException Se la capacità non è positiva
+     */
+    public CollectionStatistics(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacità delle statistiche deve essere positiva: " + capacity);
+        }
+        this.byCollectionFrequency = new TermHeap(capacity, COLLECTION_FREQUENCY);
+        this.byDocumentFrequency = new TermHeap(capacity, DOCUMENT_FREQUENCY);
+        this.growthTokens = new long[MAX_GROWTH_POINTS];
+        this.growthVocabulary = new int[MAX_GROWTH_POINTS];
+        this.sampleInterval = INITIAL_SAMPLE_INTERVAL;
+    }
+
+    /**
+     * Ricostruisce le statistiche salvate insieme all'indice.
+     *
+     * @param capacity Il numero di termini più frequenti da conservare
+     * @param topTerms I termini più frequenti salvati, per frequenza di collezione o di documento
+     * @param totalTokens Il numero totale di occorrenze
+     * @param growthTokens Le occorrenze di ogni punto della curva di crescita
+     * @param growthVocabulary La dimensione del vocabolario di ogni punto
+     * @param sampleInterval L'intervallo tra i punti della curva
+     */
+    public CollectionStatistics(int capacity, List<Term> topTerms, long totalTokens, long[] growthTokens,
+                                int[] growthVocabulary, long sampleInterval) {
+        this(capacity);
+        for (Term term : topTerms) {
+            update(term);
+        }
+        this.totalTokens = totalTokens;
+        int points = Math.min(growthTokens.length, MAX_GROWTH_POINTS);
+        System.arraycopy(growthTokens, 0, this.growthTokens, 0, points);
+        System.arraycopy(growthVocabulary, 0, this.growthVocabulary, 0, points);
+        this.growthSize = points;
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Ricalcola le statistiche con una scansione del dizionario, ad esempio per un indice
+     * salvato senza statistiche. La curva di crescita non è ricostruibile e resta vuota.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @return Le statistiche della collezione
+     */
+    public static CollectionStatistics compute(Dictionary dictionary) {
+        CollectionStatistics statistics = new CollectionStatistics(DEFAULT_CAPACITY);
+        for (String termText : dictionary.getTerms()) {
+            Term term = dictionary.getTerm(termText);
+            statistics.totalTokens += term.getCollectionFrequency();
+            statistics.update(term);
+        }
+        return statistics;
+    }
+
+    /**
+     * Registra le occorrenze di un termine in un documento, dopo che le frequenze del
+     * termine sono state aggiornate.
+     *
+     * @param term Il termine aggiornato
+     * @param frequency Il numero di occorrenze aggiunte
+     * @param vocabularySize La dimensione corrente del vocabolario
+     */
+    public void addPostings(Term term, int frequency, int vocabularySize) {
+        totalTokens += frequency;
+        update(term);
+
+        if (growthSize == 0 || totalTokens >= growthTokens[growthSize - 1] + sampleInterval) {
+            if (growthSize == MAX_GROWTH_POINTS) {
+                // Curva piena: si tiene un punto su due e l'intervallo raddoppia
+                for (int i = 0; i < MAX_GROWTH_POINTS / 2; i++) {
+                    growthTokens[i] = growthTokens[2 * i + 1];
+                    growthVocabulary[i] = growthVocabulary[2 * i + 1];
+                }
+                growthSize = MAX_GROWTH_POINTS / 2;
+                sampleInterval *= 2;
+            }
+            growthTokens[growthSize] = totalTokens;
+            growthVocabulary[growthSize] = vocabularySize;
+            growthSize++;
+        }
+    }
+
+    private void update(Term term) {
+        byCollectionFrequency.offer(term);
+        byDocumentFrequency.offer(term);
+    }
+
+    /**
+     * Restituisce i termini con la frequenza di collezione più alta, in ordine decrescente.
+     *
+     * @param count Il numero di termini richiesti, al più la capacità
+     * @return I termini più frequenti
+     */
+    public List<Term> getTopTermsByCollectionFrequency(int count) {
+        return byCollectionFrequency.sorted(count);
+    }
+
+    /**
+     * Restituisce i termini con la frequenza di documento più alta, in ordine decrescente.
+     *
+     * @param count Il numero di termini richiesti, al più la capacità
+     * @return I termini presenti nel maggior numero di documenti
+     */
+    public List<Term> getTopTermsByDocumentFrequency(int count) {
+        return byDocumentFrequency.sorted(count);
+    }
+
+    /**
+     * Restituisce tutti i termini conservati negli heap, senza ripetizioni, ad esempio per
+     * salvarli insieme all'indice.
+     *
+     * @return I termini più frequenti
+     */
+    public List<Term> getTopTerms() {
+        List<Term> result = new ArrayList<>(Arrays.asList(byCollectionFrequency.terms)
+                .subList(0, byCollectionFrequency.size));
+        for (int i = 0; i < byDocumentFrequency.size; i++) {
+            if (!result.contains(byDocumentFrequency.terms[i])) {
+                result.add(byDocumentFrequency.terms[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il numero di termini più frequenti conservati.
+     *
+     * @return La capacità degli heap
+     */
+    public int getCapacity() {
+        return byCollectionFrequency.terms.length;
+    }
+
+    /**
+     * Restituisce il numero totale di occorrenze indicizzate nella collezione.
+     *
+     * @return Il numero di occorrenze
+     */
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    /**
+     * Restituisce la lunghezza media dei documenti.
+     *
+     * @param documentCount Il numero di documenti della collezione
+     * @return La lunghezza media, oppure 0 se la collezione è vuota
+     */
+    public double getAverageDocumentLength(int documentCount) {
+        return documentCount > 0 ? (double) totalTokens / documentCount : 0.0;
+    }
+
+    /**
+     * Restituisce il numero di occorrenze di ogni punto della curva di crescita.
+     *
+     * @return Le ascisse della curva
+     */
+    public long[] getGrowthTokens() {
+        return Arrays.copyOf(growthTokens, growthSize);
+    }
+
+    /**
+     * Restituisce la dimensione del vocabolario in ogni punto della curva di crescita.
+     *
+     * @return Le ordinate della curva
+     */
+    public int[] getGrowthVocabulary() {
+        return Arrays.copyOf(growthVocabulary, growthSize);
+    }
+
+    /**
+     * Restituisce l'intervallo in occorrenze tra i punti della curva di crescita.
+     *
+     * @return L'intervallo di campionamento
+     */
+    public long getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Min-heap di dimensione limitata dei termini per una frequenza, con la posizione di
+     * ogni termine indicizzata per testo.
+     */
+    private static class TermHeap {
+        private final Term[] terms;
+        private final ToIntFunction<Term> key;
+        private final Map<String, Integer> positions;
+        private int size;
+
+        TermHeap(int capacity, ToIntFunction<Term> key) {
+            this.terms = new Term[capacity];
+            this.key = key;
+            this.positions = new HashMap<>(capacity * 2);
+        }
+
+        /**
+         * Propone un termine dopo che la sua frequenza è cresciuta.
+         */
+        void offer(Term term) {
+            int value = key.applyAsInt(term);
+            if (size == terms.length && terms[0] != term && value <= key.applyAsInt(terms[0])) {
+                // Un termine già presente e cresciuto supera il minimo, quindi questo non è nello heap
+                return;
+            }
+
+            Integer position = positions.get(term.getText());
+            if (position != null) {
+                // Il valore è cresciuto: il termine scende verso le foglie
+                terms[position] = term;
+                siftDown(position);
+            } else if (size < terms.length) {
+                terms[size] = term;
+                siftUp(size++);
+            } else {
+                positions.remove(terms[0].getText());
+                terms[0] = term;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int index) {
+            Term term = terms[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (key.applyAsInt(terms[parent]) <= key.applyAsInt(term)) {
+                    break;
+                }
+                place(terms[parent], index);
+                index = parent;
+            }
+            place(term, index);
+        }
+
+        private void siftDown(int index) {
+            Term term = terms[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && key.applyAsInt(terms[child + 1]) < key.applyAsInt(terms[child])) {
+                    child++;
+                }
+                if (key.applyAsInt(terms[child]) >= key.applyAsInt(term)) {
+                    break;
+                }
+                place(terms[child], index);
+                index = child;
+            }
+            place(term, index);
+        }
+
+        private void place(Term term, int index) {
+            terms[index] = term;
+            positions.put(term.getText(), index);
+        }
+
+        List<Term> sorted(int count) {
+            Term[] sorted = Arrays.copyOf(terms, size);
+            Arrays.sort(sorted, Comparator.comparingInt(key).reversed().thenComparing(Term::getText));
+            List<Term> result = new ArrayList<>(Arrays.asList(sorted).subList(0, Math.min(count, size)));
+            return Collections.unmodifiableList(result);
+        }
+    }
+}
@@ -1,24 +1,63 @@
 package ir.model;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.function.Function;
 
 /**
  * Rappresenta il dizionario dell'indice invertito.
+ * Durante la costruzione i termini sono assegnati a ID interi da una {@link TermHash} e
+ * statistiche e liste di posting sono conservate in array indicizzati per ID; l'ordine
+ * alfabetico viene calcolato solo quando serve, e una volta per tutte al congelamento.
+ * Dopo {@link #freeze()} i termini sono conservati in un {@link FrozenDictionary}
+ * compatto e il dizionario diventa di sola lettura.
  */
 public class Dictionary {
-    private Map<String, Term> terms;
-    private Map<String, PostingList> postingLists;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private TermHash termIds;
+    private Term[] terms;
+    private PostingList[] postingLists;
+    private String[] sortedTerms;
+    private LiveDocs liveDocs;
+    private DocumentNorms documentNorms;
+    private DocumentLengths documentLengths;
+    private CollectionStatistics statistics;
+    private FrozenDictionary frozen;
+    private long generation;
+    private final Map<Class<?>, Object> derived = new HashMap<>();
+    private long derivedGeneration;
 
     /**
      * Costruttore per un nuovo dizionario.
      */
     public Dictionary() {
-        // Utilizziamo TreeMap per mantenere i termini ordinati alfabeticamente
-        this.terms = new TreeMap<>();
-        this.postingLists = new HashMap<>();
+        this.termIds = new TermHash();
+        this.terms = new Term[INITIAL_CAPACITY];
+        this.postingLists = new PostingList[INITIAL_CAPACITY];
+        this.liveDocs = new LiveDocs();
+        this.documentLengths = new DocumentLengths();
+        this.statistics = new CollectionStatistics(CollectionStatistics.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Costruisce un dizionario di sola lettura a partire da un vocabolario già congelato,
+     * ad esempio quando l'indice viene caricato da file. Bitmap, lunghezze, norme e
+     * statistiche vanno impostate con i rispettivi metodi, altrimenti vengono ricalcolate.
+     * 
+     * @param frozen Il vocabolario congelato
+     */
+    public Dictionary(FrozenDictionary frozen) {
+        this.frozen = frozen;
+        this.liveDocs = new LiveDocs();
     }
 
     /**
@@ -28,15 +67,158 @@ public class Dictionary {
      * @return Il termine aggiunto o aggiornato
      */
     public Term addTerm(String termText) {
-        Term term = terms.get(termText);
-        
-        if (term == null) {
-            term = new Term(termText);
-            terms.put(termText, term);
-            postingLists.put(termText, new PostingList());
+        checkNotFrozen();
+        int termId = register(termIds.add(termText));
+        return terms[termId];
+    }
+
+    /**
+     * Aggiunge un termine letto da un buffer di caratteri, senza allocare stringhe se il
+     * termine esiste già, e ne restituisce l'ID di costruzione. L'ID resta valido finché
+     * il dizionario non viene congelato.
+     * 
+     * @param buffer Il buffer che contiene il termine
+     * @param offset La posizione del primo carattere
+     * @param length Il numero di caratteri
+     * @return L'ID del termine
+     */
+    public int addTerm(char[] buffer, int offset, int length) {
+        checkNotFrozen();
+        return register(termIds.add(buffer, offset, length));
+    }
+
+    /**
+     * Aggiunge un termine con statistiche e lista di posting già calcolate, ad esempio
+     * quando l'indice viene caricato da file: le statistiche non vengono ricalcolate e la
+     * lista non viene copiata. Se il termine esiste già viene sostituito.
+     * 
+     * @param term Il termine con le sue statistiche
+     * @param postingList La lista di posting del termine
+     */
+    public void addTerm(Term term, PostingList postingList) {
+        checkNotFrozen();
+        int termId = register(termIds.add(term.getText()));
+        terms[termId] = term;
+        postingLists[termId] = postingList;
+        generation++;
+    }
+
+    /**
+     * Crea statistiche e lista di posting di un termine appena inserito nella tabella.
+     */
+    private int register(int termId) {
+        if (termId == terms.length) {
+            terms = Arrays.copyOf(terms, termId * 2);
+            postingLists = Arrays.copyOf(postingLists, termId * 2);
         }
-        
-        return term;
+        if (terms[termId] == null) {
+            terms[termId] = new Term(termIds.getText(termId));
+            postingLists[termId] = new PostingList();
+            sortedTerms = null;
+            generation++;
+        }
+        return termId;
+    }
+
+    /**
+     * Registra un documento dell'indice, anche se non contiene termini indicizzati.
+     * 
+     * @param documentId L'ID del documento
+     */
+    public void addDocument(int documentId) {
+        checkNotFrozen();
+        liveDocs.add(documentId);
+        documentNorms = null;
+        generation++;
+    }
+
+    /**
+     * Restituisce la bitmap di tutti i documenti dell'indice.
+     * 
+     * @return La bitmap dei documenti
+     */
+    public LiveDocs getLiveDocs() {
+        return liveDocs;
+    }
+
+    /**
+     * Sostituisce la bitmap dei documenti, ad esempio quando l'indice viene caricato da file.
+     * 
+     * @param liveDocs La nuova bitmap dei documenti
+     */
+    public void setLiveDocs(LiveDocs liveDocs) {
+        this.liveDocs = liveDocs;
+        this.documentNorms = null;
+        generation++;
+    }
+
+    /**
+     * Restituisce le norme TF-IDF dei documenti, calcolandole se l'indice è cambiato
+     * dall'ultimo calcolo.
+     * 
+     * @return Le norme dei documenti
+     */
+    public DocumentNorms getDocumentNorms() {
+        if (documentNorms == null) {
+            documentNorms = DocumentNorms.compute(this);
+        }
+        return documentNorms;
+    }
+
+    /**
+     * Imposta le norme dei documenti precalcolate, ad esempio quando l'indice viene caricato da file.
+     * 
+     * @param documentNorms Le norme dei documenti
+     */
+    public void setDocumentNorms(DocumentNorms documentNorms) {
+        this.documentNorms = documentNorms;
+        generation++;
+    }
+
+    /**
+     * Restituisce la tabella delle lunghezze dei documenti, aggiornata a ogni posting aggiunto.
+     * 
+     * @return Le lunghezze dei documenti
+     */
+    public DocumentLengths getDocumentLengths() {
+        if (documentLengths == null) {
+            documentLengths = DocumentLengths.compute(this);
+        }
+        return documentLengths;
+    }
+
+    /**
+     * Imposta le lunghezze dei documenti, ad esempio quando l'indice viene caricato da file.
+     * Con null le lunghezze vengono ricalcolate dai posting al primo accesso.
+     * 
+     * @param documentLengths Le lunghezze dei documenti
+     */
+    public void setDocumentLengths(DocumentLengths documentLengths) {
+        this.documentLengths = documentLengths;
+        generation++;
+    }
+
+    /**
+     * Restituisce le statistiche della collezione, aggiornate a ogni posting aggiunto.
+     * 
+     * @return Le statistiche della collezione
+     */
+    public CollectionStatistics getCollectionStatistics() {
+        if (statistics == null) {
+            statistics = CollectionStatistics.compute(this);
+        }
+        return statistics;
+    }
+
+    /**
+     * Imposta le statistiche della collezione, ad esempio quando l'indice viene caricato da file.
+     * Con null le statistiche vengono ricalcolate dal dizionario al primo accesso.
+     * 
+     * @param statistics Le statistiche della collezione
+     */
+    public void setCollectionStatistics(CollectionStatistics statistics) {
+        this.statistics = statistics;
+        generation++;
     }
 
     /**
@@ -46,18 +228,69 @@ public class Dictionary {
      * @param documentId L'ID del documento
      */
     public void addPosting(String termText, int documentId) {
-        Term term = addTerm(termText);
-        PostingList postingList = postingLists.get(termText);
+        addTerm(termText);
+        addPostings(termIds.find(termText), documentId, 1);
+    }
+
+    /**
+     * Aggiunge in un'unica operazione tutte le occorrenze di un termine in un documento.
+     * 
+     * @param termId L'ID del termine restituito da {@link #addTerm(char[], int, int)}
+     * @param documentId L'ID del documento
+     * @param frequency Il numero di occorrenze del termine nel documento
+     */
+    public void addPostings(int termId, int documentId, int frequency) {
+        checkNotFrozen();
+        Term term = terms[termId];
+        PostingList postingList = postingLists[termId];
         
         // Se questo è il primo posting per questo documento, incrementa la document frequency
-        Posting existingPosting = postingList.findPosting(documentId);
-        if (existingPosting == null) {
+        int size = postingList.size();
+        postingList.addPosting(documentId, frequency);
+        if (postingList.size() > size) {
             term.incrementDocumentFrequency();
         }
         
-        // Aggiungi il posting e incrementa la collection frequency
-        postingList.addPosting(documentId);
-        term.incrementCollectionFrequency();
+        term.incrementCollectionFrequency(frequency);
+        liveDocs.add(documentId);
+        getDocumentLengths().add(documentId, frequency);
+        getCollectionStatistics().addPostings(term, frequency, termIds.size());
+        documentNorms = null;
+        generation++;
+    }
+
+    /**
+     * Restituisce la generazione del dizionario, incrementata a ogni modifica fatta con i
+     * metodi del dizionario: chi conserva risultati calcolati sull'indice può confrontarla
+     * per sapere se sono ancora validi.
+     * 
+     * @return La generazione corrente
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Restituisce una struttura derivata dal dizionario, ad esempio un indice dei termini
+     * usato dalle query, costruendola alla prima richiesta. Ogni struttura è costruita una
+     * volta sola per generazione e condivisa da tutti gli utenti del dizionario; dopo una
+     * modifica viene ricostruita alla richiesta successiva.
+     * 
+     * @param type Il tipo della struttura, che la identifica
+     * @param builder La funzione che costruisce la struttura dal dizionario
+     * @return La struttura della generazione corrente
+     */
+    public synchronized <T> T getDerived(Class<T> type, Function<Dictionary, T> builder) {
+        if (derivedGeneration != generation) {
+            derived.clear();
+            derivedGeneration = generation;
+        }
+        Object structure = derived.get(type);
+        if (structure == null) {
+            structure = builder.apply(this);
+            derived.put(type, structure);
+        }
+        return type.cast(structure);
     }
 
     /**
@@ -67,17 +300,45 @@ public class Dictionary {
      * @return true se il termine esiste, false altrimenti
      */
     public boolean containsTerm(String termText) {
-        return terms.containsKey(termText);
+        if (frozen != null) {
+            return frozen.getTermId(termText) >= 0;
+        }
+        return termIds.find(termText) >= 0;
+    }
+
+    /**
+     * Restituisce l'ID di un termine. Gli ID cambiano quando il dizionario viene congelato.
+     * 
+     * @param termText Il testo del termine
+     * @return L'ID del termine, oppure -1 se il termine non esiste
+     */
+    public int getTermId(String termText) {
+        if (frozen != null) {
+            return frozen.getTermId(termText);
+        }
+        return termIds.find(termText);
     }
 
     /**
      * Restituisce un termine dal dizionario.
+     * Dopo il congelamento viene restituita una copia delle statistiche del termine.
      * 
      * @param termText Il testo del termine
      * @return Il termine o null se non esiste
      */
     public Term getTerm(String termText) {
-        return terms.get(termText);
+        if (frozen != null) {
+            int termId = frozen.getTermId(termText);
+            if (termId < 0) {
+                return null;
+            }
+            Term term = new Term(termText);
+            term.setDocumentFrequency(frozen.getDocumentFrequency(termId));
+            term.setCollectionFrequency(frozen.getCollectionFrequency(termId));
+            return term;
+        }
+        int termId = termIds.find(termText);
+        return termId >= 0 ? terms[termId] : null;
     }
 
     /**
@@ -87,16 +348,64 @@ public class Dictionary {
      * @return La lista di posting o null se il termine non esiste
      */
     public PostingList getPostingList(String termText) {
-        return postingLists.get(termText);
+        if (frozen != null) {
+            int termId = frozen.getTermId(termText);
+            return termId >= 0 ? frozen.getPostingList(termId) : null;
+        }
+        int termId = termIds.find(termText);
+        return termId >= 0 ? postingLists[termId] : null;
     }
 
     /**
-     * Restituisce tutti i termini nel dizionario.
+     * Restituisce tutti i termini nel dizionario, in ordine alfabetico.
      * 
      * @return L'insieme di tutti i termini
      */
     public Set<String> getTerms() {
-        return terms.keySet();
+        if (frozen != null) {
+            return new FrozenTermSet();
+        }
+        return new SortedTermSet(sortedTerms());
+    }
+
+    /**
+     * Restituisce i termini che iniziano con un prefisso, in ordine alfabetico,
+     * con una scansione dell'intervallo corrispondente nel dizionario ordinato.
+     * 
+     * @param prefix Il prefisso
+     * @return I termini con il prefisso indicato
+     */
+    public List<String> getTermsWithPrefix(String prefix) {
+        List<String> result = new ArrayList<>();
+        if (frozen != null) {
+            int[] range = frozen.prefixRange(prefix);
+            for (int termId = range[0]; termId < range[1]; termId++) {
+                result.add(frozen.getText(termId));
+            }
+        } else {
+            String[] sorted = sortedTerms();
+            for (int i = ceilingIndex(sorted, prefix); i < sorted.length && sorted[i].startsWith(prefix); i++) {
+                result.add(sorted[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il primo termine del dizionario maggiore o uguale al testo indicato.
+     * Permette di scorrere il dizionario in ordine saltando interi intervalli di termini.
+     * 
+     * @param text Il testo da cercare
+     * @return Il primo termine non minore del testo, oppure null se non esiste
+     */
+    public String ceilingTerm(String text) {
+        if (frozen != null) {
+            int termId = frozen.ceiling(text);
+            return termId < frozen.size() ? frozen.getText(termId) : null;
+        }
+        String[] sorted = sortedTerms();
+        int index = ceilingIndex(sorted, text);
+        return index < sorted.length ? sorted[index] : null;
     }
 
     /**
@@ -105,35 +414,218 @@ public class Dictionary {
      * @return Il numero di termini
      */
     public int size() {
-        return terms.size();
+        return frozen != null ? frozen.size() : termIds.size();
+    }
+
+    /**
+     * Restituisce i testi dei termini in ordine alfabetico, ordinandoli solo se sono stati
+     * aggiunti termini dall'ultima richiesta.
+     */
+    private String[] sortedTerms() {
+        if (sortedTerms == null) {
+            String[] sorted = termIds.getTexts();
+            Arrays.sort(sorted);
+            sortedTerms = sorted;
+        }
+        return sortedTerms;
+    }
+
+    private static int ceilingIndex(String[] sorted, String text) {
+        int index = Arrays.binarySearch(sorted, text);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Congela il dizionario: i termini vengono ordinati e codificati in un
+     * {@link FrozenDictionary} e le strutture di costruzione vengono rilasciate. Da questo momento il dizionario è di sola
+     * lettura. Se il dizionario è già congelato non fa nulla.
+     * 
+     * @return Il vocabolario congelato
+     */
+    public FrozenDictionary freeze() {
+        if (frozen == null) {
+            frozen = FrozenDictionary.build(termIds.getTexts(), terms, postingLists);
+            getDocumentLengths();
+            getCollectionStatistics();
+            termIds = null;
+            terms = null;
+            postingLists = null;
+            sortedTerms = null;
+            // Il contenuto non cambia, ma gli ID dei termini sì
+            generation++;
+        }
+        return frozen;
+    }
+
+    /**
+     * Restituisce il vocabolario in forma congelata senza modificare il dizionario: se il
+     * dizionario è ancora modificabile i termini vengono ordinati e codificati in
+     * un'istantanea che condivide le liste di posting, ad esempio per salvarlo su file.
+     * 
+     * @return Il vocabolario congelato
+     */
+    public FrozenDictionary toFrozenDictionary() {
+        if (frozen != null) {
+            return frozen;
+        }
+        return FrozenDictionary.build(termIds.getTexts(), terms, postingLists);
+    }
+
+    /**
+     * Verifica se il dizionario è stato congelato.
+     * 
+     * @return true se il dizionario è di sola lettura
+     */
+    public boolean isFrozen() {
+        return frozen != null;
+    }
+
+    /**
+     * Restituisce il vocabolario congelato.
+     * 
+     * @return Il vocabolario congelato, oppure null se il dizionario è ancora modificabile
+     */
+    public FrozenDictionary getFrozenDictionary() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen != null) {
+            throw new IllegalStateException("Il dizionario è congelato e non può essere modificato");
+        }
     }
 
     /**
-     * Restituisce una mappa delle frequenze dei documenti per tutti i termini.
+     * Restituisce una vista in sola lettura delle frequenze dei documenti di tutti i termini.
+     * La vista non copia il vocabolario: ogni accesso interroga il dizionario.
      * 
      * @return Una mappa da termini a frequenze di documenti
      */
     public Map<String, Integer> getDocumentFrequencies() {
-        Map<String, Integer> frequencies = new HashMap<>();
-        
-        for (Map.Entry<String, Term> entry : terms.entrySet()) {
-            frequencies.put(entry.getKey(), entry.getValue().getDocumentFrequency());
-        }
-        
-        return frequencies;
+        return new DocumentFrequencyMap();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         
-        for (String termText : terms.keySet()) {
-            Term term = terms.get(termText);
-            PostingList postingList = postingLists.get(termText);
+        for (String termText : getTerms()) {
+            Term term = getTerm(termText);
+            PostingList postingList = getPostingList(termText);
             
             sb.append(term).append(" -> ").append(postingList).append("\n");
         }
         
         return sb.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Vista delle frequenze dei documenti, in ordine alfabetico dei termini.
+     */
+    private class DocumentFrequencyMap extends AbstractMap<String, Integer> {
+        @Override
+        public Set<Map.Entry<String, Integer>> entrySet() {
+            Set<String> texts = getTerms();
+            return new AbstractSet<Map.Entry<String, Integer>>() {
+                @Override
+                public Iterator<Map.Entry<String, Integer>> iterator() {
+                    Iterator<String> iterator = texts.iterator();
+                    return new Iterator<Map.Entry<String, Integer>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Integer> next() {
+                            String text = iterator.next();
+                            return new SimpleImmutableEntry<>(text, getTerm(text).getDocumentFrequency());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return texts.size();
+                }
+            };
+        }
+
+        @Override
+        public Integer get(Object key) {
+            Term term = key instanceof String ? getTerm((String) key) : null;
+            return term != null ? term.getDocumentFrequency() : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && containsTerm((String) key);
+        }
+
+        @Override
+        public int size() {
+            return Dictionary.this.size();
+        }
+    }
+
+    /**
+     * Vista ordinata dei termini di un dizionario in costruzione.
+     */
+    private class SortedTermSet extends AbstractSet<String> {
+        private final String[] sorted;
+
+        SortedTermSet(String[] sorted) {
+            this.sorted = sorted;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return Arrays.asList(sorted).iterator();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && termIds.find((String) o) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return sorted.length;
+        }
+    }
+
+    /**
+     * Vista dei termini di un dizionario congelato, in ordine di ID.
+     */
+    private class FrozenTermSet extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int termId = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return termId < frozen.size();
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return frozen.getText(termId++);
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && frozen.getTermId((String) o) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return frozen.size();
+        }
+    }
+}
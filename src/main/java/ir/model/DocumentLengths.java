@@ -0,0 +1,112 @@
+package ir.model;
+
+import java.util.Arrays;
+
+/**
+ * Tabella compatta delle lunghezze dei documenti (numero di termini indicizzati),
+ * indicizzata per ID documento e mantenuta in memoria durante le ricerche.
+ */
+public class DocumentLengths {
+    private int[] lengths;
+    private long totalLength;
+
+    /**
+     * Costruttore per una nuova tabella vuota.
+     */
+    public DocumentLengths() {
+        this.lengths = new int[16];
+        this.totalLength = 0;
+    }
+
+    /**
+     * Costruisce la tabella a partire da un array già calcolato.
+     * 
+     * @param lengths Le lunghezze indicizzate per ID documento, che non vengono copiate
+     */
+    public DocumentLengths(int[] lengths) {
+        this.lengths = lengths;
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        this.totalLength = total;
+    }
+
+    /**
+     * Ricalcola le lunghezze dei documenti sommando le frequenze dei loro posting.
+     * 
+     * @param dictionary Il dizionario dell'indice
+     * @return Le lunghezze dei documenti
+     */
+    public static DocumentLengths compute(Dictionary dictionary) {
+        DocumentLengths documentLengths = new DocumentLengths();
+        for (String termText : dictionary.getTerms()) {
+            PostingList postingList = dictionary.getPostingList(termText);
+            for (int i = 0; i < postingList.size(); i++) {
+                documentLengths.add(postingList.getDocumentId(i), postingList.getFrequency(i));
+            }
+        }
+        return documentLengths;
+    }
+
+    /**
+     * Incrementa la lunghezza di un documento.
+     * 
+     * @param documentId L'ID del documento
+     * @param count Il numero di termini da aggiungere
+     */
+    public void add(int documentId, int count) {
+        if (documentId >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(documentId + 1, lengths.length * 2));
+        }
+        lengths[documentId] += count;
+        totalLength += count;
+    }
+
+    /**
+     * Restituisce la lunghezza di un documento.
+     * 
+     * @param documentId L'ID del documento
+     * @return Il numero di termini indicizzati nel documento
+     */
+    public int get(int documentId) {
+        return documentId >= 0 && documentId < lengths.length ? lengths[documentId] : 0;
+    }
+
+    /**
+     * Restituisce il numero totale di termini indicizzati nella collezione.
+     * 
+     * @return La somma delle lunghezze dei documenti
+     */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Restituisce la lunghezza media dei documenti.
+     * 
+     * @param documentCount Il numero di documenti della collezione
+     * @return La lunghezza media, oppure 0 se la collezione è vuota
+     */
+    public double getAverageLength(int documentCount) {
+        return documentCount > 0 ? (double) totalLength / documentCount : 0.0;
+    }
+
+    /**
+     * Restituisce il numero di posizioni della tabella (ID massimo + 1).
+     * 
+     * @return La capacità della tabella
+     */
+    public int capacity() {
+        return lengths.length;
+    }
+
+    /**
+     * Restituisce le lunghezze come array, ad esempio per la serializzazione.
+     * 
+     * @return Una copia dell'array delle lunghezze
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(lengths, lengths.length);
+    }
+}
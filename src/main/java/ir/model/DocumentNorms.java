@@ -0,0 +1,92 @@
+package ir.model;
+
+import java.util.Arrays;
+
+/**
+ * Norme euclidee dei vettori TF-IDF dei documenti, indicizzate per ID documento.
+ * Il peso di un termine t in un documento d è (1 + log10 tf) * log10(N / df).
+ */
+public class DocumentNorms {
+    private final float[] norms;
+
+    /**
+     * Costruisce le norme a partire da un array già calcolato.
+     * 
+     * @param norms Le norme indicizzate per ID documento, che non vengono copiate
+     */
+    public DocumentNorms(float[] norms) {
+        this.norms = norms;
+    }
+
+    /**
+     * Calcola le norme di tutti i documenti scorrendo una volta le liste di posting.
+     * 
+     * @param dictionary Il dizionario dell'indice
+     * @return Le norme dei documenti
+     */
+    public static DocumentNorms compute(Dictionary dictionary) {
+        LiveDocs liveDocs = dictionary.getLiveDocs();
+        int documentCount = liveDocs.cardinality();
+        double[] sums = new double[liveDocs.maxDocument() + 1];
+
+        for (String termText : dictionary.getTerms()) {
+            PostingList postingList = dictionary.getPostingList(termText);
+            double idf = idf(documentCount, postingList.size());
+
+            for (int i = 0; i < postingList.size(); i++) {
+                int documentId = postingList.getDocumentId(i);
+                if (documentId >= sums.length) {
+                    sums = Arrays.copyOf(sums, documentId + 1);
+                }
+                double weight = tf(postingList.getFrequency(i)) * idf;
+                sums[documentId] += weight * weight;
+            }
+        }
+
+        float[] norms = new float[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            norms[i] = (float) Math.sqrt(sums[i]);
+        }
+        return new DocumentNorms(norms);
+    }
+
+    /**
+     * Peso logaritmico della frequenza di un termine.
+     * 
+     * @param frequency La frequenza del termine
+     * @return 1 + log10(frequency), oppure 0 se la frequenza è nulla
+     */
+    public static double tf(int frequency) {
+        return frequency > 0 ? 1.0 + Math.log10(frequency) : 0.0;
+    }
+
+    /**
+     * Inverse document frequency di un termine.
+     * 
+     * @param documentCount Il numero di documenti della collezione
+     * @param documentFrequency Il numero di documenti che contengono il termine
+     * @return log10(N / df), oppure 0 se il termine non compare
+     */
+    public static double idf(int documentCount, int documentFrequency) {
+        return documentFrequency > 0 ? Math.log10((double) documentCount / documentFrequency) : 0.0;
+    }
+
+    /**
+     * Restituisce la norma di un documento.
+     * 
+     * @param documentId L'ID del documento
+     * @return La norma, oppure 0 se il documento non ha termini indicizzati
+     */
+    public float get(int documentId) {
+        return documentId >= 0 && documentId < norms.length ? norms[documentId] : 0f;
+    }
+
+    /**
+     * Restituisce le norme come array, ad esempio per la serializzazione.
+     * 
+     * @return Una copia dell'array delle norme
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(norms, norms.length);
+    }
+}
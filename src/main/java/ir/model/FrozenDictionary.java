@@ -0,0 +1,505 @@
+package ir.model;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Vocabolario in sola lettura, costruito quando l'indice viene congelato.
+ * I termini sono ordinati per byte UTF-8 e codificati con front coding a blocchi di
+ * {@link #BLOCK_SIZE} termini in un unico {@link ByteBuffer}: il primo termine di ogni
+ * blocco è memorizzato per intero, i successivi come lunghezza del prefisso in comune
+ * con il precedente e suffisso. Un indice sparso con la posizione di ogni blocco permette
+ * la ricerca binaria sui primi termini dei blocchi, seguita da una scansione del blocco.
+ * L'ID di un termine è la sua posizione nell'ordine; frequenze e liste di posting sono
+ * indicizzate per ID. I buffer possono essere mappati in memoria da un file: in quel caso
+ * le liste di posting vengono decodificate al bisogno direttamente dalla mappatura e nello
+ * heap restano solo le posizioni dei blocchi, più le liste tenute dall'eventuale
+ * {@link PostingListCache}.
+ */
+public class FrozenDictionary {
+    /**
+     * Numero di termini per blocco.
+     */
+    public static final int BLOCK_SIZE = 16;
+
+    private final ByteBuffer terms;
+    private final int[] blockOffsets;
+    private final int termCount;
+    private final int maxTermLength;
+    private final IntBuffer documentFrequencies;
+    private final IntBuffer collectionFrequencies;
+    private final PostingSource postings;
+    private volatile PostingListCache postingCache;
+
+    /**
+     * Costruttore a partire da termini già codificati.
+     *
+     * @param terms I blocchi di termini codificati
+     * @param blockOffsets La posizione di ogni blocco nel buffer
+     * @param termCount Il numero di termini
+     * @param maxTermLength La lunghezza massima di un termine in byte
+     * @param documentFrequencies Le frequenze di documento, per ID di termine
+     * @param collectionFrequencies Le frequenze di collezione, per ID di termine
+     * @param postingLists Le liste di posting, per ID di termine
+     */
+    public FrozenDictionary(ByteBuffer terms, int[] blockOffsets, int termCount, int maxTermLength,
+                            int[] documentFrequencies, int[] collectionFrequencies, PostingList[] postingLists) {
+        this(terms, blockOffsets, termCount, maxTermLength, IntBuffer.wrap(documentFrequencies),
+                IntBuffer.wrap(collectionFrequencies), termId -> postingLists[termId]);
+    }
+
+    /**
+     * Costruttore a partire da buffer in formato codificato, tipicamente mappati da file,
+     * con le liste di posting fornite da un'origine che può decodificarle al bisogno.
+     *
+     * @param terms I blocchi di termini codificati
+     * @param blockOffsets La posizione di ogni blocco nel buffer
+     * @param termCount Il numero di termini
+     * @param maxTermLength La lunghezza massima di un termine in byte
+     * @param documentFrequencies Le frequenze di documento, per ID di termine
+     * @param collectionFrequencies Le frequenze di collezione, per ID di termine
+     * @param postings L'origine delle liste di posting
+     */
+    public FrozenDictionary(ByteBuffer terms, int[] blockOffsets, int termCount, int maxTermLength,
+                            IntBuffer documentFrequencies, IntBuffer collectionFrequencies, PostingSource postings) {
+        this.terms = terms;
+        this.blockOffsets = blockOffsets;
+        this.termCount = termCount;
+        this.maxTermLength = maxTermLength;
+        this.documentFrequencies = documentFrequencies;
+        this.collectionFrequencies = collectionFrequencies;
+        this.postings = postings;
+    }
+
+    /**
+     * Congela i termini di un dizionario modificabile.
+     *
+     * @param texts I testi dei termini, in qualsiasi ordine
+     * @param terms Le statistiche dei termini, nello stesso ordine dei testi
+     * @param postingLists Le liste di posting dei termini, nello stesso ordine dei testi
+     * @return Il vocabolario congelato
+     */
+    static FrozenDictionary build(String[] texts, Term[] terms, PostingList[] postingLists) {
+        int count = texts.length;
+        byte[][] encoded = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            encoded[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(encoded[a], encoded[b]));
+
+        int[] documentFrequencies = new int[count];
+        int[] collectionFrequencies = new int[count];
+        PostingList[] sortedPostingLists = new PostingList[count];
+        int[] blockOffsets = new int[(count + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        byte[] buffer = new byte[Math.max(16, count * 8)];
+        int position = 0;
+        int maxTermLength = 0;
+        byte[] previous = null;
+
+        for (int id = 0; id < count; id++) {
+            byte[] term = encoded[order[id]];
+            Term stats = terms[order[id]];
+            documentFrequencies[id] = stats.getDocumentFrequency();
+            collectionFrequencies[id] = stats.getCollectionFrequency();
+            sortedPostingLists[id] = postingLists[order[id]];
+            maxTermLength = Math.max(maxTermLength, term.length);
+
+            // Spazio massimo: due interi a lunghezza variabile più il termine intero
+            if (buffer.length - position < term.length + 10) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + term.length + 10));
+            }
+
+            if (id % BLOCK_SIZE == 0) {
+                blockOffsets[id / BLOCK_SIZE] = position;
+                position = writeVInt(buffer, position, term.length);
+                System.arraycopy(term, 0, buffer, position, term.length);
+                position += term.length;
+            } else {
+                int prefix = 0;
+                int limit = Math.min(previous.length, term.length);
+                while (prefix < limit && previous[prefix] == term[prefix]) {
+                    prefix++;
+                }
+                position = writeVInt(buffer, position, prefix);
+                position = writeVInt(buffer, position, term.length - prefix);
+                System.arraycopy(term, prefix, buffer, position, term.length - prefix);
+                position += term.length - prefix;
+            }
+            previous = term;
+        }
+
+        return new FrozenDictionary(ByteBuffer.wrap(Arrays.copyOf(buffer, position)), blockOffsets, count,
+                maxTermLength, documentFrequencies, collectionFrequencies, sortedPostingLists);
+    }
+
+    /**
+     * Restituisce l'ID di un termine.
+     *
+     * @param text Il testo del termine
+     * @return L'ID del termine, oppure -1 se il termine non esiste
+     */
+    public int getTermId(String text) {
+        int result = search(text.getBytes(StandardCharsets.UTF_8));
+        return result >= 0 ? result : -1;
+    }
+
+    /**
+     * Restituisce l'ID del primo termine maggiore o uguale al testo indicato,
+     * nell'ordine dei byte UTF-8.
+     *
+     * @param text Il testo da cercare
+     * @return L'ID del primo termine non minore del testo, oppure {@link #size()} se non esiste
+     */
+    public int ceiling(String text) {
+        return ceilingId(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Restituisce l'intervallo degli ID dei termini che iniziano con un prefisso.
+     * Poiché i termini sono ordinati, l'intervallo è contiguo.
+     *
+     * @param prefix Il prefisso
+     * @return Un array {primo ID, ultimo ID + 1}, vuoto se nessun termine ha il prefisso
+     */
+    public int[] prefixRange(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = ceilingId(key);
+
+        // Il primo termine oltre il prefisso è il successore del prefisso nell'ordine dei byte
+        int end = key.length;
+        while (end > 0 && key[end - 1] == (byte) 0xFF) {
+            end--;
+        }
+        int to;
+        if (end == 0) {
+            to = termCount;
+        } else {
+            byte[] successor = Arrays.copyOf(key, end);
+            successor[end - 1]++;
+            to = ceilingId(successor);
+        }
+        return new int[] {from, Math.max(from, to)};
+    }
+
+    private int ceilingId(byte[] key) {
+        int result = search(key);
+        return result >= 0 ? result : -result - 1;
+    }
+
+    /**
+     * Cerca una chiave: ricerca binaria sui primi termini dei blocchi, poi scansione del blocco.
+     * La scansione non ricostruisce i termini: tiene solo la lunghezza del prefisso in comune
+     * tra il termine corrente e la chiave e la confronta con il prefisso condiviso del termine
+     * successivo.
+     *
+     * @return L'ID del termine se esiste, altrimenti -(punto di inserimento) - 1
+     */
+    private int search(byte[] key) {
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareFirstTerm(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid * BLOCK_SIZE;
+            }
+        }
+        if (high < 0) {
+            return -1;
+        }
+
+        // Il primo termine del blocco è minore della chiave
+        int block = high;
+        int position = blockOffsets[block];
+        int length = readVInt(position);
+        position += vIntSize(length);
+        int matched = 0;
+        int limit = Math.min(length, key.length);
+        while (matched < limit && terms.get(position + matched) == key[matched]) {
+            matched++;
+        }
+        position += length;
+
+        int last = Math.min(termCount, (block + 1) * BLOCK_SIZE);
+        for (int id = block * BLOCK_SIZE + 1; id < last; id++) {
+            int prefix = readVInt(position);
+            position += vIntSize(prefix);
+            int suffix = readVInt(position);
+            position += vIntSize(suffix);
+
+            if (prefix < matched) {
+                // Il termine differisce dal precedente in un byte che coincideva con la chiave
+                return -id - 1;
+            }
+            if (prefix == matched) {
+                int i = 0;
+                while (i < suffix && matched + i < key.length && terms.get(position + i) == key[matched + i]) {
+                    i++;
+                }
+                if (matched + i == key.length) {
+                    return i == suffix ? id : -id - 1;
+                }
+                if (i < suffix && (terms.get(position + i) & 0xFF) > (key[matched + i] & 0xFF)) {
+                    return -id - 1;
+                }
+                matched += i;
+            }
+            // Con prefix > matched il termine coincide con il precedente oltre la chiave, quindi è minore
+            position += suffix;
+        }
+        return -last - 1;
+    }
+
+    /**
+     * Restituisce il testo di un termine.
+     *
+     * @param termId L'ID del termine
+     * @return Il testo del termine
+     */
+    public String getText(int termId) {
+        return new String(termBytes(termId), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Restituisce i testi di più termini, decodificando ogni blocco una sola volta.
+     *
+     * @param termIds Gli ID dei termini, in ordine crescente
+     * @return I testi dei termini, nello stesso ordine
+     */
+    public String[] getTexts(int[] termIds) {
+        String[] texts = new String[termIds.length];
+        byte[] term = new byte[maxTermLength];
+        int current = -1;
+        int position = 0;
+        int length = 0;
+
+        for (int i = 0; i < termIds.length; i++) {
+            int termId = termIds[i];
+            if (current < 0 || termId / BLOCK_SIZE != current / BLOCK_SIZE || termId < current) {
+                // Riparte dal primo termine del blocco
+                current = termId - termId % BLOCK_SIZE;
+                position = blockOffsets[current / BLOCK_SIZE];
+                length = readVInt(position);
+                position += vIntSize(length);
+                for (int j = 0; j < length; j++) {
+                    term[j] = terms.get(position + j);
+                }
+                position += length;
+            }
+            while (current < termId) {
+                int prefix = readVInt(position);
+                position += vIntSize(prefix);
+                int suffix = readVInt(position);
+                position += vIntSize(suffix);
+                for (int j = 0; j < suffix; j++) {
+                    term[prefix + j] = terms.get(position + j);
+                }
+                position += suffix;
+                length = prefix + suffix;
+                current++;
+            }
+            texts[i] = new String(term, 0, length, StandardCharsets.UTF_8);
+        }
+        return texts;
+    }
+
+    private byte[] termBytes(int termId) {
+        int block = termId / BLOCK_SIZE;
+        byte[] term = new byte[maxTermLength];
+        int position = blockOffsets[block];
+        int length = readVInt(position);
+        position += vIntSize(length);
+        for (int i = 0; i < length; i++) {
+            term[i] = terms.get(position + i);
+        }
+        position += length;
+
+        for (int id = block * BLOCK_SIZE + 1; id <= termId; id++) {
+            int prefix = readVInt(position);
+            position += vIntSize(prefix);
+            int suffix = readVInt(position);
+            position += vIntSize(suffix);
+            for (int i = 0; i < suffix; i++) {
+                term[prefix + i] = terms.get(position + i);
+            }
+            position += suffix;
+            length = prefix + suffix;
+        }
+        return Arrays.copyOf(term, length);
+    }
+
+    public int getDocumentFrequency(int termId) {
+        return documentFrequencies.get(termId);
+    }
+
+    public int getCollectionFrequency(int termId) {
+        return collectionFrequencies.get(termId);
+    }
+
+    /**
+     * Restituisce la lista di posting di un termine. Se le liste sono conservate in forma
+     * codificata la lista viene decodificata a ogni chiamata, a meno che non sia attiva la
+     * cache delle liste decodificate.
+     *
+     * @param termId L'ID del termine
+     * @return La lista di posting
+     */
+    public PostingList getPostingList(int termId) {
+        PostingListCache cache = postingCache;
+        return cache != null ? cache.get(termId) : postings.get(termId);
+    }
+
+    /**
+     * Attiva la cache delle liste di posting decodificate, sostituendo quella eventualmente
+     * già attiva. Utile quando le liste sono decodificate al bisogno da un file.
+     *
+     * @param maxBytes La dimensione massima stimata della cache in byte
+     * @return La cache attivata
+     */
+    public PostingListCache enablePostingCache(long maxBytes) {
+        PostingListCache cache = new PostingListCache(postings, maxBytes);
+        postingCache = cache;
+        return cache;
+    }
+
+    /**
+     * Restituisce la cache delle liste di posting decodificate.
+     *
+     * @return La cache, oppure null se non è attiva
+     */
+    public PostingListCache getPostingCache() {
+        return postingCache;
+    }
+
+    /**
+     * Restituisce gli ID dei termini con la frequenza di documento più alta.
+     *
+     * @param count Il numero massimo di termini
+     * @return Gli ID dei termini, in ordine decrescente di frequenza di documento
+     */
+    public int[] getMostFrequentTerms(int count) {
+        if (count <= 0) {
+            return new int[0];
+        }
+        // Min-heap degli ID per frequenza di documento
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(count, Math.max(1, termCount)),
+                (a, b) -> Integer.compare(getDocumentFrequency(a), getDocumentFrequency(b)));
+        for (int termId = 0; termId < termCount; termId++) {
+            if (heap.size() < count) {
+                heap.add(termId);
+            } else if (getDocumentFrequency(termId) > getDocumentFrequency(heap.peek())) {
+                heap.poll();
+                heap.add(termId);
+            }
+        }
+        int[] result = new int[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll();
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il numero di termini.
+     *
+     * @return Il numero di termini
+     */
+    public int size() {
+        return termCount;
+    }
+
+    /**
+     * Restituisce il buffer dei blocchi codificati, in sola lettura.
+     *
+     * @return Il buffer dei termini
+     */
+    public ByteBuffer getTermBuffer() {
+        return terms.asReadOnlyBuffer();
+    }
+
+    /**
+     * Restituisce la posizione di ogni blocco nel buffer dei termini.
+     *
+     * @return Le posizioni dei blocchi
+     */
+    public int[] getBlockOffsets() {
+        return blockOffsets.clone();
+    }
+
+    /**
+     * Restituisce la lunghezza massima di un termine in byte.
+     *
+     * @return La lunghezza massima
+     */
+    public int getMaxTermLength() {
+        return maxTermLength;
+    }
+
+    /**
+     * Confronta il primo termine di un blocco, letto direttamente dal buffer, con una chiave.
+     */
+    private int compareFirstTerm(int block, byte[] key) {
+        int position = blockOffsets[block];
+        int length = readVInt(position);
+        position += vIntSize(length);
+        int limit = Math.min(length, key.length);
+        for (int i = 0; i < limit; i++) {
+            int cmp = (terms.get(position + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int limit = Math.min(a.length, b.length);
+        for (int i = 0; i < limit; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private int readVInt(int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = terms.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int vIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+}
@@ -0,0 +1,119 @@
+package ir.model;
+
+import java.util.Arrays;
+
+/**
+ * Bitmap compatta degli ID di tutti i documenti presenti nell'indice.
+ * Usa un bit per documento, quindi anche per collezioni grandi occupa pochi kilobyte,
+ * e permette di valutare le negazioni pure (NOT termine) come complemento.
+ */
+public class LiveDocs {
+    private long[] words;
+    private int cardinality;
+
+    /**
+     * Costruttore per una nuova bitmap vuota.
+     */
+    public LiveDocs() {
+        this.words = new long[1];
+        this.cardinality = 0;
+    }
+
+    /**
+     * Costruisce una bitmap a partire dalle sue parole a 64 bit.
+     * 
+     * @param words Le parole della bitmap, che non vengono copiate
+     */
+    public LiveDocs(long[] words) {
+        this.words = words.length == 0 ? new long[1] : words;
+        int count = 0;
+        for (long word : this.words) {
+            count += Long.bitCount(word);
+        }
+        this.cardinality = count;
+    }
+
+    /**
+     * Aggiunge un documento alla bitmap.
+     * 
+     * @param documentId L'ID del documento, non negativo
+     */
+    public void add(int documentId) {
+        int wordIndex = documentId >>> 6;
+        if (wordIndex >= words.length) {
+            words = Arrays.copyOf(words, Math.max(wordIndex + 1, words.length * 2));
+        }
+        long mask = 1L << documentId;
+        if ((words[wordIndex] & mask) == 0) {
+            words[wordIndex] |= mask;
+            cardinality++;
+        }
+    }
+
+    /**
+     * Verifica se un documento è presente.
+     * 
+     * @param documentId L'ID del documento
+     * @return true se il documento è presente
+     */
+    public boolean contains(int documentId) {
+        int wordIndex = documentId >>> 6;
+        return documentId >= 0 && wordIndex < words.length && (words[wordIndex] & (1L << documentId)) != 0;
+    }
+
+    /**
+     * Restituisce il primo documento presente con ID maggiore o uguale a quello dato.
+     * 
+     * @param fromDocumentId L'ID da cui iniziare la ricerca
+     * @return L'ID trovato o -1 se non ce ne sono altri
+     */
+    public int nextDocument(int fromDocumentId) {
+        int wordIndex = fromDocumentId >>> 6;
+        if (fromDocumentId < 0 || wordIndex >= words.length) {
+            return -1;
+        }
+
+        long word = words[wordIndex] & (-1L << fromDocumentId);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    /**
+     * Restituisce l'ID più alto tra i documenti presenti.
+     * 
+     * @return L'ID massimo, oppure -1 se la bitmap è vuota
+     */
+    public int maxDocument() {
+        for (int wordIndex = words.length - 1; wordIndex >= 0; wordIndex--) {
+            if (words[wordIndex] != 0) {
+                return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(words[wordIndex]);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Restituisce il numero di documenti presenti.
+     * 
+     * @return Il numero di documenti
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Restituisce le parole a 64 bit della bitmap, ad esempio per la serializzazione.
+     * 
+     * @return Una copia delle parole della bitmap
+     */
+    public long[] toWords() {
+        return Arrays.copyOf(words, words.length);
+    }
+}
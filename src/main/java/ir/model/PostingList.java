@@ -1,200 +1,529 @@
 package ir.model;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Rappresenta una lista di posting per un termine specifico.
+ * I posting sono memorizzati in due array primitivi paralleli (ID documento e frequenza)
+ * ordinati per ID documento crescente.
  */
 public class PostingList implements Iterable<Posting> {
-    private List<Posting> postings;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] documentIds;
+    private int[] frequencies;
+    private int size;
 
     /**
      * Costruttore per una nuova lista di posting.
      */
     public PostingList() {
-        this.postings = new ArrayList<>();
+        this.documentIds = new int[INITIAL_CAPACITY];
+        this.frequencies = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Costruisce una lista di posting a partire da array già ordinati per ID documento.
+     * Gli array non vengono copiati: la lista ne diventa proprietaria.
+     *
+     * @param documentIds Gli ID dei documenti, in ordine strettamente crescente
+     * @param frequencies Le frequenze corrispondenti
+     * @param size Il numero di posting validi negli array
+     */
+    public PostingList(int[] documentIds, int[] frequencies, int size) {
+        if (documentIds.length < size || frequencies.length < size) {
+            throw new IllegalArgumentException("Dimensione non valida per la lista di posting: " + size);
+        }
+        this.documentIds = documentIds;
+        this.frequencies = frequencies;
+        this.size = size;
+    }
+
+    /**
+     * Decodifica una lista di posting memorizzata in un buffer come numero di posting
+     * seguito da coppie (distanza dall'ID del documento precedente, frequenza), tutti
+     * interi a lunghezza variabile. I posting sono già ordinati e il loro numero è noto,
+     * quindi gli array vengono allocati una sola volta con la dimensione esatta. Il buffer
+     * viene letto con accessi assoluti e non viene modificato.
+     *
+     * @param data Il buffer che contiene la lista
+     * @param position La posizione della lista nel buffer
+     * @return La lista decodificata
+     */
+    public static PostingList decode(ByteBuffer data, int position) {
+        int size = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data.get(position++);
+            size |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        int[] documentIds = new int[size];
+        int[] frequencies = new int[size];
+        int documentId = 0;
+        for (int i = 0; i < size; i++) {
+            int gap = 0;
+            shift = 0;
+            do {
+                b = data.get(position++);
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            documentId += gap;
+            documentIds[i] = documentId;
+
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = data.get(position++);
+                frequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            frequencies[i] = frequency;
+        }
+        return new PostingList(documentIds, frequencies, size);
     }
 
     /**
      * Aggiunge un nuovo posting alla lista.
-     * 
+     *
      * @param documentId L'ID del documento
      */
     public void addPosting(int documentId) {
-        Posting posting = new Posting(documentId);
-        int index = Collections.binarySearch(postings, posting);
-        
+        addPosting(documentId, 1);
+    }
+
+    /**
+     * Aggiunge più occorrenze di un documento alla lista in un'unica operazione.
+     *
+     * @param documentId L'ID del documento
+     * @param frequency Il numero di occorrenze da aggiungere
+     */
+    public void addPosting(int documentId, int frequency) {
+        // Caso comune durante l'indicizzazione: i documenti arrivano in ordine crescente
+        if (size > 0 && documentIds[size - 1] == documentId) {
+            frequencies[size - 1] += frequency;
+            return;
+        }
+        if (size == 0 || documentIds[size - 1] < documentId) {
+            insertAt(size, documentId, frequency);
+            return;
+        }
+
+        int index = indexOf(documentId);
+
         if (index >= 0) {
             // Il documento è già presente, incrementa la frequenza
-            postings.get(index).incrementFrequency();
+            frequencies[index] += frequency;
         } else {
             // Il documento non è ancora presente, aggiungi un nuovo posting
-            postings.add(~index, posting);
+            insertAt(~index, documentId, frequency);
         }
     }
 
     /**
      * Aggiunge un posting esistente alla lista.
-     * 
+     *
      * @param posting Il posting da aggiungere
      */
     public void addPosting(Posting posting) {
-        int index = Collections.binarySearch(postings, posting);
-        
+        int index = indexOf(posting.getDocumentId());
+
         if (index >= 0) {
             // Il documento è già presente, aggiorna la frequenza
-            postings.get(index).setFrequency(posting.getFrequency());
+            frequencies[index] = posting.getFrequency();
         } else {
             // Il documento non è ancora presente, aggiungi il nuovo posting
-            postings.add(~index, posting);
+            insertAt(~index, posting.getDocumentId(), posting.getFrequency());
+        }
+    }
+
+    /**
+     * Inserisce un posting in una posizione specifica, spostando i successivi.
+     */
+    private void insertAt(int index, int documentId, int frequency) {
+        if (size == documentIds.length) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            documentIds = Arrays.copyOf(documentIds, newCapacity);
+            frequencies = Arrays.copyOf(frequencies, newCapacity);
+        }
+        if (index < size) {
+            System.arraycopy(documentIds, index, documentIds, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
         }
+        documentIds[index] = documentId;
+        frequencies[index] = frequency;
+        size++;
     }
 
     /**
      * Restituisce la dimensione della lista di posting.
-     * 
+     *
      * @return Il numero di posting nella lista
      */
     public int size() {
-        return postings.size();
+        return size;
     }
 
     /**
      * Verifica se la lista di posting è vuota.
-     * 
+     *
      * @return true se la lista è vuota, false altrimenti
      */
     public boolean isEmpty() {
-        return postings.isEmpty();
+        return size == 0;
     }
 
     /**
      * Restituisce tutti i posting nella lista.
-     * 
+     *
      * @return La lista di posting
      */
     public List<Posting> getPostings() {
-        return Collections.unmodifiableList(postings);
+        return Collections.unmodifiableList(new AbstractList<Posting>() {
+            @Override
+            public Posting get(int index) {
+                return getPosting(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        });
     }
 
     /**
      * Restituisce un posting ad un indice specifico.
-     * 
+     *
      * @param index L'indice del posting
      * @return Il posting all'indice specificato
      */
     public Posting getPosting(int index) {
-        return postings.get(index);
+        checkIndex(index);
+        return new Posting(documentIds[index], frequencies[index]);
+    }
+
+    /**
+     * Restituisce l'ID del documento ad un indice specifico, senza allocare un posting.
+     *
+     * @param index L'indice del posting
+     * @return L'ID del documento
+     */
+    public int getDocumentId(int index) {
+        checkIndex(index);
+        return documentIds[index];
+    }
+
+    /**
+     * Restituisce la frequenza ad un indice specifico, senza allocare un posting.
+     *
+     * @param index L'indice del posting
+     * @return La frequenza del termine nel documento
+     */
+    public int getFrequency(int index) {
+        checkIndex(index);
+        return frequencies[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Indice: " + index + ", dimensione: " + size);
+        }
+    }
+
+    /**
+     * Cerca la posizione di un documento nella lista tramite ricerca binaria.
+     *
+     * @param documentId L'ID del documento
+     * @return L'indice del posting, oppure (-(punto di inserimento) - 1) se non presente
+     */
+    public int indexOf(int documentId) {
+        return Arrays.binarySearch(documentIds, 0, size, documentId);
+    }
+
+    /**
+     * Cerca il primo posting con ID documento maggiore o uguale a quello richiesto,
+     * partendo da una posizione data. Usa una ricerca esponenziale (galloping) seguita
+     * da una ricerca binaria, così i salti brevi costano O(1) e quelli lunghi O(log n).
+     *
+     * @param fromIndex La posizione da cui iniziare la ricerca
+     * @param documentId L'ID del documento cercato
+     * @return La posizione trovata, oppure size() se non esiste un posting successivo
+     */
+    public int advance(int fromIndex, int documentId) {
+        if (fromIndex >= size || documentIds[fromIndex] >= documentId) {
+            return Math.min(fromIndex, size);
+        }
+
+        // Galoppa finché non si supera il documento cercato
+        int low = fromIndex;
+        int step = 1;
+        int high = fromIndex + step;
+        while (high < size && documentIds[high] < documentId) {
+            low = high;
+            step <<= 1;
+            high = fromIndex + step;
+        }
+        high = Math.min(high, size);
+
+        // documentIds[low] < documentId <= documentIds[high] (se high < size)
+        int index = Arrays.binarySearch(documentIds, low + 1, high, documentId);
+        return index >= 0 ? index : ~index;
     }
 
     /**
      * Cerca un posting per un documento specifico.
-     * 
+     *
      * @param documentId L'ID del documento
      * @return Il posting per il documento o null se non esiste
      */
     public Posting findPosting(int documentId) {
-        Posting searchKey = new Posting(documentId);
-        int index = Collections.binarySearch(postings, searchKey);
-        return index >= 0 ? postings.get(index) : null;
+        int index = indexOf(documentId);
+        return index >= 0 ? new Posting(documentIds[index], frequencies[index]) : null;
     }
 
     /**
      * Interseca questa lista di posting con un'altra.
-     * 
+     *
      * @param other L'altra lista di posting
      * @return Una nuova lista di posting contenente l'intersezione
      */
     public PostingList intersect(PostingList other) {
-        PostingList result = new PostingList();
-        
         if (this.isEmpty() || other.isEmpty()) {
-            return result;
+            return new PostingList();
         }
-        
+
+        int capacity = Math.min(this.size, other.size);
+        int[] resultIds = new int[capacity];
+        int[] resultFrequencies = new int[capacity];
+        int count = 0;
+
         int i = 0, j = 0;
-        while (i < this.size() && j < other.size()) {
-            Posting p1 = this.getPosting(i);
-            Posting p2 = other.getPosting(j);
-            
-            if (p1.getDocumentId() == p2.getDocumentId()) {
+        while (i < this.size && j < other.size) {
+            int d1 = this.documentIds[i];
+            int d2 = other.documentIds[j];
+
+            if (d1 == d2) {
                 // Documento comune, aggiungi alla lista risultante
-                result.addPosting(new Posting(p1.getDocumentId(), p1.getFrequency() + p2.getFrequency()));
+                resultIds[count] = d1;
+                resultFrequencies[count] = this.frequencies[i] + other.frequencies[j];
+                count++;
                 i++;
                 j++;
-            } else if (p1.getDocumentId() < p2.getDocumentId()) {
+            } else if (d1 < d2) {
                 i++;
             } else {
                 j++;
             }
         }
-        
-        return result;
+
+        return new PostingList(resultIds, resultFrequencies, count);
     }
 
     /**
      * Unisce questa lista di posting con un'altra.
-     * 
+     * Il risultato è sempre una nuova lista, anche quando una delle due è vuota.
+     *
      * @param other L'altra lista di posting
      * @return Una nuova lista di posting contenente l'unione
      */
     public PostingList union(PostingList other) {
-        PostingList result = new PostingList();
-        
         if (this.isEmpty()) {
-            return other;
+            return other.copy();
         }
-        
+
         if (other.isEmpty()) {
-            return this;
+            return this.copy();
         }
-        
+
+        int capacity = this.size + other.size;
+        int[] resultIds = new int[capacity];
+        int[] resultFrequencies = new int[capacity];
+        int count = 0;
+
         int i = 0, j = 0;
-        while (i < this.size() && j < other.size()) {
-            Posting p1 = this.getPosting(i);
-            Posting p2 = other.getPosting(j);
-            
-            if (p1.getDocumentId() == p2.getDocumentId()) {
+        while (i < this.size && j < other.size) {
+            int d1 = this.documentIds[i];
+            int d2 = other.documentIds[j];
+
+            if (d1 == d2) {
                 // Documento comune, aggiungi alla lista risultante con frequenza combinata
-                result.addPosting(new Posting(p1.getDocumentId(), p1.getFrequency() + p2.getFrequency()));
-                i++;
-                j++;
-            } else if (p1.getDocumentId() < p2.getDocumentId()) {
-                result.addPosting(new Posting(p1.getDocumentId(), p1.getFrequency()));
-                i++;
+                resultIds[count] = d1;
+                resultFrequencies[count++] = this.frequencies[i++] + other.frequencies[j++];
+            } else if (d1 < d2) {
+                resultIds[count] = d1;
+                resultFrequencies[count++] = this.frequencies[i++];
             } else {
-                result.addPosting(new Posting(p2.getDocumentId(), p2.getFrequency()));
-                j++;
+                resultIds[count] = d2;
+                resultFrequencies[count++] = other.frequencies[j++];
             }
         }
-        
+
         // Aggiungi i posting rimanenti dalla prima lista
-        while (i < this.size()) {
-            Posting p = this.getPosting(i);
-            result.addPosting(new Posting(p.getDocumentId(), p.getFrequency()));
-            i++;
-        }
-        
+        int remaining = this.size - i;
+        System.arraycopy(this.documentIds, i, resultIds, count, remaining);
+        System.arraycopy(this.frequencies, i, resultFrequencies, count, remaining);
+        count += remaining;
+
         // Aggiungi i posting rimanenti dalla seconda lista
-        while (j < other.size()) {
-            Posting p = other.getPosting(j);
-            result.addPosting(new Posting(p.getDocumentId(), p.getFrequency()));
-            j++;
+        remaining = other.size - j;
+        System.arraycopy(other.documentIds, j, resultIds, count, remaining);
+        System.arraycopy(other.frequencies, j, resultFrequencies, count, remaining);
+        count += remaining;
+
+        return new PostingList(resultIds, resultFrequencies, count);
+    }
+
+    /**
+     * Unisce k liste di posting in un'unica passata (merge k-way).
+     * Le liste sono scorse contemporaneamente tramite un min-heap di cursori ordinato
+     * per ID documento corrente, per un costo complessivo O(N log k) dove N è il numero
+     * totale di posting. Le frequenze dei documenti comuni vengono sommate direttamente
+     * negli array primitivi del risultato.
+     *
+     * @param lists Le liste di posting da unire
+     * @return Una nuova lista di posting contenente l'unione
+     */
+    public static PostingList unionAll(List<PostingList> lists) {
+        int k = 0;
+        int capacity = 0;
+        PostingList[] sources = new PostingList[lists.size()];
+
+        // Scarta le liste vuote
+        for (PostingList list : lists) {
+            if (list != null && !list.isEmpty()) {
+                sources[k++] = list;
+                capacity += list.size;
+            }
+        }
+
+        if (k == 0) {
+            return new PostingList();
         }
-        
-        return result;
+        if (k == 1) {
+            return sources[0].copy();
+        }
+
+        int[] resultIds = new int[capacity];
+        int[] resultFrequencies = new int[capacity];
+        int count = 0;
+
+        // Cursori nelle liste e heap di indici delle liste ordinato per documento corrente
+        int[] cursors = new int[k];
+        int[] heap = new int[k];
+        for (int i = 0; i < k; i++) {
+            heap[i] = i;
+        }
+        int heapSize = k;
+        for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, sources, cursors);
+        }
+
+        while (heapSize > 0) {
+            int top = heap[0];
+            PostingList list = sources[top];
+            int documentId = list.documentIds[cursors[top]];
+            int frequency = list.frequencies[cursors[top]];
+
+            if (count > 0 && resultIds[count - 1] == documentId) {
+                // Documento già emesso da un'altra lista: somma la frequenza
+                resultFrequencies[count - 1] += frequency;
+            } else {
+                resultIds[count] = documentId;
+                resultFrequencies[count] = frequency;
+                count++;
+            }
+
+            // Avanza il cursore della lista in cima; se è esaurita, rimuovila dallo heap
+            if (++cursors[top] == list.size) {
+                heap[0] = heap[--heapSize];
+            }
+            if (heapSize > 0) {
+                siftDown(heap, heapSize, 0, sources, cursors);
+            }
+        }
+
+        return new PostingList(resultIds, resultFrequencies, count);
+    }
+
+    private static void siftDown(int[] heap, int heapSize, int position, PostingList[] sources, int[] cursors) {
+        int entry = heap[position];
+        int key = sources[entry].documentIds[cursors[entry]];
+
+        while (true) {
+            int child = (position << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            int childKey = sources[heap[child]].documentIds[cursors[heap[child]]];
+            int right = child + 1;
+            if (right < heapSize) {
+                int rightKey = sources[heap[right]].documentIds[cursors[heap[right]]];
+                if (rightKey < childKey) {
+                    child = right;
+                    childKey = rightKey;
+                }
+            }
+            if (key <= childKey) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = entry;
+    }
+
+    /**
+     * Restituisce una copia indipendente di questa lista di posting.
+     *
+     * @return Una nuova lista con gli stessi posting
+     */
+    public PostingList copy() {
+        return new PostingList(Arrays.copyOf(documentIds, Math.max(size, 1)),
+                Arrays.copyOf(frequencies, Math.max(size, 1)), size);
     }
 
     @Override
     public Iterator<Posting> iterator() {
-        return postings.iterator();
+        return new Iterator<Posting>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Posting next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                Posting posting = new Posting(documentIds[index], frequencies[index]);
+                index++;
+                return posting;
+            }
+        };
     }
 
     @Override
     public String toString() {
-        return postings.toString();
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(documentIds[i]).append(":").append(frequencies[i]);
+        }
+        return sb.append("]").toString();
     }
-}
\ No newline at end of file
+}
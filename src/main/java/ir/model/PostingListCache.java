@@ -0,0 +1,294 @@
+package ir.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache delle liste di posting decodificate, indicizzate per ID di termine, davanti a
+ * un'origine che le decodifica al bisogno, ad esempio da un file mappato in memoria.
+ * La dimensione è limitata in byte, stimati dal numero di posting di ogni lista.
+ *
+ * L'eliminazione segue GreedyDual-Size-Frequency: ogni voce ha una priorità pari al
+ * valore di inflazione corrente più il numero di accessi per il costo di decodifica
+ * diviso per la dimensione. Il costo comprende una parte fissa per accesso e una parte
+ * proporzionale alla lunghezza della lista, quindi a parità di memoria restano le liste
+ * usate più spesso e quelle il cui costo fisso pesa di più. Quando la cache supera la
+ * dimensione massima vengono eliminate le voci con priorità più bassa fino a un margine
+ * sotto il limite, e l'inflazione sale alla priorità dell'ultima voce eliminata, così le
+ * voci non più usate invecchiano.
+ *
+ * Le voci bloccate con {@link #pin(int)}, tipicamente i termini con la frequenza di
+ * documento più alta, non vengono mai eliminate e occupano al più metà della cache.
+ *
+ * Le letture sono concorrenti e non bloccanti; solo l'eliminazione è sincronizzata. Due
+ * thread possono decodificare contemporaneamente la stessa lista, ma in cache ne resta
+ * una sola. Le liste restituite sono condivise e non vanno modificate.
+ */
+public class PostingListCache implements PostingSource {
+    /**
+     * Dimensione massima predefinita in byte.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * Stima in byte del costo fisso di una voce: oggetti, array e nodo della mappa.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Costo fisso di una decodifica, espresso in posting decodificati: ricerca della
+     * sezione, lettura dell'offset e allocazione degli array.
+     */
+    private static final int DECODE_OVERHEAD = 64;
+
+    /**
+     * Percentuale della dimensione massima riservata alle voci bloccate.
+     */
+    private static final int MAX_PINNED_PERCENT = 50;
+
+    /**
+     * Percentuale della dimensione massima a cui viene riportata la cache dopo
+     * un'eliminazione, per distribuire il costo della scansione su più inserimenti.
+     */
+    private static final int EVICTION_TARGET_PERCENT = 90;
+
+    private final PostingSource source;
+    private final long maxBytes;
+    private final ConcurrentHashMap<Integer, Entry> entries;
+    private final AtomicLong bytes;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private long pinnedBytes;
+    private long evictions;
+    private volatile double inflation;
+
+    /**
+     * Costruttore per una nuova cache vuota.
+     *
+     * @param source L'origine delle liste di posting
+     * @param maxBytes La dimensione massima stimata in byte
+     * @throws IllegalArgumentException Se la dimensione non è positiva
+     */
+    public PostingListCache(PostingSource source, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("La dimensione della cache deve essere positiva: " + maxBytes);
+        }
+        this.source = source;
+        this.maxBytes = maxBytes;
+        this.entries = new ConcurrentHashMap<>();
+        this.bytes = new AtomicLong();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Restituisce la lista di posting di un termine, dalla cache oppure decodificandola
+     * dall'origine. Una lista più grande della cache viene restituita senza inserirla.
+     *
+     * @param termId L'ID del termine
+     * @return La lista di posting
+     */
+    @Override
+    public PostingList get(int termId) {
+        Entry entry = entries.get(termId);
+        if (entry != null) {
+            hits.increment();
+            entry.touch(inflation);
+            return entry.postingList;
+        }
+        misses.increment();
+        PostingList postingList = source.get(termId);
+        entry = new Entry(postingList, inflation);
+        if (entry.bytes > maxBytes) {
+            return postingList;
+        }
+        Entry previous = entries.putIfAbsent(termId, entry);
+        if (previous != null) {
+            return previous.postingList;
+        }
+        if (bytes.addAndGet(entry.bytes) > maxBytes) {
+            evict();
+        }
+        return postingList;
+    }
+
+    /**
+     * Blocca in cache la lista di posting di un termine, decodificandola se necessario.
+     *
+     * @param termId L'ID del termine
+     * @return true se la lista è bloccata, false se supererebbe lo spazio riservato alle voci bloccate
+     */
+    public synchronized boolean pin(int termId) {
+        long pinnedLimit = maxBytes * MAX_PINNED_PERCENT / 100;
+        Entry entry = entries.get(termId);
+        boolean inserted = false;
+        if (entry == null) {
+            Entry created = new Entry(source.get(termId), inflation);
+            if (pinnedBytes + created.bytes > pinnedLimit) {
+                return false;
+            }
+            // Una lettura concorrente può inserire la stessa lista: resta e viene bloccata la sua voce
+            entry = entries.putIfAbsent(termId, created);
+            if (entry == null) {
+                entry = created;
+                inserted = true;
+            }
+        }
+
+        // Solo pin() blocca le voci, e l'eliminazione è sincronizzata: la voce resta in cache
+        boolean pinned = entry.pinned;
+        if (!pinned && pinnedBytes + entry.bytes <= pinnedLimit) {
+            entry.pinned = true;
+            pinnedBytes += entry.bytes;
+            pinned = true;
+        }
+        if (inserted && bytes.addAndGet(entry.bytes) > maxBytes) {
+            evict();
+        }
+        return pinned;
+    }
+
+    /**
+     * Indica se la lista di posting di un termine è bloccata in cache.
+     *
+     * @param termId L'ID del termine
+     * @return true se la lista è bloccata
+     */
+    public boolean isPinned(int termId) {
+        Entry entry = entries.get(termId);
+        return entry != null && entry.pinned;
+    }
+
+    /**
+     * Elimina le voci con priorità più bassa fino a riportare la cache sotto il margine.
+     */
+    private synchronized void evict() {
+        if (bytes.get() <= maxBytes) {
+            return;
+        }
+        List<Integer> candidates = new ArrayList<>();
+        entries.forEach((termId, entry) -> {
+            if (!entry.pinned) {
+                candidates.add(termId);
+            }
+        });
+        // Le priorità vengono lette una volta: le letture concorrenti possono aggiornarle
+        double[] priorities = new double[candidates.size()];
+        Integer[] order = new Integer[candidates.size()];
+        for (int i = 0; i < order.length; i++) {
+            Entry entry = entries.get(candidates.get(i));
+            priorities[i] = entry != null ? entry.priority : 0;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(priorities[a], priorities[b]));
+
+        long target = maxBytes / 100 * EVICTION_TARGET_PERCENT;
+        double lastPriority = inflation;
+        for (int i = 0; i < order.length && bytes.get() > target; i++) {
+            Entry entry = entries.get(candidates.get(order[i]));
+            if (entry != null && !entry.pinned && entries.remove(candidates.get(order[i]), entry)) {
+                bytes.addAndGet(-entry.bytes);
+                evictions++;
+                lastPriority = Math.max(lastPriority, priorities[order[i]]);
+            }
+        }
+        inflation = lastPriority;
+    }
+
+    /**
+     * Svuota la cache, mantenendo le voci bloccate e le statistiche di utilizzo.
+     */
+    public synchronized void clear() {
+        entries.forEach((termId, entry) -> {
+            if (!entry.pinned && entries.remove(termId, entry)) {
+                bytes.addAndGet(-entry.bytes);
+            }
+        });
+    }
+
+    /**
+     * Restituisce il numero di liste in cache.
+     *
+     * @return Il numero di liste
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Restituisce la dimensione stimata delle liste in cache.
+     *
+     * @return La dimensione in byte
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public synchronized long getPinnedBytes() {
+        return pinnedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Restituisce la frazione di letture servite dalla cache.
+     *
+     * @return Il tasso di successo, oppure 0 se non ci sono state letture
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long requests = hitCount + misses.sum();
+        return requests > 0 ? (double) hitCount / requests : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PostingListCache{liste=%d, byte=%d/%d, bloccati=%d, successi=%.2f%%, eliminazioni=%d}",
+                size(), getBytes(), maxBytes, getPinnedBytes(), getHitRatio() * 100, getEvictions());
+    }
+
+    /**
+     * Voce della cache con dimensione, costo di decodifica e priorità.
+     */
+    private static class Entry {
+        final PostingList postingList;
+        final long bytes;
+        final double costPerByte;
+        volatile double priority;
+        volatile int frequency;
+        volatile boolean pinned;
+
+        Entry(PostingList postingList, double inflation) {
+            this.postingList = postingList;
+            this.bytes = ENTRY_OVERHEAD + 8L * postingList.size();
+            this.costPerByte = (double) (DECODE_OVERHEAD + postingList.size()) / bytes;
+            this.frequency = 1;
+            this.priority = inflation + costPerByte;
+        }
+
+        void touch(double inflation) {
+            // Aggiornamento non atomico: un accesso perso cambia solo di poco la priorità
+            int count = frequency + 1;
+            frequency = count;
+            priority = inflation + count * costPerByte;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ir.model;
+
+/**
+ * Origine delle liste di posting di un {@link FrozenDictionary}, indicizzate per ID di
+ * termine: array già decodificati nello heap oppure liste codificate in un file da
+ * decodificare al bisogno.
+ */
+public interface PostingSource {
+    /**
+     * Restituisce la lista di posting di un termine.
+     *
+     * @param termId L'ID del termine
+     * @return La lista di posting
+     */
+    PostingList get(int termId);
+}
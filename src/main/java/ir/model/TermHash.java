@@ -0,0 +1,203 @@
+package ir.model;
+
+import java.util.Arrays;
+
+/**
+ * Tabella hash a indirizzamento aperto che assegna ai testi dei termini ID interi
+ * consecutivi, nell'ordine di inserimento. I termini possono essere cercati e inseriti
+ * direttamente da un buffer di caratteri: la stringa viene allocata solo quando il
+ * termine è nuovo. Le collisioni sono risolte con scansione lineare e la tabella viene
+ * raddoppiata quando supera un fattore di carico di 1/2.
+ */
+public class TermHash {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private int[] slots;
+    private int[] hashes;
+    private String[] texts;
+    private int size;
+    private int mask;
+
+    /**
+     * Costruttore per una nuova tabella vuota.
+     */
+    public TermHash() {
+        this.slots = new int[INITIAL_CAPACITY];
+        Arrays.fill(slots, EMPTY);
+        this.mask = INITIAL_CAPACITY - 1;
+        this.hashes = new int[INITIAL_CAPACITY / 2];
+        this.texts = new String[INITIAL_CAPACITY / 2];
+        this.size = 0;
+    }
+
+    /**
+     * Restituisce l'ID di un termine letto da un buffer di caratteri, inserendolo se non esiste.
+     *
+     * @param buffer Il buffer che contiene il termine
+     * @param offset La posizione del primo carattere
+     * @param length Il numero di caratteri
+     * @return L'ID del termine
+     */
+    public int add(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int slot = mix(hash) & mask;
+        int termId;
+        while ((termId = slots[slot]) != EMPTY) {
+            if (hashes[termId] == hash && equals(texts[termId], buffer, offset, length)) {
+                return termId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(slot, hash, new String(buffer, offset, length));
+    }
+
+    /**
+     * Restituisce l'ID di un termine, inserendolo se non esiste.
+     *
+     * @param text Il testo del termine
+     * @return L'ID del termine
+     */
+    public int add(String text) {
+        int hash = text.hashCode();
+        int slot = mix(hash) & mask;
+        int termId;
+        while ((termId = slots[slot]) != EMPTY) {
+            if (hashes[termId] == hash && texts[termId].equals(text)) {
+                return termId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(slot, hash, text);
+    }
+
+    /**
+     * Cerca un termine letto da un buffer di caratteri.
+     *
+     * @param buffer Il buffer che contiene il termine
+     * @param offset La posizione del primo carattere
+     * @param length Il numero di caratteri
+     * @return L'ID del termine, oppure -1 se non esiste
+     */
+    public int find(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int slot = mix(hash) & mask;
+        int termId;
+        while ((termId = slots[slot]) != EMPTY) {
+            if (hashes[termId] == hash && equals(texts[termId], buffer, offset, length)) {
+                return termId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Cerca un termine.
+     *
+     * @param text Il testo del termine
+     * @return L'ID del termine, oppure -1 se non esiste
+     */
+    public int find(String text) {
+        int hash = text.hashCode();
+        int slot = mix(hash) & mask;
+        int termId;
+        while ((termId = slots[slot]) != EMPTY) {
+            if (hashes[termId] == hash && texts[termId].equals(text)) {
+                return termId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Restituisce il testo di un termine dato il suo ID.
+     *
+     * @param termId L'ID del termine
+     * @return Il testo del termine
+     */
+    public String getText(int termId) {
+        return texts[termId];
+    }
+
+    /**
+     * Restituisce una copia dei testi dei termini, in ordine di ID.
+     *
+     * @return I testi dei termini
+     */
+    public String[] getTexts() {
+        return Arrays.copyOf(texts, size);
+    }
+
+    /**
+     * Restituisce il numero di termini nella tabella.
+     *
+     * @return Il numero di termini
+     */
+    public int size() {
+        return size;
+    }
+
+    private int insert(int slot, int hash, String text) {
+        int termId = size++;
+        if (termId == texts.length) {
+            texts = Arrays.copyOf(texts, termId * 2);
+            hashes = Arrays.copyOf(hashes, termId * 2);
+        }
+        texts[termId] = text;
+        hashes[termId] = hash;
+        slots[slot] = termId;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return termId;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        Arrays.fill(newSlots, EMPTY);
+        int newMask = newSlots.length - 1;
+        for (int termId = 0; termId < size; termId++) {
+            int slot = mix(hashes[termId]) & newMask;
+            while (newSlots[slot] != EMPTY) {
+                slot = (slot + 1) & newMask;
+            }
+            newSlots[slot] = termId;
+        }
+        slots = newSlots;
+        mask = newMask;
+    }
+
+    /**
+     * Calcola lo stesso hash di {@link String#hashCode()} sul contenuto del buffer,
+     * così le ricerche da buffer e da stringa condividono la tabella.
+     */
+    private static int hash(char[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Ridistribuisce i bit alti dell'hash sui bit bassi usati per scegliere la cella.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String text, char[] buffer, int offset, int length) {
+        if (text.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
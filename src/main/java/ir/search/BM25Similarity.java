@@ -0,0 +1,124 @@
+package ir.search;
+
+import ir.model.Dictionary;
+import ir.model.DocumentLengths;
+
+/**
+ * Punteggio Okapi BM25 con parametri k1 e b configurabili.
+ * Il termine di normalizzazione della lunghezza, k1 * (1 - b + b * |d| / avgdl),
+ * viene precalcolato per ogni documento in un array primitivo, così il punteggio di
+ * un posting costa una divisione e nessuna allocazione.
+ */
+public class BM25Similarity extends Similarity {
+    /**
+     * Valore predefinito di k1.
+     */
+    public static final float DEFAULT_K1 = 1.2f;
+
+    /**
+     * Valore predefinito di b.
+     */
+    public static final float DEFAULT_B = 0.75f;
+
+    private final float k1;
+    private final float b;
+    private DocumentLengths preparedLengths;
+    private int preparedDocumentCount;
+    private long preparedTotalLength;
+    private float[] lengthNorms;
+
+    /**
+     * Costruttore con i parametri predefiniti (k1 = 1.2, b = 0.75).
+     */
+    public BM25Similarity() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * Costruttore con parametri specifici.
+     * 
+     * @param k1 La saturazione della frequenza del termine, non negativa
+     * @param b Il peso della normalizzazione per lunghezza, tra 0 e 1
+     */
+    public BM25Similarity(float k1, float b) {
+        if (k1 < 0 || Float.isNaN(k1)) {
+            throw new IllegalArgumentException("k1 deve essere non negativo: " + k1);
+        }
+        if (b < 0 || b > 1 || Float.isNaN(b)) {
+            throw new IllegalArgumentException("b deve essere compreso tra 0 e 1: " + b);
+        }
+        this.k1 = k1;
+        this.b = b;
+        this.lengthNorms = new float[0];
+    }
+
+    public float getK1() {
+        return k1;
+    }
+
+    public float getB() {
+        return b;
+    }
+
+    @Override
+    public void prepare(Dictionary dictionary) {
+        DocumentLengths lengths = dictionary.getDocumentLengths();
+        int documentCount = dictionary.getLiveDocs().cardinality();
+
+        // Ricalcola la tabella solo se l'indice è cambiato
+        if (lengths == preparedLengths && documentCount == preparedDocumentCount
+                && lengths.getTotalLength() == preparedTotalLength && lengthNorms.length == lengths.capacity()) {
+            return;
+        }
+
+        double averageLength = lengths.getAverageLength(documentCount);
+        float[] norms = new float[lengths.capacity()];
+        for (int documentId = 0; documentId < norms.length; documentId++) {
+            double relativeLength = averageLength > 0 ? lengths.get(documentId) / averageLength : 1.0;
+            norms[documentId] = (float) (k1 * (1 - b + b * relativeLength));
+        }
+
+        this.lengthNorms = norms;
+        this.preparedLengths = lengths;
+        this.preparedDocumentCount = documentCount;
+        this.preparedTotalLength = lengths.getTotalLength();
+    }
+
+    /**
+     * Inverse document frequency BM25, sempre positiva.
+     * 
+     * @param documentCount Il numero di documenti della collezione
+     * @param documentFrequency Il numero di documenti che contengono il termine
+     * @return ln(1 + (N - df + 0.5) / (df + 0.5))
+     */
+    public static float idf(int documentCount, int documentFrequency) {
+        return (float) Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    @Override
+    public TermScorer termScorer(int documentCount, int documentFrequency, int queryFrequency) {
+        // L'IDF viene calcolata una sola volta per termine, prima di scorrere i posting
+        final float weight = idf(documentCount, documentFrequency) * queryFrequency;
+        final float[] norms = lengthNorms;
+        final float saturation = k1 + 1;
+        final float defaultNorm = k1;
+
+        return new TermScorer() {
+            @Override
+            public float queryWeight() {
+                return weight;
+            }
+
+            @Override
+            public float score(int documentId, int frequency) {
+                float norm = documentId < norms.length ? norms[documentId] : defaultNorm;
+                return weight * frequency * saturation / (frequency + norm);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "BM25(k1=" + k1 + ", b=" + b + ")";
+    }
+}
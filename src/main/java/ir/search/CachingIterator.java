@@ -0,0 +1,96 @@
+package ir.search;
+
+import ir.model.PostingList;
+
+import java.util.Arrays;
+
+/**
+ * Iteratore che scorre pigramente un altro iteratore e ne raccoglie documenti e frequenze
+ * man mano che il chiamante li richiede. Quando l'iterazione arriva in fondo il risultato
+ * completo viene proposto a una {@link QueryResultCache}. La raccolta viene abbandonata,
+ * senza toccare la cache, se il risultato supera la dimensione ammessa dalla cache o se il
+ * chiamante salta documenti con {@link #advance(int)}; un'iterazione interrotta prima
+ * della fine non inserisce nulla.
+ */
+class CachingIterator extends DocIdIterator {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final DocIdIterator delegate;
+    private final QueryResultCache cache;
+    private final String key;
+    private final long generation;
+    private final long maxPostings;
+    private int[] documentIds;
+    private int[] frequencies;
+    private int size;
+
+    /**
+     * Costruttore per un nuovo iteratore.
+     *
+     * @param delegate L'iteratore che calcola il risultato
+     * @param cache La cache a cui proporre il risultato
+     * @param key La chiave normalizzata della query
+     * @param generation La generazione dell'indice su cui viene calcolato il risultato
+     */
+    CachingIterator(DocIdIterator delegate, QueryResultCache cache, String key, long generation) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.key = key;
+        this.generation = generation;
+        this.maxPostings = cache.getMaxPostings(key);
+        this.documentIds = new int[INITIAL_CAPACITY];
+        this.frequencies = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int docId() {
+        return delegate.docId();
+    }
+
+    @Override
+    public int nextDoc() {
+        int documentId = delegate.nextDoc();
+        if (documentIds == null) {
+            return documentId;
+        }
+        if (documentId == NO_MORE_DOCS) {
+            cache.put(key, new PostingList(documentIds, frequencies, size), generation);
+            stopRecording();
+        } else if (size == maxPostings) {
+            // Il risultato non entrerebbe nella cache
+            stopRecording();
+        } else {
+            if (size == documentIds.length) {
+                int capacity = (int) Math.min(maxPostings, (long) size * 2);
+                documentIds = Arrays.copyOf(documentIds, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity);
+            }
+            documentIds[size] = documentId;
+            frequencies[size] = delegate.frequency();
+            size++;
+        }
+        return documentId;
+    }
+
+    @Override
+    public int advance(int target) {
+        // I documenti saltati mancherebbero dal risultato
+        stopRecording();
+        return delegate.advance(target);
+    }
+
+    @Override
+    public long cost() {
+        return delegate.cost();
+    }
+
+    @Override
+    public int frequency() {
+        return delegate.frequency();
+    }
+
+    private void stopRecording() {
+        documentIds = null;
+        frequencies = null;
+    }
+}
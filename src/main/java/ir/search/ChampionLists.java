@@ -0,0 +1,277 @@
+package ir.search;
+
+import ir.model.Dictionary;
+import ir.model.PostingList;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Livello alto di un indice a due livelli: per ogni termine la lista dei campioni,
+ * cioè gli r documenti con il contributo normalizzato più alto, ordinati per ID come
+ * una normale {@link PostingList}. Le liste dipendono dalla funzione di punteggio e dalle
+ * statistiche della collezione.
+ *
+ * Le liste vengono calcolate tutte con {@link #build(Dictionary, Similarity, int)} quando
+ * l'indice viene pubblicato e salvate accanto ad esso con {@link #write(String)}; solo i
+ * termini con più di r documenti hanno una lista propria, quindi la memoria è al più di
+ * 8r byte per termine. In mancanza di liste precalcolate vengono calcolate alla prima
+ * richiesta, scorrendo tutta la lista di posting del termine, e ne vengono conservate al
+ * più {@link #MAX_CACHED_TERMS}, eliminando quelle usate meno di recente.
+ *
+ * Dopo l'intestazione comune ai livelli precalcolati il file contiene il numero di
+ * campioni e, per ogni termine con una lista propria, documenti e frequenze dei campioni.
+ */
+public class ChampionLists {
+    /**
+     * Numero predefinito di campioni per termine.
+     */
+    public static final int DEFAULT_SIZE = 50;
+
+    /**
+     * Numero massimo di termini di cui conservare la lista dei campioni.
+     */
+    public static final int MAX_CACHED_TERMS = 10000;
+
+    /**
+     * Numero magico all'inizio del file ("IRCL").
+     */
+    public static final int MAGIC = 0x4952434C;
+
+    /**
+     * Versione corrente del formato del file.
+     */
+    public static final int VERSION = 1;
+
+    private final Similarity similarity;
+    private final int size;
+    private final int documentCount;
+    private final long totalLength;
+    private final Map<String, PostingList> lists;
+
+    /**
+     * Costruttore per un nuovo livello di campioni, con le liste calcolate alla prima richiesta.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @param similarity La funzione di punteggio
+     * @param size Il numero di campioni per termine
+     * @throws IllegalArgumentException Se il numero di campioni non è positivo
+     */
+    public ChampionLists(Dictionary dictionary, Similarity similarity, int size) {
+        this(similarity, size, dictionary.getLiveDocs().cardinality(),
+                dictionary.getDocumentLengths().getTotalLength(),
+                new LinkedHashMap<String, PostingList>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PostingList> eldest) {
+                        return size() > MAX_CACHED_TERMS;
+                    }
+                });
+    }
+
+    private ChampionLists(Similarity similarity, int size, int documentCount, long totalLength,
+                          Map<String, PostingList> lists) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Il numero di campioni deve essere positivo: " + size);
+        }
+        this.similarity = similarity;
+        this.size = size;
+        this.documentCount = documentCount;
+        this.totalLength = totalLength;
+        this.lists = lists;
+    }
+
+    /**
+     * Calcola le liste dei campioni di tutto il dizionario.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @param similarity La funzione di punteggio
+     * @param size Il numero di campioni per termine
+     * @return Il livello dei campioni
+     * @throws IllegalArgumentException Se il numero di campioni non è positivo
+     */
+    public static ChampionLists build(Dictionary dictionary, Similarity similarity, int size) {
+        similarity.prepare(dictionary);
+        int documentCount = dictionary.getLiveDocs().cardinality();
+        Map<String, PostingList> lists = new HashMap<>();
+        ChampionLists champions = new ChampionLists(similarity, size, documentCount,
+                dictionary.getDocumentLengths().getTotalLength(), lists);
+        for (String text : dictionary.getTerms()) {
+            PostingList postingList = dictionary.getPostingList(text);
+            if (postingList.size() > size) {
+                Similarity.TermScorer scorer = similarity.termScorer(documentCount, postingList.size(), 1);
+                lists.put(text, select(postingList, similarity, scorer, size));
+            }
+        }
+        return champions;
+    }
+
+    /**
+     * Restituisce la lista dei campioni di un termine. Una lista non precalcolata viene
+     * calcolata alla prima richiesta e i posting scorsi vengono contati tra quelli valutati
+     * dalla ricerca.
+     *
+     * @param text Il testo del termine
+     * @param postingList La lista di posting completa del termine
+     * @param statistics Le statistiche della ricerca in corso
+     * @return La lista dei campioni, ordinata per ID del documento
+     */
+    public PostingList get(String text, PostingList postingList, SearchStatistics statistics) {
+        if (postingList.size() <= size) {
+            return postingList;
+        }
+        PostingList champions = lists.get(text);
+        if (champions == null) {
+            Similarity.TermScorer scorer = similarity.termScorer(documentCount, postingList.size(), 1);
+            champions = select(postingList, similarity, scorer, size);
+            statistics.addScoredPostings(postingList.size());
+            lists.put(text, champions);
+        }
+        return champions;
+    }
+
+    /**
+     * Scrive le liste dei campioni su file.
+     *
+     * @param filePath Il percorso del file di output
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public void write(String filePath) throws IOException {
+        ScoreTierFile.write(filePath, MAGIC, VERSION, similarity, documentCount, totalLength, out -> {
+            out.writeInt(size);
+            out.writeInt(lists.size());
+            for (Map.Entry<String, PostingList> entry : lists.entrySet()) {
+                PostingList champions = entry.getValue();
+                ScoreTierFile.writeText(out, entry.getKey());
+                out.writeInt(champions.size());
+                for (int i = 0; i < champions.size(); i++) {
+                    out.writeInt(champions.getDocumentId(i));
+                    out.writeInt(champions.getFrequency(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Legge le liste dei campioni scritte con {@link #write(String)}. Le liste vengono
+     * accettate solo se sono state calcolate con la stessa funzione di punteggio,
+     * identificata dalla sua rappresentazione testuale, e sulle stesse statistiche della
+     * collezione del dizionario.
+     *
+     * @param filePath Il percorso del file
+     * @param dictionary Il dizionario dell'indice
+     * @param similarity La funzione di punteggio
+     * @return Il livello dei campioni
+     * @throws IOException Se si verifica un errore di I/O, il file non è valido o non
+     *                     corrisponde al dizionario o alla funzione di punteggio
+     */
+    public static ChampionLists read(String filePath, Dictionary dictionary, Similarity similarity)
+            throws IOException {
+        ByteBuffer data = ScoreTierFile.read(filePath, MAGIC, VERSION, "delle liste dei campioni", dictionary,
+                similarity);
+        try {
+            int size = data.getInt();
+            int termCount = data.getInt();
+            if (size <= 0 || termCount < 0) {
+                throw new IOException("File delle liste dei campioni non valido: " + filePath);
+            }
+
+            Map<String, PostingList> lists = new HashMap<>(Math.max(16, termCount * 4 / 3 + 1));
+            for (int t = 0; t < termCount; t++) {
+                String text = ScoreTierFile.readText(data);
+                int length = data.getInt();
+                if (length < 0 || length > size) {
+                    throw new IOException("File delle liste dei campioni non valido: " + filePath);
+                }
+                int[] documentIds = new int[length];
+                int[] frequencies = new int[length];
+                for (int i = 0; i < length; i++) {
+                    documentIds[i] = data.getInt();
+                    frequencies[i] = data.getInt();
+                }
+                lists.put(text, new PostingList(documentIds, frequencies, length));
+            }
+            if (data.hasRemaining()) {
+                throw new IOException("File delle liste dei campioni non valido: " + filePath);
+            }
+            return new ChampionLists(similarity, size, dictionary.getLiveDocs().cardinality(),
+                    dictionary.getDocumentLengths().getTotalLength(), lists);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("File delle liste dei campioni troncato: " + filePath, e);
+        }
+    }
+
+    /**
+     * Verifica se le liste sono state calcolate sulle statistiche correnti della collezione.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @return true se numero di documenti e lunghezza totale della collezione non sono cambiati
+     */
+    public boolean isCurrent(Dictionary dictionary) {
+        return documentCount == dictionary.getLiveDocs().cardinality()
+                && totalLength == dictionary.getDocumentLengths().getTotalLength();
+    }
+
+    /**
+     * Seleziona i documenti con il contributo normalizzato più alto.
+     * Il contributo è proporzionale al peso del termine nella query, quindi la scelta
+     * non dipende dalla frequenza del termine nella query.
+     *
+     * @param postingList La lista di posting completa del termine
+     * @param similarity La funzione di punteggio
+     * @param scorer Lo scorer del termine
+     * @param size Il numero massimo di campioni
+     * @return La lista dei campioni, ordinata per ID del documento
+     */
+    public static PostingList select(PostingList postingList, Similarity similarity, Similarity.TermScorer scorer,
+                                     int size) {
+        if (postingList.size() <= size) {
+            return postingList;
+        }
+
+        TopKCollector collector = new TopKCollector(size);
+        for (int i = 0; i < postingList.size(); i++) {
+            int documentId = postingList.getDocumentId(i);
+            collector.offer(documentId, similarity.normalize(documentId, scorer.score(documentId, postingList.getFrequency(i))));
+        }
+
+        ScoredDocument[] best = collector.results();
+        int[] documentIds = new int[best.length];
+        for (int i = 0; i < best.length; i++) {
+            documentIds[i] = best[i].getDocumentId();
+        }
+        Arrays.sort(documentIds);
+
+        int[] frequencies = new int[documentIds.length];
+        int index = 0;
+        for (int i = 0; i < documentIds.length; i++) {
+            index = postingList.advance(index, documentIds[i]);
+            frequencies[i] = postingList.getFrequency(index);
+        }
+        return new PostingList(documentIds, frequencies, documentIds.length);
+    }
+
+    /**
+     * Restituisce la funzione di punteggio con cui sono state scelte le liste.
+     *
+     * @return La funzione di punteggio
+     */
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Restituisce il numero di campioni per termine.
+     *
+     * @return Il numero di campioni
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,80 @@
+package ir.search;
+
+import java.util.List;
+
+/**
+ * Iteratore congiuntivo (AND): produce i documenti comuni a tutti gli operandi.
+ * Il primo operando guida l'iterazione e gli altri vengono fatti avanzare con salti
+ * ({@link DocIdIterator#advance(int)}) fino al documento candidato.
+ */
+public class ConjunctionIterator extends DocIdIterator {
+    private final DocIdIterator lead;
+    private final DocIdIterator[] others;
+    private int docId;
+
+    /**
+     * Costruttore per un nuovo iteratore congiuntivo.
+     * Gli operandi vengono usati nell'ordine dato: conviene passare per primo il più selettivo.
+     *
+     * @param iterators Gli operandi, almeno uno
+     */
+    public ConjunctionIterator(List<DocIdIterator> iterators) {
+        if (iterators.isEmpty()) {
+            throw new IllegalArgumentException("Una congiunzione richiede almeno un operando");
+        }
+        this.lead = iterators.get(0);
+        this.others = iterators.subList(1, iterators.size()).toArray(new DocIdIterator[0]);
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        return docId = align(lead.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        return docId = align(lead.advance(target));
+    }
+
+    /**
+     * Allinea tutti gli operandi sul primo documento comune a partire da quello dato.
+     */
+    private int align(int candidate) {
+        outer:
+        while (candidate != NO_MORE_DOCS) {
+            for (DocIdIterator other : others) {
+                int otherDoc = other.docId();
+                if (otherDoc < candidate) {
+                    otherDoc = other.advance(candidate);
+                }
+                if (otherDoc > candidate) {
+                    // Un operando ha saltato il candidato: riparti dal suo documento
+                    candidate = otherDoc == NO_MORE_DOCS ? NO_MORE_DOCS : lead.advance(otherDoc);
+                    continue outer;
+                }
+            }
+            return candidate;
+        }
+        return NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return lead.cost();
+    }
+
+    @Override
+    public int frequency() {
+        int frequency = lead.frequency();
+        for (DocIdIterator other : others) {
+            frequency += other.frequency();
+        }
+        return frequency;
+    }
+}
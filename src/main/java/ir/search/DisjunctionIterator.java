@@ -0,0 +1,121 @@
+package ir.search;
+
+import java.util.List;
+
+/**
+ * Iteratore disgiuntivo (OR): produce i documenti presenti in almeno un operando.
+ * Gli operandi sono mantenuti in un min-heap ordinato per documento corrente, per un
+ * costo di O(log k) per posting con k operandi.
+ */
+public class DisjunctionIterator extends DocIdIterator {
+    private final DocIdIterator[] heap;
+    private final long cost;
+    private int heapSize;
+    private int docId;
+
+    /**
+     * Costruttore per un nuovo iteratore disgiuntivo.
+     *
+     * @param iterators Gli operandi, almeno uno, non ancora avviati
+     */
+    public DisjunctionIterator(List<DocIdIterator> iterators) {
+        if (iterators.isEmpty()) {
+            throw new IllegalArgumentException("Una disgiunzione richiede almeno un operando");
+        }
+        this.heap = iterators.toArray(new DocIdIterator[0]);
+        this.heapSize = heap.length;
+        this.docId = -1;
+
+        long totalCost = 0;
+        for (DocIdIterator iterator : heap) {
+            totalCost += iterator.cost();
+        }
+        this.cost = totalCost;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        if (docId == NO_MORE_DOCS) {
+            return NO_MORE_DOCS;
+        }
+        // Avanza tutti gli operandi posizionati sul documento corrente
+        while (heapSize > 0 && heap[0].docId() == docId) {
+            if (heap[0].nextDoc() == NO_MORE_DOCS) {
+                removeTop();
+            } else {
+                siftDown(0);
+            }
+        }
+        return docId = heapSize > 0 ? heap[0].docId() : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int advance(int target) {
+        while (heapSize > 0 && heap[0].docId() < target) {
+            if (heap[0].advance(target) == NO_MORE_DOCS) {
+                removeTop();
+            } else {
+                siftDown(0);
+            }
+        }
+        return docId = heapSize > 0 ? heap[0].docId() : NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return cost;
+    }
+
+    @Override
+    public int frequency() {
+        return frequencyAt(0);
+    }
+
+    /**
+     * Somma le frequenze degli operandi sul documento corrente, visitando solo il
+     * sottoalbero dello heap che vi è posizionato.
+     */
+    private int frequencyAt(int position) {
+        if (position >= heapSize || heap[position].docId() != docId) {
+            return 0;
+        }
+        return heap[position].frequency()
+                + frequencyAt((position << 1) + 1)
+                + frequencyAt((position << 1) + 2);
+    }
+
+    private void removeTop() {
+        heap[0] = heap[--heapSize];
+        heap[heapSize] = null;
+        if (heapSize > 0) {
+            siftDown(0);
+        }
+    }
+
+    private void siftDown(int position) {
+        DocIdIterator entry = heap[position];
+        int key = entry.docId();
+
+        while (true) {
+            int child = (position << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            int right = child + 1;
+            if (right < heapSize && heap[right].docId() < heap[child].docId()) {
+                child = right;
+            }
+            if (key <= heap[child].docId()) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = entry;
+    }
+}
@@ -0,0 +1,89 @@
+package ir.search;
+
+/**
+ * Iteratore pigro sugli ID dei documenti che soddisfano una (sotto)query.
+ * Gli iteratori si compongono in un albero di operatori (termine, AND, OR, NOT) e
+ * producono i documenti in ordine crescente solo quando vengono richiesti, senza
+ * materializzare le liste intermedie.
+ */
+public abstract class DocIdIterator {
+    /**
+     * Valore restituito quando l'iteratore è esaurito.
+     */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * Restituisce il documento corrente: -1 se l'iterazione non è ancora iniziata,
+     * {@link #NO_MORE_DOCS} se è terminata.
+     *
+     * @return L'ID del documento corrente
+     */
+    public abstract int docId();
+
+    /**
+     * Avanza al documento successivo.
+     *
+     * @return L'ID del nuovo documento corrente o {@link #NO_MORE_DOCS}
+     */
+    public abstract int nextDoc();
+
+    /**
+     * Avanza al primo documento con ID maggiore o uguale a quello richiesto.
+     * Il documento richiesto deve essere maggiore del documento corrente.
+     *
+     * @param target L'ID del documento cercato
+     * @return L'ID del nuovo documento corrente o {@link #NO_MORE_DOCS}
+     */
+    public abstract int advance(int target);
+
+    /**
+     * Restituisce una stima del numero massimo di documenti prodotti dall'iteratore,
+     * usata per ordinare gli operandi dal più selettivo al meno selettivo.
+     *
+     * @return Il costo stimato
+     */
+    public abstract long cost();
+
+    /**
+     * Restituisce la somma delle frequenze dei termini sul documento corrente.
+     *
+     * @return La frequenza sul documento corrente
+     */
+    public abstract int frequency();
+
+    /**
+     * Restituisce un iteratore che non produce alcun documento.
+     *
+     * @return Un iteratore vuoto
+     */
+    public static DocIdIterator empty() {
+        return new DocIdIterator() {
+            private int docId = -1;
+
+            @Override
+            public int docId() {
+                return docId;
+            }
+
+            @Override
+            public int nextDoc() {
+                return docId = NO_MORE_DOCS;
+            }
+
+            @Override
+            public int advance(int target) {
+                return docId = NO_MORE_DOCS;
+            }
+
+            @Override
+            public long cost() {
+                return 0;
+            }
+
+            @Override
+            public int frequency() {
+                return 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package ir.search;
+
+/**
+ * Iteratore di esclusione (AND NOT): produce i documenti dell'operando richiesto che
+ * non compaiono nell'operando escluso. L'operando escluso non viene mai scandito per
+ * intero: viene solo fatto avanzare con salti fino ai documenti candidati.
+ */
+public class ExclusionIterator extends DocIdIterator {
+    private final DocIdIterator required;
+    private final DocIdIterator excluded;
+    private int docId;
+
+    /**
+     * Costruttore per un nuovo iteratore di esclusione.
+     *
+     * @param required L'operando i cui documenti vengono prodotti
+     * @param excluded L'operando i cui documenti vengono scartati
+     */
+    public ExclusionIterator(DocIdIterator required, DocIdIterator excluded) {
+        this.required = required;
+        this.excluded = excluded;
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        return docId = skipExcluded(required.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        return docId = skipExcluded(required.advance(target));
+    }
+
+    /**
+     * Scarta i candidati presenti nell'operando escluso.
+     */
+    private int skipExcluded(int candidate) {
+        while (candidate != NO_MORE_DOCS) {
+            int excludedDoc = excluded.docId();
+            if (excludedDoc < candidate) {
+                excludedDoc = excluded.advance(candidate);
+            }
+            if (excludedDoc != candidate) {
+                return candidate;
+            }
+            candidate = required.nextDoc();
+        }
+        return NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return required.cost();
+    }
+
+    @Override
+    public int frequency() {
+        return required.frequency();
+    }
+}
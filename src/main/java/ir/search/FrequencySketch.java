@@ -0,0 +1,87 @@
+package ir.search;
+
+/**
+ * Stima approssimata della frequenza di accesso delle chiavi di una cache, usata per
+ * decidere quali voci ammettere. Count-min sketch con quattro righe di contatori a 4 bit,
+ * impacchettati sedici per long. Dopo un numero di incrementi pari a dieci volte i
+ * contatori di una riga tutti i contatori vengono dimezzati, così le frequenze seguono i
+ * cambiamenti del carico. Non è thread-safe.
+ */
+class FrequencySketch {
+    private static final long[] SEEDS = {
+            0x97CB3127L, 0xB7A3C8F9L, 0xD6E8FEB8L, 0x8D3BC2A5L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Costruttore per uno sketch vuoto.
+     *
+     * @param expectedEntries Il numero stimato di voci della cache, limitato tra 64 e 2^24
+     */
+    FrequencySketch(long expectedEntries) {
+        long expected = Math.max(64, Math.min(1 << 24, expectedEntries));
+        int counters = Integer.highestOneBit((int) expected - 1) << 1;
+        this.table = new long[counters / 16 * 4];
+        this.mask = counters - 1;
+        this.sampleSize = 10 * counters;
+    }
+
+    /**
+     * Registra un accesso a una chiave.
+     *
+     * @param hash L'hash della chiave
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            added |= incrementAt(row, index(hash, row));
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Restituisce la frequenza stimata di una chiave, al più 15.
+     *
+     * @param hash L'hash della chiave
+     * @return La frequenza stimata
+     */
+    int frequency(int hash) {
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < 4; row++) {
+            int counter = index(hash, row);
+            long word = table[row * (table.length / 4) + (counter >>> 4)];
+            frequency = Math.min(frequency, (int) ((word >>> ((counter & 15) << 2)) & 0xF));
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    private boolean incrementAt(int row, int counter) {
+        int slot = row * (table.length / 4) + (counter >>> 4);
+        int shift = (counter & 15) << 2;
+        if (((table[slot] >>> shift) & 0xF) == 0xF) {
+            return false;
+        }
+        table[slot] += 1L << shift;
+        return true;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,336 @@
+package ir.search;
+
+import ir.model.Dictionary;
+import ir.model.PostingList;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indice ordinato per impatto, alternativo alle liste di posting ordinate per documento.
+ * Il contributo normalizzato di ogni posting (con frequenza del termine nella query pari a 1)
+ * viene quantizzato su una scala globale di 2^bits - 1 livelli; i posting di ogni termine
+ * sono raggruppati in segmenti di uguale impatto, ordinati per impatto decrescente, e
+ * all'interno di un segmento per ID di documento crescente. I posting con impatto nullo
+ * vengono scartati.
+ *
+ * Poiché il contributo di un termine è proporzionale al suo peso nella query, l'impatto
+ * di un termine ripetuto nella query si ottiene moltiplicando per il rapporto tra i pesi.
+ *
+ * La costruzione valuta tutti i posting dell'indice, quindi l'indice viene costruito una
+ * volta per funzione di punteggio quando l'indice viene pubblicato e salvato accanto ad
+ * esso con {@link #write(String)}. Dopo l'intestazione comune ai livelli precalcolati il
+ * file contiene livelli, scala e i segmenti di ogni termine.
+ */
+public class ImpactIndex {
+    /**
+     * Numero di bit predefinito per i livelli di impatto.
+     */
+    public static final int DEFAULT_BITS = 8;
+
+    /**
+     * Numero magico all'inizio del file ("IRIM").
+     */
+    public static final int MAGIC = 0x4952494D;
+
+    /**
+     * Versione corrente del formato del file.
+     */
+    public static final int VERSION = 1;
+
+    private final Map<String, ImpactPostings> postings;
+    private final Similarity similarity;
+    private final int documentCount;
+    private final long totalLength;
+    private final int levels;
+    private final float scale;
+
+    private ImpactIndex(Map<String, ImpactPostings> postings, Similarity similarity, int documentCount,
+                        long totalLength, int levels, float scale) {
+        this.postings = postings;
+        this.similarity = similarity;
+        this.documentCount = documentCount;
+        this.totalLength = totalLength;
+        this.levels = levels;
+        this.scale = scale;
+    }
+
+    /**
+     * Costruisce l'indice per impatto di tutto il dizionario.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @param similarity La funzione di punteggio
+     * @param bits Il numero di bit dei livelli di impatto (da 1 a 16)
+     * @return L'indice per impatto
+     * @throws IllegalArgumentException Se il numero di bit non è valido
+     */
+    public static ImpactIndex build(Dictionary dictionary, Similarity similarity, int bits) {
+        if (bits < 1 || bits > 16) {
+            throw new IllegalArgumentException("Il numero di bit deve essere compreso tra 1 e 16: " + bits);
+        }
+
+        similarity.prepare(dictionary);
+        int documentCount = dictionary.getLiveDocs().cardinality();
+        int levels = (1 << bits) - 1;
+
+        // Primo passaggio: contributo massimo su tutto l'indice, che fissa la scala di quantizzazione
+        float maxScore = 0f;
+        for (String text : dictionary.getTerms()) {
+            PostingList postingList = dictionary.getPostingList(text);
+            Similarity.TermScorer scorer = similarity.termScorer(documentCount, postingList.size(), 1);
+            for (int i = 0; i < postingList.size(); i++) {
+                int documentId = postingList.getDocumentId(i);
+                float score = similarity.normalize(documentId, scorer.score(documentId, postingList.getFrequency(i)));
+                maxScore = Math.max(maxScore, score);
+            }
+        }
+        float scale = maxScore > 0 ? maxScore / levels : 0f;
+
+        // Secondo passaggio: quantizzazione e ordinamento per conteggio, stabile sugli ID dei documenti
+        Map<String, ImpactPostings> postings = new HashMap<>();
+        int[] counts = new int[levels + 1];
+        for (String text : dictionary.getTerms()) {
+            PostingList postingList = dictionary.getPostingList(text);
+            Similarity.TermScorer scorer = similarity.termScorer(documentCount, postingList.size(), 1);
+            int size = postingList.size();
+            int[] impacts = new int[size];
+            int kept = 0;
+            int segmentCount = 0;
+
+            for (int i = 0; i < size; i++) {
+                int documentId = postingList.getDocumentId(i);
+                float score = similarity.normalize(documentId, scorer.score(documentId, postingList.getFrequency(i)));
+                int impact = scale > 0 ? Math.min(levels, Math.round(score / scale)) : 0;
+                impacts[i] = impact;
+                if (impact > 0) {
+                    if (counts[impact]++ == 0) {
+                        segmentCount++;
+                    }
+                    kept++;
+                }
+            }
+
+            int[] segmentImpacts = new int[segmentCount];
+            int[] segmentStarts = new int[segmentCount + 1];
+            int segment = 0;
+            int offset = 0;
+            for (int impact = levels; impact > 0; impact--) {
+                if (counts[impact] > 0) {
+                    segmentImpacts[segment] = impact;
+                    segmentStarts[segment] = offset;
+                    offset += counts[impact];
+                    // Da qui in poi counts contiene la prossima posizione libera del segmento
+                    counts[impact] = segmentStarts[segment];
+                    segment++;
+                }
+            }
+            segmentStarts[segmentCount] = kept;
+
+            int[] documentIds = new int[kept];
+            for (int i = 0; i < size; i++) {
+                if (impacts[i] > 0) {
+                    documentIds[counts[impacts[i]]++] = postingList.getDocumentId(i);
+                }
+            }
+            for (int impact : segmentImpacts) {
+                counts[impact] = 0;
+            }
+
+            postings.put(text, new ImpactPostings(segmentImpacts, segmentStarts, documentIds));
+        }
+
+        return new ImpactIndex(postings, similarity, documentCount,
+                dictionary.getDocumentLengths().getTotalLength(), levels, scale);
+    }
+
+    /**
+     * Scrive l'indice per impatto su file.
+     *
+     * @param filePath Il percorso del file di output
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public void write(String filePath) throws IOException {
+        ScoreTierFile.write(filePath, MAGIC, VERSION, similarity, documentCount, totalLength, out -> {
+            out.writeInt(levels);
+            out.writeFloat(scale);
+            out.writeInt(postings.size());
+            for (Map.Entry<String, ImpactPostings> entry : postings.entrySet()) {
+                ImpactPostings impactPostings = entry.getValue();
+                int segmentCount = impactPostings.getSegmentCount();
+                ScoreTierFile.writeText(out, entry.getKey());
+                out.writeInt(segmentCount);
+                for (int segment = 0; segment < segmentCount; segment++) {
+                    out.writeInt(impactPostings.impacts[segment]);
+                    out.writeInt(impactPostings.segmentStarts[segment + 1]);
+                }
+                for (int documentId : impactPostings.documentIds) {
+                    out.writeInt(documentId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Legge un indice per impatto scritto con {@link #write(String)}. L'indice viene
+     * accettato solo se è stato costruito con la stessa funzione di punteggio,
+     * identificata dalla sua rappresentazione testuale, e sulle stesse statistiche della
+     * collezione del dizionario.
+     *
+     * @param filePath Il percorso del file
+     * @param dictionary Il dizionario dell'indice
+     * @param similarity La funzione di punteggio
+     * @return L'indice per impatto
+     * @throws IOException Se si verifica un errore di I/O, il file non è valido o non
+     *                     corrisponde al dizionario o alla funzione di punteggio
+     */
+    public static ImpactIndex read(String filePath, Dictionary dictionary, Similarity similarity)
+            throws IOException {
+        ByteBuffer data = ScoreTierFile.read(filePath, MAGIC, VERSION, "dell'indice per impatto", dictionary,
+                similarity);
+        try {
+            int levels = data.getInt();
+            float scale = data.getFloat();
+            int termCount = data.getInt();
+            if (levels < 1 || termCount < 0) {
+                throw new IOException("File dell'indice per impatto non valido: " + filePath);
+            }
+
+            Map<String, ImpactPostings> postings = new HashMap<>(Math.max(16, termCount * 4 / 3 + 1));
+            for (int t = 0; t < termCount; t++) {
+                String text = ScoreTierFile.readText(data);
+                int segmentCount = data.getInt();
+                if (segmentCount < 0 || segmentCount > data.remaining() / 8) {
+                    throw new IOException("File dell'indice per impatto non valido: " + filePath);
+                }
+                int[] impacts = new int[segmentCount];
+                int[] segmentStarts = new int[segmentCount + 1];
+                for (int segment = 0; segment < segmentCount; segment++) {
+                    impacts[segment] = data.getInt();
+                    segmentStarts[segment + 1] = data.getInt();
+                }
+                int size = segmentStarts[segmentCount];
+                if (size < 0 || size > data.remaining() / 4) {
+                    throw new IOException("File dell'indice per impatto non valido: " + filePath);
+                }
+                int[] documentIds = new int[size];
+                data.asIntBuffer().get(documentIds);
+                data.position(data.position() + size * 4);
+                postings.put(text, new ImpactPostings(impacts, segmentStarts, documentIds));
+            }
+            if (data.hasRemaining()) {
+                throw new IOException("File dell'indice per impatto non valido: " + filePath);
+            }
+            return new ImpactIndex(postings, similarity, dictionary.getLiveDocs().cardinality(),
+                    dictionary.getDocumentLengths().getTotalLength(), levels, scale);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("File dell'indice per impatto troncato: " + filePath, e);
+        }
+    }
+
+    /**
+     * Verifica se l'indice è stato costruito sulle statistiche correnti della collezione.
+     *
+     * @param dictionary Il dizionario dell'indice
+     * @return true se numero di documenti e lunghezza totale della collezione non sono cambiati
+     */
+    public boolean isCurrent(Dictionary dictionary) {
+        return documentCount == dictionary.getLiveDocs().cardinality()
+                && totalLength == dictionary.getDocumentLengths().getTotalLength();
+    }
+
+    /**
+     * Restituisce i segmenti di un termine.
+     *
+     * @param text Il testo del termine
+     * @return I segmenti del termine, oppure null se il termine non è indicizzato
+     */
+    public ImpactPostings getImpactPostings(String text) {
+        return postings.get(text);
+    }
+
+    /**
+     * Restituisce il moltiplicatore degli impatti di un termine che compare più volte nella query.
+     *
+     * @param documentFrequency Il numero di documenti che contengono il termine
+     * @param queryFrequency Il numero di occorrenze del termine nella query
+     * @return Il rapporto tra il peso del termine nella query e il peso con frequenza 1
+     */
+    public float queryMultiplier(int documentFrequency, int queryFrequency) {
+        if (queryFrequency == 1) {
+            return 1f;
+        }
+        float baseWeight = similarity.termScorer(documentCount, documentFrequency, 1).queryWeight();
+        float weight = similarity.termScorer(documentCount, documentFrequency, queryFrequency).queryWeight();
+        return baseWeight != 0 ? weight / baseWeight : 0f;
+    }
+
+    /**
+     * Restituisce la funzione di punteggio con cui è stato costruito l'indice.
+     *
+     * @return La funzione di punteggio
+     */
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Restituisce il numero di livelli di impatto.
+     *
+     * @return Il numero di livelli
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Restituisce il valore di un livello di impatto, per riportare i punteggi quantizzati
+     * sulla scala della funzione di punteggio.
+     *
+     * @return Il contributo corrispondente a un livello
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Posting di un termine raggruppati in segmenti di impatto decrescente.
+     */
+    public static class ImpactPostings {
+        private final int[] impacts;
+        private final int[] segmentStarts;
+        private final int[] documentIds;
+
+        ImpactPostings(int[] impacts, int[] segmentStarts, int[] documentIds) {
+            this.impacts = impacts;
+            this.segmentStarts = segmentStarts;
+            this.documentIds = documentIds;
+        }
+
+        public int getSegmentCount() {
+            return impacts.length;
+        }
+
+        public int getImpact(int segment) {
+            return impacts[segment];
+        }
+
+        public int getSegmentStart(int segment) {
+            return segmentStarts[segment];
+        }
+
+        public int getSegmentEnd(int segment) {
+            return segmentStarts[segment + 1];
+        }
+
+        public int getDocumentId(int index) {
+            return documentIds[index];
+        }
+
+        public int size() {
+            return documentIds.length;
+        }
+    }
+}
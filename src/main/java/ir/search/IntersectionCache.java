@@ -0,0 +1,271 @@
+package ir.search;
+
+import ir.model.PostingList;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache delle intersezioni di coppie di termini, indicizzata dalla coppia di ID dei
+ * termini in ordine crescente. Le query congiuntive con più di due termini possono
+ * partire dall'intersezione di una coppia già in cache invece che dalla lista del
+ * termine più raro.
+ *
+ * Ogni ricerca di una coppia con {@link #get(int, int, long)} ne registra l'accesso in un
+ * {@link FrequencySketch}; {@link #peek(int, int, long)} permette di confrontare più
+ * coppie senza registrarle, così una query registra solo la coppia che usa o che può
+ * proporre. Una coppia viene ammessa solo dopo un numero minimo di ricerche stimate, così le coppie
+ * viste una volta sola non occupano spazio; quando la cache è piena la nuova
+ * coppia sostituisce le voci usate meno di recente solo se è stimata più frequente di
+ * ognuna di esse. La dimensione è limitata in byte, stimati dal numero di posting di ogni
+ * intersezione.
+ *
+ * Come {@link QueryResultCache} la cache è legata alla generazione del dizionario, i
+ * metodi sono sincronizzati e le liste restituite sono condivise e non vanno modificate.
+ */
+public class IntersectionCache {
+    /**
+     * Dimensione massima predefinita in byte.
+     */
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    /**
+     * Numero minimo predefinito di ricerche stimate perché una coppia venga ammessa.
+     */
+    public static final int DEFAULT_MIN_FREQUENCY = 2;
+
+    /**
+     * Stima in byte del costo fisso di una voce: oggetti, chiave e nodi della mappa.
+     */
+    private static final int ENTRY_OVERHEAD = 112;
+
+    private final long maxBytes;
+    private final int minFrequency;
+    private final LinkedHashMap<Long, Entry> entries;
+    private final FrequencySketch sketch;
+    private long bytes;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long invalidations;
+
+    /**
+     * Costruttore per una nuova cache vuota con la soglia di ammissione predefinita.
+     *
+     * @param maxBytes La dimensione massima stimata in byte
+     * @throws IllegalArgumentException Se la dimensione non è positiva
+     */
+    public IntersectionCache(long maxBytes) {
+        this(maxBytes, DEFAULT_MIN_FREQUENCY);
+    }
+
+    /**
+     * Costruttore per una nuova cache vuota.
+     *
+     * @param maxBytes La dimensione massima stimata in byte
+     * @param minFrequency Il numero minimo di ricerche stimate perché una coppia venga ammessa, tra 1 e 15
+     * @throws IllegalArgumentException Se la dimensione non è positiva o la soglia non è valida
+     */
+    public IntersectionCache(long maxBytes, int minFrequency) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("La dimensione della cache deve essere positiva: " + maxBytes);
+        }
+        if (minFrequency < 1 || minFrequency > 15) {
+            throw new IllegalArgumentException("La soglia di ammissione deve essere tra 1 e 15: " + minFrequency);
+        }
+        this.maxBytes = maxBytes;
+        this.minFrequency = minFrequency;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maxBytes / ENTRY_OVERHEAD);
+    }
+
+    /**
+     * Cerca l'intersezione di una coppia di termini e ne registra la ricerca.
+     *
+     * @param termId1 L'ID del primo termine
+     * @param termId2 L'ID del secondo termine
+     * @param generation La generazione corrente del dizionario
+     * @return L'intersezione, oppure null se non è in cache
+     */
+    public synchronized PostingList get(int termId1, int termId2, long generation) {
+        checkGeneration(generation);
+        long key = key(termId1, termId2);
+        sketch.increment(hash(key));
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Cerca l'intersezione di una coppia di termini senza registrarne la ricerca nello
+     * sketch né nelle statistiche.
+     *
+     * @param termId1 L'ID del primo termine
+     * @param termId2 L'ID del secondo termine
+     * @param generation La generazione corrente del dizionario
+     * @return L'intersezione, oppure null se non è in cache
+     */
+    public synchronized PostingList peek(int termId1, int termId2, long generation) {
+        checkGeneration(generation);
+        Entry entry = entries.get(key(termId1, termId2));
+        return entry != null ? entry.result : null;
+    }
+
+    /**
+     * Propone l'intersezione di una coppia di termini, che viene inserita se la coppia è
+     * stata cercata abbastanza spesso e, a cache piena, più spesso delle voci che dovrebbe
+     * sostituire.
+     *
+     * @param termId1 L'ID del primo termine
+     * @param termId2 L'ID del secondo termine
+     * @param result L'intersezione delle liste di posting dei due termini
+     * @param generation La generazione del dizionario su cui è stata calcolata l'intersezione
+     * @return true se l'intersezione è stata inserita
+     */
+    public synchronized boolean put(int termId1, int termId2, PostingList result, long generation) {
+        checkGeneration(generation);
+        long key = key(termId1, termId2);
+        int frequency = sketch.frequency(hash(key));
+        long size = ENTRY_OVERHEAD + 8L * result.size();
+        if (frequency < minFrequency || size > maxBytes || entries.containsKey(key)) {
+            rejections++;
+            return false;
+        }
+
+        // Le vittime vengono scelte in ordine LRU ma eliminate solo se la coppia le batte tutte
+        Iterator<Entry> victims = entries.values().iterator();
+        long freed = 0;
+        int count = 0;
+        while (bytes - freed + size > maxBytes) {
+            Entry victim = victims.next();
+            if (sketch.frequency(hash(victim.key)) >= frequency) {
+                rejections++;
+                return false;
+            }
+            freed += victim.bytes;
+            count++;
+        }
+        victims = entries.values().iterator();
+        for (int i = 0; i < count; i++) {
+            victims.next();
+            victims.remove();
+            evictions++;
+        }
+        bytes -= freed;
+        entries.put(key, new Entry(key, result, size));
+        bytes += size;
+        return true;
+    }
+
+    private static long key(int termId1, int termId2) {
+        int low = Math.min(termId1, termId2);
+        int high = Math.max(termId1, termId2);
+        return ((long) low << 32) | (high & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Mescola i due ID della chiave: con {@link Long#hashCode(long)}, cioè lo XOR delle
+     * due metà, tutte le coppie con lo stesso XOR avrebbero lo stesso hash.
+     */
+    private static int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private void checkGeneration(long generation) {
+        if (generation != this.generation) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            clear();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Svuota la cache, mantenendo le statistiche di utilizzo.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Restituisce il numero di coppie in cache.
+     *
+     * @return Il numero di coppie
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Restituisce la dimensione stimata delle voci in cache.
+     *
+     * @return La dimensione in byte
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Restituisce la frazione di ricerche servite dalla cache.
+     *
+     * @return Il tasso di successo, oppure 0 se non ci sono state ricerche
+     */
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests > 0 ? (double) hits / requests : 0.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("IntersectionCache{coppie=%d, byte=%d/%d, successi=%.2f%%, eliminazioni=%d, "
+                        + "rifiuti=%d, invalidazioni=%d}",
+                entries.size(), bytes, maxBytes, getHitRatio() * 100, evictions, rejections, invalidations);
+    }
+
+    /**
+     * Voce della cache con la sua dimensione stimata.
+     */
+    private static class Entry {
+        final long key;
+        final PostingList result;
+        final long bytes;
+
+        Entry(long key, PostingList result, long bytes) {
+            this.key = key;
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ir.search;
+
+import ir.model.LiveDocs;
+
+/**
+ * Iteratore su tutti i documenti dell'indice, usato come insieme universo per le
+ * negazioni pure.
+ */
+public class LiveDocsIterator extends DocIdIterator {
+    private final LiveDocs liveDocs;
+    private int docId;
+
+    /**
+     * Costruttore per un nuovo iteratore sui documenti dell'indice.
+     * 
+     * @param liveDocs La bitmap dei documenti
+     */
+    public LiveDocsIterator(LiveDocs liveDocs) {
+        this.liveDocs = liveDocs;
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(docId + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        int next = liveDocs.nextDocument(target);
+        return docId = next < 0 ? NO_MORE_DOCS : next;
+    }
+
+    @Override
+    public long cost() {
+        return liveDocs.cardinality();
+    }
+
+    @Override
+    public int frequency() {
+        return 0;
+    }
+}
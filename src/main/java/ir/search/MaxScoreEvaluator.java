@@ -0,0 +1,141 @@
+package ir.search;
+
+/**
+ * Valutazione top-k delle query disgiuntive con l'algoritmo MaxScore.
+ * I termini sono ordinati per punteggio massimo crescente; i primi, la cui somma dei
+ * massimi non supera la soglia corrente del top-k, sono non essenziali: un documento
+ * che contiene solo loro non può entrare nel top-k. I candidati vengono quindi generati
+ * solo dalle liste essenziali, e le liste non essenziali vengono consultate con salti
+ * solo per i candidati, interrompendo la valutazione appena il documento non può più
+ * superare la soglia. La partizione viene aggiornata ogni volta che la soglia cresce.
+ * Ogni documento valutato riceve esattamente lo stesso punteggio della valutazione esaustiva.
+ */
+class MaxScoreEvaluator {
+    private final Similarity similarity;
+    private final float queryNormalization;
+
+    /**
+     * Costruttore per un nuovo valutatore.
+     * 
+     * @param similarity La funzione di punteggio
+     * @param queryNormalization Il fattore di normalizzazione della query
+     */
+    MaxScoreEvaluator(Similarity similarity, float queryNormalization) {
+        this.similarity = similarity;
+        this.queryNormalization = queryNormalization;
+    }
+
+    /**
+     * Valuta la query e raccoglie i migliori documenti.
+     * 
+     * @param terms I cursori dei termini, nell'ordine della query
+     * @param collector Il collettore dei risultati
+     * @param statistics Le statistiche da aggiornare
+     */
+    void evaluate(TermCursor[] terms, TopKCollector collector, SearchStatistics statistics) {
+        int count = terms.length;
+
+        // Indici dei termini ordinati per punteggio massimo crescente
+        int[] byBound = new int[count];
+        for (int i = 0; i < count; i++) {
+            byBound[i] = i;
+        }
+        for (int i = 1; i < count; i++) {
+            int term = byBound[i];
+            int j = i - 1;
+            while (j >= 0 && terms[byBound[j]].upperBound > terms[term].upperBound) {
+                byBound[j + 1] = byBound[j];
+                j--;
+            }
+            byBound[j + 1] = term;
+        }
+
+        // prefixBounds[i] = somma dei massimi dei termini byBound[0..i]
+        float[] prefixBounds = new float[count];
+        float sum = 0f;
+        for (int i = 0; i < count; i++) {
+            sum += terms[byBound[i]].upperBound;
+            prefixBounds[i] = sum;
+        }
+
+        float[] contributions = new float[count];
+        float threshold = collector.threshold();
+        int firstEssential = split(prefixBounds, threshold);
+
+        while (firstEssential < count) {
+            // Il candidato è il documento minimo tra le liste essenziali
+            int candidate = DocIdIterator.NO_MORE_DOCS;
+            for (int i = firstEssential; i < count; i++) {
+                candidate = Math.min(candidate, terms[byBound[i]].docId);
+            }
+            if (candidate == DocIdIterator.NO_MORE_DOCS) {
+                break;
+            }
+
+            float partial = 0f;
+            long scored = 0;
+            for (int i = firstEssential; i < count; i++) {
+                int term = byBound[i];
+                if (terms[term].docId == candidate) {
+                    contributions[term] = terms[term].score();
+                    partial += similarity.normalize(candidate, contributions[term]) * queryNormalization;
+                    scored++;
+                }
+            }
+
+            // Consulta le liste non essenziali dalla più promettente, finché il candidato può farcela
+            boolean viable = true;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (partial * TermCursor.BOUND_SLACK + prefixBounds[i] <= threshold) {
+                    viable = false;
+                    break;
+                }
+                int term = byBound[i];
+                TermCursor cursor = terms[term];
+                if (cursor.docId < candidate) {
+                    cursor.advance(candidate);
+                }
+                if (cursor.docId == candidate) {
+                    contributions[term] = cursor.score();
+                    partial += similarity.normalize(candidate, contributions[term]) * queryNormalization;
+                    scored++;
+                }
+            }
+            statistics.addScoredPostings(scored);
+
+            if (viable) {
+                // Punteggio finale sommato nell'ordine della query, come nella valutazione esaustiva
+                float total = 0f;
+                for (int term = 0; term < count; term++) {
+                    if (terms[term].docId == candidate) {
+                        total += contributions[term];
+                    }
+                }
+                statistics.addEvaluatedDocuments(1);
+                if (collector.offer(candidate, similarity.normalize(candidate, total) * queryNormalization)) {
+                    threshold = collector.threshold();
+                    firstEssential = split(prefixBounds, threshold);
+                }
+            }
+
+            for (int i = firstEssential; i < count; i++) {
+                TermCursor cursor = terms[byBound[i]];
+                if (cursor.docId == candidate) {
+                    cursor.nextDoc();
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'indice del primo termine essenziale, cioè il numero di termini
+     * la cui somma dei punteggi massimi non supera la soglia.
+     */
+    private static int split(float[] prefixBounds, float threshold) {
+        int firstEssential = 0;
+        while (firstEssential < prefixBounds.length && prefixBounds[firstEssential] <= threshold) {
+            firstEssential++;
+        }
+        return firstEssential;
+    }
+}
@@ -1,7 +1,5 @@
 package ir.search;
 
-import ir.index.PorterStemmer;
-import ir.index.StopList;
 import ir.model.Dictionary;
 import ir.model.PostingList;
 import ir.model.Term;
@@ -12,8 +10,18 @@ import java.util.List;
 
 /**
  * Processore di query ottimizzato che riordina i termini in base alla frequenza dei documenti.
+ * Le query congiuntive possono riusare le intersezioni delle coppie di termini più
+ * frequenti conservate in una {@link IntersectionCache}.
  */
 public class OptimizedQueryProcessor extends QueryProcessor {
+    /**
+     * Numero massimo di termini, i più rari della query, tra cui cercare una coppia nella
+     * cache delle intersezioni.
+     */
+    private static final int MAX_CACHED_PAIR_TERMS = 8;
+
+    private IntersectionCache intersectionCache;
+
     /**
      * Costruttore per un nuovo processore di query ottimizzato.
      * 
@@ -24,72 +32,157 @@ public class OptimizedQueryProcessor extends QueryProcessor {
     }
 
     /**
-     * Processa una query congiuntiva (AND) con ottimizzazione.
-     * I termini vengono ordinati in ordine crescente di frequenza dei documenti.
+     * Imposta la cache delle intersezioni di coppie di termini usata dalle query congiuntive.
      * 
-     * @param terms I termini della query
+     * @param intersectionCache La cache delle intersezioni, oppure null per non usarla
+     */
+    public void setIntersectionCache(IntersectionCache intersectionCache) {
+        this.intersectionCache = intersectionCache;
+    }
+
+    /**
+     * Interseca le liste di posting in ordine crescente di frequenza dei documenti,
+     * così i risultati intermedi restano piccoli. Se è impostata una cache delle
+     * intersezioni, l'intersezione parte dalla coppia fornita da
+     * {@link #intersectCachedPair(List, int[])}.
+     * 
+     * @param terms I termini normalizzati, tutti presenti nel dizionario
      * @return La lista di posting risultante dall'intersezione
      */
     @Override
-    public PostingList processConjunctiveQuery(String[] terms) {
-        if (terms.length == 0) {
-            return new PostingList();
-        }
-        
+    protected PostingList intersectTerms(List<String> terms) {
         Dictionary dictionary = getDictionary();
-        StopList stopList = getStopList();
-        PorterStemmer stemmer = getStemmer();
-        boolean useStopList = isUseStopList();
-        boolean useStemming = isUseStemming();
         
         // Memorizza i termini validi con le loro frequenze di documento
         List<TermFrequency> validTerms = new ArrayList<>();
-        
-        // Elabora i termini
         for (String termText : terms) {
-            termText = termText.toLowerCase();
-            
-            // Salta se è una stop word
-            if (useStopList && stopList.isStopWord(termText)) {
-                continue;
-            }
-            
-            // Applica lo stemming se abilitato
-            if (useStemming) {
-                termText = stemmer.stem(termText);
-            }
-            
-            if (dictionary.containsTerm(termText)) {
-                Term term = dictionary.getTerm(termText);
-                int docFreq = term.getDocumentFrequency();
-                validTerms.add(new TermFrequency(termText, docFreq));
-            }
-        }
-        
-        if (validTerms.isEmpty()) {
-            return new PostingList();
+            Term term = dictionary.getTerm(termText);
+            validTerms.add(new TermFrequency(termText, term.getDocumentFrequency()));
         }
         
         // Ordina i termini in base alla frequenza dei documenti (crescente)
         validTerms.sort(Comparator.comparingInt(TermFrequency::getFrequency));
         
-        // Prendi la posting list del primo termine (quello con la frequenza più bassa)
-        PostingList result = dictionary.getPostingList(validTerms.get(0).getTerm());
+        List<String> sortedTerms = new ArrayList<>(validTerms.size());
+        for (TermFrequency term : validTerms) {
+            sortedTerms.add(term.getTerm());
+        }
+        int[] pair = new int[2];
+        PostingList start = intersectCachedPair(sortedTerms, pair);
+        if (start == null) {
+            return intersect(validTerms, null, -1, -1);
+        }
+        return intersect(validTerms, start, pair[0], pair[1]);
+    }
+    
+    /**
+     * Restituisce l'intersezione in cache con meno documenti tra le coppie dei termini più
+     * rari; se nessuna è in cache calcola l'intersezione dei due termini più rari e la
+     * propone alla cache. Senza cache delle intersezioni restituisce null.
+     * 
+     * @param terms I termini normalizzati della congiunzione, tutti presenti nel dizionario,
+     *              in ordine crescente di frequenza dei documenti
+     * @param pair Array di due elementi in cui vengono scritte le posizioni in terms dei
+     *             termini intersecati
+     * @return L'intersezione della coppia, oppure null
+     */
+    @Override
+    protected PostingList intersectCachedPair(List<String> terms, int[] pair) {
+        IntersectionCache cache = intersectionCache;
+        if (cache == null || terms.size() < 2) {
+            return null;
+        }
+        
+        Dictionary dictionary = getDictionary();
+        long generation = dictionary.getGeneration();
+        int pairTerms = Math.min(terms.size(), MAX_CACHED_PAIR_TERMS);
+        int[] termIds = new int[pairTerms];
+        for (int i = 0; i < pairTerms; i++) {
+            termIds[i] = dictionary.getTermId(terms.get(i));
+        }
+        
+        // Cerca la coppia in cache con l'intersezione più piccola, senza registrare le ricerche
+        PostingList smallest = null;
+        int first = 0;
+        int second = 1;
+        for (int i = 0; i < pairTerms; i++) {
+            for (int j = i + 1; j < pairTerms; j++) {
+                PostingList candidate = cache.peek(termIds[i], termIds[j], generation);
+                if (candidate != null && (smallest == null || candidate.size() < smallest.size())) {
+                    smallest = candidate;
+                    first = i;
+                    second = j;
+                }
+            }
+        }
+        
+        // Viene registrata una sola coppia per query: quella usata oppure, se nessuna è in
+        // cache, quella dei due termini più rari, l'unica che viene proposta
+        PostingList result = cache.get(termIds[first], termIds[second], generation);
+        if (result == null) {
+            first = 0;
+            second = 1;
+            result = dictionary.getPostingList(terms.get(0)).intersect(dictionary.getPostingList(terms.get(1)));
+            cache.put(termIds[0], termIds[1], result, generation);
+        }
+        pair[0] = first;
+        pair[1] = second;
+        return result;
+    }
+    
+    /**
+     * Interseca in ordine le liste dei termini, partendo dal risultato di una coppia già
+     * calcolata oppure dalla lista del primo termine.
+     */
+    private PostingList intersect(List<TermFrequency> terms, PostingList start, int first, int second) {
+        Dictionary dictionary = getDictionary();
+        PostingList result = start;
         
-        // Interseca con le posting list degli altri termini
-        for (int i = 1; i < validTerms.size(); i++) {
-            PostingList nextList = dictionary.getPostingList(validTerms.get(i).getTerm());
-            result = result.intersect(nextList);
-            
+        for (int i = 0; i < terms.size(); i++) {
+            if (i == first || i == second) {
+                continue;
+            }
             // Se la posting list è vuota, non serve continuare
-            if (result.isEmpty()) {
+            if (result != null && result.isEmpty()) {
                 break;
             }
+            PostingList nextList = dictionary.getPostingList(terms.get(i).getTerm());
+            result = result == null ? nextList : result.intersect(nextList);
         }
         
         return result;
     }
     
+    /**
+     * Attiva la pianificazione basata sui costi per le query booleane.
+     * 
+     * @return true
+     */
+    @Override
+    protected boolean isCostBasedPlanning() {
+        return true;
+    }
+    
+    /**
+     * Crea un iteratore pigro per una query congiuntiva (AND) con ottimizzazione.
+     * Gli operandi vengono ordinati per costo crescente, così il termine più raro
+     * guida l'iterazione.
+     * 
+     * @param terms I termini della query
+     * @return L'iteratore sui documenti che contengono tutti i termini
+     */
+    @Override
+    public DocIdIterator createConjunctiveIterator(String[] terms) {
+        List<DocIdIterator> iterators = createTermIterators(terms);
+        
+        if (iterators.isEmpty()) {
+            return DocIdIterator.empty();
+        }
+        
+        iterators.sort(Comparator.comparingLong(DocIdIterator::cost));
+        return new ConjunctionIterator(iterators);
+    }
+    
     // Classe di supporto per memorizzare un termine con la sua frequenza
     private static class TermFrequency {
         private String term;
@@ -109,24 +202,8 @@ public class OptimizedQueryProcessor extends QueryProcessor {
         }
     }
     
-    // Metodi di accesso per le variabili protette della classe padre
+    // Metodo di accesso al dizionario della classe padre
     private Dictionary getDictionary() {
         return super.dictionary;
     }
-    
-    private StopList getStopList() {
-        return super.stopList;
-    }
-    
-    private PorterStemmer getStemmer() {
-        return super.stemmer;
-    }
-    
-    private boolean isUseStopList() {
-        return super.useStopList;
-    }
-    
-    private boolean isUseStemming() {
-        return super.useStemming;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package ir.search;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statistiche dei termini delle query: numero di volte in cui ogni termine normalizzato è
+ * stato cercato. Le statistiche vengono salvate tra un'esecuzione e l'altra, ad esempio
+ * per scegliere le liste di posting da precaricare all'avvio. Il numero di termini distinti
+ * è limitato: quando viene superato restano solo i termini più cercati, metà del limite,
+ * così la potatura resta rara. Può essere aggiornato da più thread.
+ */
+public class QueryLog {
+    /**
+     * Numero massimo predefinito di termini salvati, i più cercati.
+     */
+    public static final int DEFAULT_MAX_SAVED_TERMS = 10000;
+
+    /**
+     * Numero massimo predefinito di termini distinti registrati.
+     */
+    public static final int DEFAULT_MAX_TERMS = 100000;
+
+    private final Map<String, Long> counts;
+    private final int maxTerms;
+
+    /**
+     * Costruttore per statistiche vuote con il limite predefinito di termini.
+     */
+    public QueryLog() {
+        this(DEFAULT_MAX_TERMS);
+    }
+
+    /**
+     * Costruttore per statistiche vuote.
+     *
+     * @param maxTerms Il numero massimo di termini distinti registrati, almeno 2
+     * @throws IllegalArgumentException Se il limite non è valido
+     */
+    public QueryLog(int maxTerms) {
+        if (maxTerms < 2) {
+            throw new IllegalArgumentException("Il numero massimo di termini deve essere almeno 2: " + maxTerms);
+        }
+        this.counts = new ConcurrentHashMap<>();
+        this.maxTerms = maxTerms;
+    }
+
+    /**
+     * Registra una ricerca di un termine.
+     *
+     * @param term Il termine normalizzato
+     */
+    public void record(String term) {
+        counts.merge(term, 1L, Long::sum);
+        if (counts.size() > maxTerms) {
+            prune();
+        }
+    }
+
+    /**
+     * Riduce i termini registrati ai più cercati, metà del limite. Le registrazioni
+     * concorrenti di un termine eliminato possono andare perse.
+     */
+    private synchronized void prune() {
+        if (counts.size() <= maxTerms) {
+            return;
+        }
+        Set<String> kept = new HashSet<>(getTopTerms(maxTerms / 2));
+        counts.keySet().retainAll(kept);
+    }
+
+    /**
+     * Restituisce il numero di ricerche di un termine.
+     *
+     * @param term Il termine normalizzato
+     * @return Il numero di ricerche
+     */
+    public long getCount(String term) {
+        return counts.getOrDefault(term, 0L);
+    }
+
+    /**
+     * Restituisce i termini più cercati, in ordine decrescente di ricerche.
+     *
+     * @param count Il numero massimo di termini
+     * @return I termini più cercati
+     */
+    public List<String> getTopTerms(int count) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+        List<String> result = new ArrayList<>(Math.min(count, entries.size()));
+        for (Map.Entry<String, Long> entry : entries) {
+            if (result.size() == count) {
+                break;
+            }
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    /**
+     * Restituisce il numero di termini distinti registrati.
+     *
+     * @return Il numero di termini
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Salva i termini più cercati in un file di testo, una riga per termine con il numero
+     * di ricerche. Il file viene scritto in un file temporaneo e poi sostituito.
+     *
+     * @param filePath Il percorso del file
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public void save(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (String term : getTopTerms(DEFAULT_MAX_SAVED_TERMS)) {
+                writer.write(counts.get(term) + "\t" + term);
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Carica le statistiche salvate con {@link #save(String)}. Le righe non valide vengono ignorate.
+     *
+     * @param filePath Il percorso del file
+     * @return Le statistiche caricate, vuote se il file non esiste
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public static QueryLog load(String filePath) throws IOException {
+        QueryLog log = new QueryLog();
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return log;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0 || tab == line.length() - 1) {
+                    continue;
+                }
+                try {
+                    log.counts.merge(line.substring(tab + 1), Long.parseLong(line.substring(0, tab)), Long::sum);
+                    if (log.counts.size() > log.maxTerms) {
+                        log.prune();
+                    }
+                } catch (NumberFormatException e) {
+                    // Riga non valida
+                }
+            }
+        }
+        return log;
+    }
+}
@@ -0,0 +1,151 @@
+package ir.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Nodo dell'albero sintattico di una query booleana.
+ * Un nodo AND senza operandi è neutro (ad esempio una query composta solo da stop
+ * words), un nodo OR senza operandi corrisponde a nessun documento e la sua negazione a
+ * tutti i documenti.
+ */
+public abstract class QueryNode {
+    private long cost;
+
+    /**
+     * Restituisce il costo stimato del nodo (numero massimo di documenti prodotti),
+     * calcolato dal planner.
+     * 
+     * @return Il costo stimato
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    void setCost(long cost) {
+        this.cost = cost;
+    }
+
+    /**
+     * Nodo foglia: un singolo termine.
+     */
+    public static final class TermNode extends QueryNode {
+        private final String text;
+
+        public TermNode(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Nodo foglia: un'espressione con caratteri jolly o un termine approssimato, già espansi
+     * dal planner nei termini del dizionario corrispondenti. Viene valutato come unione
+     * delle loro liste.
+     */
+    public static final class MultiTermNode extends QueryNode {
+        private final String pattern;
+        private final List<String> terms;
+
+        public MultiTermNode(String pattern, List<String> terms) {
+            this.pattern = pattern;
+            this.terms = new ArrayList<>(terms);
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public List<String> getTerms() {
+            return Collections.unmodifiableList(terms);
+        }
+
+        @Override
+        public String toString() {
+            return pattern + "[" + terms.size() + " termini]";
+        }
+    }
+
+    /**
+     * Nodo congiuntivo: tutti gli operandi devono essere soddisfatti.
+     */
+    public static final class AndNode extends QueryNode {
+        private final List<QueryNode> children;
+
+        public AndNode(List<QueryNode> children) {
+            this.children = new ArrayList<>(children);
+        }
+
+        public List<QueryNode> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        @Override
+        public String toString() {
+            return children.isEmpty() ? "*" : join(children, " AND ");
+        }
+    }
+
+    /**
+     * Nodo disgiuntivo: almeno un operando deve essere soddisfatto.
+     */
+    public static final class OrNode extends QueryNode {
+        private final List<QueryNode> children;
+
+        public OrNode(List<QueryNode> children) {
+            this.children = new ArrayList<>(children);
+        }
+
+        public List<QueryNode> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        @Override
+        public String toString() {
+            return children.isEmpty() ? "()" : join(children, " OR ");
+        }
+    }
+
+    /**
+     * Nodo di negazione: l'operando non deve essere soddisfatto.
+     */
+    public static final class NotNode extends QueryNode {
+        private final QueryNode child;
+
+        public NotNode(QueryNode child) {
+            this.child = child;
+        }
+
+        public QueryNode getChild() {
+            return child;
+        }
+
+        @Override
+        public String toString() {
+            boolean leaf = child instanceof TermNode || child instanceof MultiTermNode
+                    || child instanceof OrNode && ((OrNode) child).children.isEmpty();
+            return "NOT " + (leaf ? child.toString() : "(" + child + ")");
+        }
+    }
+
+    private static String join(List<QueryNode> children, String operator) {
+        StringBuilder sb = new StringBuilder();
+        for (QueryNode child : children) {
+            if (sb.length() > 0) {
+                sb.append(operator);
+            }
+            boolean nested = child instanceof AndNode || child instanceof OrNode;
+            sb.append(nested ? "(" + child + ")" : child.toString());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package ir.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser per le query booleane.
+ * Supporta gli operatori AND, OR e NOT (in maiuscolo) e le parentesi, ad esempio
+ * {@code (great OR excellent) AND acting NOT boring}. NOT ha la precedenza più alta,
+ * poi AND e infine OR; un NOT dopo un operando equivale ad AND NOT. I termini adiacenti
+ * senza operatore sono combinati con l'operatore predefinito. Un termine può contenere
+ * il carattere jolly '*' (ad esempio {@code act*}, {@code *ing} o {@code ch*ter}), che
+ * corrisponde a qualsiasi sequenza di caratteri, oppure terminare con '~' per la ricerca
+ * approssimata ({@code actng~} entro una modifica, {@code actng~2} entro due).
+ */
+public class QueryParser {
+    private final boolean defaultConjunction;
+    private List<String> tokens;
+    private int position;
+
+    /**
+     * Costruttore per un nuovo parser.
+     * 
+     * @param defaultConjunction true per combinare i termini adiacenti con AND, false per OR
+     */
+    public QueryParser(boolean defaultConjunction) {
+        this.defaultConjunction = defaultConjunction;
+    }
+
+    /**
+     * Analizza una query testuale.
+     * 
+     * @param query La query
+     * @return L'albero sintattico della query
+     * @throws IllegalArgumentException Se la query non è sintatticamente valida
+     */
+    public QueryNode parse(String query) {
+        tokens = tokenize(query);
+        position = 0;
+
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("Query vuota");
+        }
+
+        QueryNode node = parseOr();
+        if (position < tokens.size()) {
+            throw new IllegalArgumentException("Simbolo inatteso '" + tokens.get(position) + "' nella query");
+        }
+        return node;
+    }
+
+    private List<String> tokenize(String query) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '(' || c == ')' || Character.isWhitespace(c)) {
+                if (current.length() > 0) {
+                    result.add(current.toString());
+                    current.setLength(0);
+                }
+                if (!Character.isWhitespace(c)) {
+                    result.add(String.valueOf(c));
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) {
+            result.add(current.toString());
+        }
+        return result;
+    }
+
+    private QueryNode parseOr() {
+        List<QueryNode> operands = new ArrayList<>();
+        operands.add(parseAnd());
+
+        while (position < tokens.size()) {
+            String token = tokens.get(position);
+            if (token.equals("OR")) {
+                position++;
+            } else if (defaultConjunction || !startsOperand(token)) {
+                break;
+            }
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new QueryNode.OrNode(operands);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> operands = new ArrayList<>();
+        operands.add(parseUnary());
+
+        while (position < tokens.size()) {
+            String token = tokens.get(position);
+            if (token.equals("AND")) {
+                position++;
+            } else if (!token.equals("NOT") && (!defaultConjunction || !startsOperand(token))) {
+                break;
+            }
+            operands.add(parseUnary());
+        }
+        return operands.size() == 1 ? operands.get(0) : new QueryNode.AndNode(operands);
+    }
+
+    private QueryNode parseUnary() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException("Query incompleta: manca un operando");
+        }
+
+        String token = tokens.get(position++);
+        switch (token) {
+            case "NOT":
+                return new QueryNode.NotNode(parseUnary());
+            case "(":
+                QueryNode node = parseOr();
+                if (position >= tokens.size() || !tokens.get(position).equals(")")) {
+                    throw new IllegalArgumentException("Parentesi non bilanciate nella query");
+                }
+                position++;
+                return node;
+            case ")":
+            case "AND":
+            case "OR":
+                throw new IllegalArgumentException("Simbolo inatteso '" + token + "' nella query");
+            default:
+                return new QueryNode.TermNode(token);
+        }
+    }
+
+    private static boolean startsOperand(String token) {
+        return !token.equals(")") && !token.equals("AND") && !token.equals("OR");
+    }
+}
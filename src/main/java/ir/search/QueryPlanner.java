@@ -0,0 +1,338 @@
+package ir.search;
+
+import ir.index.TermNormalizer;
+import ir.model.Dictionary;
+import ir.model.PostingList;
+import ir.model.Term;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pianificatore delle query booleane.
+ * Normalizza i termini come il processore di query, appiattisce gli AND/OR annidati,
+ * elimina i rami vuoti e, se la pianificazione basata sui costi è attiva, ordina gli
+ * operandi congiuntivi per frequenza dei documenti crescente. Le negazioni vengono
+ * sempre spostate in fondo alla congiunzione, così sono valutate solo sui candidati
+ * con salti sulla lista esclusa; le negazioni pure sono valutate come complemento
+ * rispetto alla bitmap di tutti i documenti dell'indice. I termini con caratteri jolly
+ * e i termini approssimati vengono espansi nei termini del dizionario e valutati come
+ * un'unica unione k-way pigra. In una congiunzione, il processore può fornire
+ * l'intersezione già pronta di due termini, che sostituisce le loro liste.
+ */
+class QueryPlanner {
+    private final QueryProcessor processor;
+    private final Dictionary dictionary;
+    private final boolean costBased;
+
+    /**
+     * Costruttore per un nuovo pianificatore.
+     * 
+     * @param processor Il processore di query che fornisce dizionario e normalizzazione
+     * @param costBased true per riordinare gli operandi in base al costo
+     */
+    QueryPlanner(QueryProcessor processor, boolean costBased) {
+        this.processor = processor;
+        this.dictionary = processor.dictionary;
+        this.costBased = costBased;
+    }
+
+    /**
+     * Produce il piano di esecuzione di una query.
+     * 
+     * @param node L'albero sintattico della query
+     * @return L'albero ottimizzato
+     */
+    QueryNode plan(QueryNode node) {
+        if (node instanceof QueryNode.TermNode) {
+            return planTerm((QueryNode.TermNode) node);
+        }
+        if (node instanceof QueryNode.NotNode) {
+            return planNot((QueryNode.NotNode) node);
+        }
+        if (node instanceof QueryNode.AndNode) {
+            return planAnd(((QueryNode.AndNode) node).getChildren());
+        }
+        return planOr(((QueryNode.OrNode) node).getChildren());
+    }
+
+    private QueryNode planTerm(QueryNode.TermNode node) {
+        if (node.getText().indexOf('*') >= 0) {
+            return planExpansion(node.getText(), processor.expandWildcard(node.getText()));
+        }
+        if (node.getText().indexOf('~') > 0) {
+            return planExpansion(node.getText(), processor.expandFuzzyTerm(node.getText()));
+        }
+
+        String text = processor.normalizeTerm(node.getText());
+
+        // Le stop words sono neutre: non restringono né allargano il risultato
+        if (text == null || text.isEmpty()) {
+            return matchAll();
+        }
+
+        Term term = dictionary.getTerm(text);
+        if (term == null) {
+            return matchNone();
+        }
+        processor.recordQueryTerm(text);
+
+        QueryNode.TermNode planned = new QueryNode.TermNode(text);
+        planned.setCost(term.getDocumentFrequency());
+        return planned;
+    }
+
+    private QueryNode planExpansion(String pattern, List<String> terms) {
+        if (terms.isEmpty()) {
+            return matchNone();
+        }
+        if (terms.size() == 1) {
+            QueryNode.TermNode planned = new QueryNode.TermNode(terms.get(0));
+            planned.setCost(dictionary.getTerm(terms.get(0)).getDocumentFrequency());
+            return planned;
+        }
+
+        QueryNode planned = new QueryNode.MultiTermNode(TermNormalizer.toLowerCase(pattern), terms);
+        long cost = 0;
+        for (String text : terms) {
+            cost += dictionary.getTerm(text).getDocumentFrequency();
+        }
+        planned.setCost(Math.min(cost, dictionary.getLiveDocs().cardinality()));
+        return planned;
+    }
+
+    private QueryNode planNot(QueryNode.NotNode node) {
+        QueryNode child = plan(node.getChild());
+
+        // Negare una stop word o un termine assente non esclude nulla: restano tutti i documenti
+        if (isMatchAll(child) || isMatchNone(child)) {
+            return allDocuments();
+        }
+        // Doppia negazione
+        if (child instanceof QueryNode.NotNode) {
+            return ((QueryNode.NotNode) child).getChild();
+        }
+
+        // Valutata da sola, una negazione produce il complemento del suo operando
+        QueryNode planned = new QueryNode.NotNode(child);
+        planned.setCost(Math.max(0, dictionary.getLiveDocs().cardinality() - child.getCost()));
+        return planned;
+    }
+
+    private QueryNode planAnd(List<QueryNode> children) {
+        List<QueryNode> positives = new ArrayList<>();
+        List<QueryNode> negatives = new ArrayList<>();
+        boolean allDocuments = false;
+
+        for (QueryNode child : children) {
+            QueryNode planned = plan(child);
+
+            if (isMatchNone(planned)) {
+                // Un operando vuoto svuota l'intera congiunzione
+                return matchNone();
+            }
+            if (isAllDocuments(planned)) {
+                // Tutti i documenti sono neutri in una congiunzione
+                allDocuments = true;
+            } else if (planned instanceof QueryNode.AndNode) {
+                // Appiattisce gli AND annidati (un AND vuoto è neutro e scompare)
+                for (QueryNode grandChild : ((QueryNode.AndNode) planned).getChildren()) {
+                    (grandChild instanceof QueryNode.NotNode ? negatives : positives).add(grandChild);
+                }
+            } else if (planned instanceof QueryNode.NotNode) {
+                negatives.add(planned);
+            } else {
+                positives.add(planned);
+            }
+        }
+
+        if (positives.isEmpty() && negatives.isEmpty()) {
+            return allDocuments ? allDocuments() : matchAll();
+        }
+        if (positives.size() == 1 && negatives.isEmpty()) {
+            return positives.get(0);
+        }
+
+        if (costBased) {
+            positives.sort(Comparator.comparingLong(QueryNode::getCost));
+        }
+
+        List<QueryNode> ordered = new ArrayList<>(positives);
+        ordered.addAll(negatives);
+
+        QueryNode planned = new QueryNode.AndNode(ordered);
+        long cost = Long.MAX_VALUE;
+        for (QueryNode positive : positives) {
+            cost = Math.min(cost, positive.getCost());
+        }
+        planned.setCost(positives.isEmpty() ? dictionary.getLiveDocs().cardinality() : cost);
+        return planned;
+    }
+
+    private QueryNode planOr(List<QueryNode> children) {
+        List<QueryNode> operands = new ArrayList<>();
+        boolean neutral = false;
+
+        for (QueryNode child : children) {
+            QueryNode planned = plan(child);
+
+            if (isAllDocuments(planned)) {
+                // Un operando che vale tutti i documenti assorbe la disgiunzione
+                return planned;
+            }
+            if (isMatchAll(planned)) {
+                // Le stop words non allargano la disgiunzione
+                neutral = true;
+            } else if (planned instanceof QueryNode.OrNode) {
+                // Appiattisce gli OR annidati (un OR vuoto non ha operandi e scompare)
+                operands.addAll(((QueryNode.OrNode) planned).getChildren());
+            } else {
+                operands.add(planned);
+            }
+        }
+
+        if (operands.isEmpty()) {
+            return neutral ? matchAll() : matchNone();
+        }
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+
+        QueryNode planned = new QueryNode.OrNode(operands);
+        long cost = 0;
+        for (QueryNode operand : operands) {
+            cost += operand.getCost();
+        }
+        planned.setCost(cost);
+        return planned;
+    }
+
+    /**
+     * Crea l'albero di iteratori pigri che esegue un piano.
+     * 
+     * @param plan Il piano prodotto da {@link #plan(QueryNode)}
+     * @return L'iteratore sui documenti che soddisfano la query
+     */
+    DocIdIterator createIterator(QueryNode plan) {
+        if (isMatchAll(plan) || isMatchNone(plan)) {
+            // Una query composta solo da stop words non restituisce documenti, mentre la
+            // negazione di un termine assente è pianificata come tutti i documenti
+            return DocIdIterator.empty();
+        }
+        return toIterator(plan);
+    }
+
+    private DocIdIterator toIterator(QueryNode node) {
+        if (node instanceof QueryNode.TermNode) {
+            return new TermIterator(dictionary.getPostingList(((QueryNode.TermNode) node).getText()));
+        }
+
+        if (node instanceof QueryNode.MultiTermNode) {
+            // Unione k-way pigra dei termini espansi: l'unione non viene materializzata
+            List<String> terms = ((QueryNode.MultiTermNode) node).getTerms();
+            List<DocIdIterator> operands = new ArrayList<>(terms.size());
+            for (String text : terms) {
+                operands.add(new TermIterator(dictionary.getPostingList(text)));
+            }
+            return operands.size() == 1 ? operands.get(0) : new DisjunctionIterator(operands);
+        }
+
+        if (node instanceof QueryNode.OrNode) {
+            List<DocIdIterator> operands = new ArrayList<>();
+            for (QueryNode child : ((QueryNode.OrNode) node).getChildren()) {
+                operands.add(toIterator(child));
+            }
+            return new DisjunctionIterator(operands);
+        }
+
+        if (node instanceof QueryNode.AndNode) {
+            List<QueryNode> children = ((QueryNode.AndNode) node).getChildren();
+            List<DocIdIterator> required = new ArrayList<>();
+            List<DocIdIterator> excluded = new ArrayList<>();
+
+            // Due dei termini possono essere sostituiti dalla loro intersezione già pronta,
+            // ad esempio in una cache delle intersezioni del processore
+            List<QueryNode> termNodes = new ArrayList<>();
+            for (QueryNode child : children) {
+                if (child instanceof QueryNode.TermNode) {
+                    termNodes.add(child);
+                }
+            }
+            QueryNode first = null;
+            QueryNode second = null;
+            if (termNodes.size() >= 2) {
+                termNodes.sort(Comparator.comparingLong(QueryNode::getCost));
+                List<String> texts = new ArrayList<>(termNodes.size());
+                for (QueryNode termNode : termNodes) {
+                    texts.add(((QueryNode.TermNode) termNode).getText());
+                }
+                int[] pair = new int[2];
+                PostingList intersection = processor.intersectCachedPair(texts, pair);
+                if (intersection != null) {
+                    first = termNodes.get(pair[0]);
+                    second = termNodes.get(pair[1]);
+                    required.add(new TermIterator(intersection));
+                }
+            }
+
+            for (QueryNode child : children) {
+                if (child instanceof QueryNode.NotNode) {
+                    excluded.add(toIterator(((QueryNode.NotNode) child).getChild()));
+                } else if (child != first && child != second) {
+                    required.add(toIterator(child));
+                }
+            }
+
+            DocIdIterator result;
+            if (required.isEmpty()) {
+                // Negazione pura: complemento rispetto a tutti i documenti dell'indice
+                result = new LiveDocsIterator(dictionary.getLiveDocs());
+            } else {
+                result = required.size() == 1 ? required.get(0) : new ConjunctionIterator(required);
+            }
+            if (!excluded.isEmpty()) {
+                DocIdIterator exclusion = excluded.size() == 1 ? excluded.get(0) : new DisjunctionIterator(excluded);
+                result = new ExclusionIterator(result, exclusion);
+            }
+            return result;
+        }
+
+        // Negazione isolata, ad esempio come operando di un OR
+        QueryNode child = ((QueryNode.NotNode) node).getChild();
+        if (isMatchNone(child) || isMatchAll(child)) {
+            return new LiveDocsIterator(dictionary.getLiveDocs());
+        }
+        return new ExclusionIterator(new LiveDocsIterator(dictionary.getLiveDocs()), toIterator(child));
+    }
+
+    private static QueryNode matchAll() {
+        return new QueryNode.AndNode(new ArrayList<>());
+    }
+
+    private static QueryNode matchNone() {
+        return new QueryNode.OrNode(new ArrayList<>());
+    }
+
+    /**
+     * Nodo che vale tutti i documenti dell'indice, a differenza del nodo neutro delle
+     * stop words: la negazione di un insieme vuoto.
+     */
+    private QueryNode allDocuments() {
+        QueryNode planned = new QueryNode.NotNode(matchNone());
+        planned.setCost(dictionary.getLiveDocs().cardinality());
+        return planned;
+    }
+
+    private static boolean isAllDocuments(QueryNode node) {
+        return node instanceof QueryNode.NotNode && isMatchNone(((QueryNode.NotNode) node).getChild());
+    }
+
+    private static boolean isMatchAll(QueryNode node) {
+        return node instanceof QueryNode.AndNode && ((QueryNode.AndNode) node).getChildren().isEmpty();
+    }
+
+    private static boolean isMatchNone(QueryNode node) {
+        return node instanceof QueryNode.OrNode && ((QueryNode.OrNode) node).getChildren().isEmpty();
+    }
+}
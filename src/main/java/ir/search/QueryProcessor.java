@@ -1,22 +1,42 @@
 package ir.search;
 
+import ir.index.KGramIndex;
+import ir.index.LevenshteinAutomaton;
 import ir.index.PorterStemmer;
 import ir.index.StopList;
+import ir.index.TermNormalizer;
 import ir.model.Dictionary;
+import ir.model.FrozenDictionary;
 import ir.model.PostingList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Processa le query per il recupero dei documenti.
  */
 public class QueryProcessor {
+    /**
+     * Numero massimo predefinito di termini in cui viene espansa un'espressione con caratteri jolly.
+     */
+    public static final int DEFAULT_MAX_EXPANSIONS = 1024;
+
+    /**
+     * Distanza di modifica predefinita per i termini approssimati senza distanza esplicita.
+     */
+    public static final int DEFAULT_MAX_EDITS = 1;
+
     protected Dictionary dictionary;
     protected StopList stopList;
     protected PorterStemmer stemmer;
     protected boolean useStopList;
     protected boolean useStemming;
+    private int maxExpansions;
+    private QueryLog queryLog;
+    private QueryResultCache resultCache;
 
     /**
      * Costruttore per un nuovo processore di query.
@@ -29,6 +49,7 @@ public class QueryProcessor {
         this.stemmer = new PorterStemmer();
         this.useStopList = false;
         this.useStemming = false;
+        this.maxExpansions = DEFAULT_MAX_EXPANSIONS;
     }
 
     /**
@@ -40,6 +61,27 @@ public class QueryProcessor {
         this.useStopList = useStopList;
     }
 
+    /**
+     * Imposta le statistiche in cui registrare i termini normalizzati delle query presenti
+     * nel dizionario.
+     * 
+     * @param queryLog Le statistiche delle query, oppure null per non registrarle
+     */
+    public void setQueryLog(QueryLog queryLog) {
+        this.queryLog = queryLog;
+    }
+
+    /**
+     * Imposta la cache dei risultati dei piani eseguiti con {@link #createQueryIterator(QueryNode)}
+     * e delle query congiuntive e disgiuntive, che può essere condivisa tra processori
+     * sullo stesso dizionario.
+     * 
+     * @param resultCache La cache dei risultati, oppure null per non usarla
+     */
+    public void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /**
      * Imposta se utilizzare lo stemming durante la ricerca.
      * 
@@ -58,6 +100,460 @@ public class QueryProcessor {
         this.stopList = stopList;
     }
 
+    /**
+     * Imposta il numero massimo di termini in cui viene espansa un'espressione con caratteri jolly.
+     * 
+     * @param maxExpansions Il numero massimo di termini
+     * @throws IllegalArgumentException Se il numero non è positivo
+     */
+    public void setMaxExpansions(int maxExpansions) {
+        if (maxExpansions <= 0) {
+            throw new IllegalArgumentException("Il numero massimo di espansioni deve essere positivo: " + maxExpansions);
+        }
+        this.maxExpansions = maxExpansions;
+    }
+
+    /**
+     * Espande un'espressione con caratteri jolly '*' nei termini del dizionario che la soddisfano.
+     * Un prefisso come {@code act*} viene risolto con una scansione dell'intervallo nel dizionario
+     * ordinato; le altre espressioni ({@code *ing}, {@code ch*ter}) con l'indice dei k-grammi,
+     * verificando poi i candidati. L'espressione viene solo convertita in minuscolo, senza stemming.
+     * Se i termini superano il limite di espansioni vengono tenuti quelli con frequenza
+     * dei documenti più alta.
+     * 
+     * @param pattern L'espressione con caratteri jolly
+     * @return I termini che soddisfano l'espressione, al più {@link #setMaxExpansions(int) il limite}
+     */
+    public List<String> expandWildcard(String pattern) {
+        pattern = TermNormalizer.toLowerCase(pattern);
+        int firstWildcard = pattern.indexOf('*');
+
+        if (firstWildcard < 0) {
+            List<String> expanded = new ArrayList<>();
+            if (dictionary.containsTerm(pattern)) {
+                expanded.add(pattern);
+            }
+            return expanded;
+        }
+
+        if (firstWildcard == pattern.length() - 1) {
+            String prefix = pattern.substring(0, firstWildcard);
+            FrozenDictionary frozen = dictionary.getFrozenDictionary();
+            if (frozen != null) {
+                // Nel dizionario congelato l'intervallo è contiguo negli ID: i testi vengono
+                // decodificati solo per i termini tenuti
+                int[] range = frozen.prefixRange(prefix);
+                int[] termIds = new int[range[1] - range[0]];
+                for (int i = 0; i < termIds.length; i++) {
+                    termIds[i] = range[0] + i;
+                }
+                return toTexts(selectMostFrequent(termIds, frozen::getDocumentFrequency), frozen);
+            }
+
+            List<String> expanded = dictionary.getTermsWithPrefix(prefix);
+            if (expanded.size() <= maxExpansions) {
+                return expanded;
+            }
+            int[] positions = new int[expanded.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            return toTexts(selectMostFrequent(positions,
+                    i -> dictionary.getTerm(expanded.get(i)).getDocumentFrequency()), expanded::get);
+        }
+
+        KGramIndex index = getKGramIndex();
+        return toTexts(selectMostFrequent(index.expand(pattern), index::getDocumentFrequency), index::getText);
+    }
+
+    /**
+     * Applica il limite di espansioni tenendo i termini più frequenti,
+     * a parità di frequenza quelli con ID minore (cioè alfabeticamente precedenti).
+     */
+    private int[] selectMostFrequent(int[] termIds, IntUnaryOperator documentFrequency) {
+        if (termIds.length <= maxExpansions) {
+            return termIds;
+        }
+
+        // Min-heap dei migliori termini, con frequenza e ID codificati in un long
+        // in modo che l'ordine dei long sia frequenza crescente e ID decrescente
+        int count = maxExpansions;
+        long[] heap = new long[count];
+        int size = 0;
+        for (int termId : termIds) {
+            long key = ((long) documentFrequency.applyAsInt(termId) << 32) | (Integer.MAX_VALUE - termId);
+            if (size < count) {
+                heap[size++] = key;
+                siftUp(heap, size - 1);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size, 0);
+            }
+        }
+        Arrays.sort(heap);
+
+        int[] selected = new int[count];
+        for (int i = 0; i < count; i++) {
+            selected[i] = Integer.MAX_VALUE - (int) heap[count - 1 - i];
+        }
+        return selected;
+    }
+
+    /**
+     * Decodifica i testi dei termini scelti nel dizionario congelato in un'unica passata
+     * in ordine di ID, restituendoli nell'ordine della selezione.
+     */
+    private static List<String> toTexts(int[] termIds, FrozenDictionary frozen) {
+        int[] sorted = termIds.clone();
+        Arrays.sort(sorted);
+        String[] texts = frozen.getTexts(sorted);
+        List<String> result = new ArrayList<>(termIds.length);
+        for (int termId : termIds) {
+            result.add(texts[Arrays.binarySearch(sorted, termId)]);
+        }
+        return result;
+    }
+
+    private static List<String> toTexts(int[] termIds, IntFunction<String> text) {
+        List<String> texts = new ArrayList<>(termIds.length);
+        for (int termId : termIds) {
+            texts.add(text.apply(termId));
+        }
+        return texts;
+    }
+
+    private static void siftUp(long[] heap, int position) {
+        long key = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = key;
+    }
+
+    private static void siftDown(long[] heap, int size, int position) {
+        long key = heap[position];
+        while (true) {
+            int child = (position << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = key;
+    }
+
+    /**
+     * Espande un termine nei termini del dizionario entro una distanza di modifica,
+     * ordinati per frequenza dei documenti decrescente e limitati al numero massimo di espansioni.
+     * 
+     * @param word Il termine della query, che viene normalizzato
+     * @param maxEdits La distanza massima di modifica (1 o 2)
+     * @return I termini simili, anche il termine stesso se presente nel dizionario
+     * @throws IllegalArgumentException Se la distanza non è 1 o 2
+     */
+    public List<String> expandFuzzy(String word, int maxEdits) {
+        String normalized = normalizeTerm(word);
+        if (normalized == null || normalized.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<FuzzyMatch> matches = findFuzzyMatches(new LevenshteinAutomaton(normalized, maxEdits));
+        List<String> expanded = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < maxExpansions; i++) {
+            expanded.add(matches.get(i).text);
+        }
+        return expanded;
+    }
+
+    /**
+     * Espande un termine approssimato della query nella forma {@code parola~} oppure
+     * {@code parola~N}, dove N è la distanza massima di modifica.
+     * 
+     * @param text Il termine approssimato
+     * @return I termini simili, come in {@link #expandFuzzy(String, int)}
+     * @throws IllegalArgumentException Se la distanza non è valida
+     */
+    protected List<String> expandFuzzyTerm(String text) {
+        int tilde = text.indexOf('~');
+        String distance = text.substring(tilde + 1);
+        int maxEdits;
+        if (distance.isEmpty()) {
+            maxEdits = DEFAULT_MAX_EDITS;
+        } else if (distance.length() == 1 && Character.isDigit(distance.charAt(0))) {
+            maxEdits = distance.charAt(0) - '0';
+        } else {
+            throw new IllegalArgumentException("Distanza di modifica non valida in '" + text + "'");
+        }
+        return expandFuzzy(text.substring(0, tilde), maxEdits);
+    }
+
+    /**
+     * Suggerisce le correzioni di una parola assente dal dizionario ("forse cercavi").
+     * Cerca prima i termini a distanza 1 e, se non ce ne sono, quelli a distanza 2;
+     * i suggerimenti sono ordinati per frequenza dei documenti decrescente.
+     * 
+     * @param word La parola della query
+     * @param count Il numero massimo di suggerimenti
+     * @return I suggerimenti, vuoti se la parola è nel dizionario o è una stop word
+     */
+    public List<String> suggest(String word, int count) {
+        List<String> suggestions = new ArrayList<>();
+        String normalized = normalizeTerm(word);
+        if (normalized == null || normalized.isEmpty() || dictionary.containsTerm(normalized)) {
+            return suggestions;
+        }
+
+        for (int maxEdits = 1; maxEdits <= 2 && suggestions.isEmpty(); maxEdits++) {
+            for (FuzzyMatch match : findFuzzyMatches(new LevenshteinAutomaton(normalized, maxEdits))) {
+                if (suggestions.size() == count) {
+                    break;
+                }
+                suggestions.add(match.text);
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Scorre il dizionario ordinato guidato dall'automa di Levenshtein. Gli stati dei prefissi
+     * in comune con il termine precedente vengono riutilizzati; quando lo stato di un prefisso
+     * muore, tutti i termini con quel prefisso vengono saltati con una sola ricerca del
+     * successore del prefisso. Il numero di termini visitati dipende quindi dall'automa e
+     * non dalla dimensione del vocabolario.
+     */
+    private List<FuzzyMatch> findFuzzyMatches(LevenshteinAutomaton automaton) {
+        List<FuzzyMatch> matches = new ArrayList<>();
+        int[][] states = new int[16][];
+        states[0] = automaton.start();
+        int computed = 0;
+        String previous = "";
+        String term = dictionary.ceilingTerm("");
+
+        while (term != null) {
+            // Gli stati fino al prefisso in comune con il termine precedente sono ancora validi
+            int common = 0;
+            int limit = Math.min(Math.min(previous.length(), term.length()), computed);
+            while (common < limit && previous.charAt(common) == term.charAt(common)) {
+                common++;
+            }
+
+            if (states.length <= term.length()) {
+                states = Arrays.copyOf(states, term.length() + 1);
+            }
+            int position = common;
+            boolean alive = true;
+            while (position < term.length()) {
+                if (states[position + 1] == null) {
+                    states[position + 1] = new int[states[0].length];
+                }
+                if (!automaton.step(states[position], term.charAt(position), states[position + 1])) {
+                    alive = false;
+                    break;
+                }
+                position++;
+            }
+            computed = position;
+            previous = term;
+
+            if (alive) {
+                if (automaton.isAccepting(states[term.length()])) {
+                    matches.add(new FuzzyMatch(term, automaton.distance(states[term.length()]),
+                            dictionary.getTerm(term).getDocumentFrequency()));
+                }
+                term = dictionary.ceilingTerm(term + '\u0000');
+            } else {
+                String successor = successor(term.substring(0, position + 1));
+                term = successor != null ? dictionary.ceilingTerm(successor) : null;
+            }
+        }
+
+        // Più frequenti prima, poi più vicini, poi in ordine alfabetico
+        matches.sort((a, b) -> a.documentFrequency != b.documentFrequency
+                ? Integer.compare(b.documentFrequency, a.documentFrequency)
+                : a.distance != b.distance ? Integer.compare(a.distance, b.distance) : a.text.compareTo(b.text));
+        return matches;
+    }
+
+    /**
+     * Restituisce la più piccola stringa maggiore di tutte quelle che iniziano con il prefisso.
+     */
+    private static String successor(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * Termine trovato dalla ricerca approssimata.
+     */
+    private static class FuzzyMatch {
+        private final String text;
+        private final int distance;
+        private final int documentFrequency;
+
+        FuzzyMatch(String text, int distance, int documentFrequency) {
+            this.text = text;
+            this.distance = distance;
+            this.documentFrequency = documentFrequency;
+        }
+    }
+
+    /**
+     * Restituisce l'indice dei k-grammi, condiviso da tutti i processori dello stesso
+     * dizionario e ricostruito dopo ogni modifica del dizionario.
+     */
+    private KGramIndex getKGramIndex() {
+        return dictionary.getDerived(KGramIndex.class, source -> KGramIndex.build(source, KGramIndex.DEFAULT_K));
+    }
+
+    /**
+     * Normalizza un termine della query come in fase di indicizzazione.
+     * 
+     * @param term Il termine da normalizzare
+     * @return Il termine normalizzato o null se è una stop word
+     */
+    protected String normalizeTerm(String term) {
+        term = TermNormalizer.toLowerCase(term);
+        
+        // Salta se è una stop word
+        if (useStopList && stopList.isStopWord(term)) {
+            return null;
+        }
+        
+        // Applica lo stemming se abilitato
+        if (useStemming) {
+            term = stemmer.stem(term);
+        }
+        
+        return term;
+    }
+
+    /**
+     * Registra un termine della query presente nel dizionario nelle statistiche delle
+     * query, se impostate. Viene chiamato una volta per occorrenza del termine nella query,
+     * non per suggerimenti ed espansioni.
+     * 
+     * @param term Il termine normalizzato
+     */
+    protected void recordQueryTerm(String term) {
+        QueryLog log = queryLog;
+        if (log != null) {
+            log.record(term);
+        }
+    }
+
+    /**
+     * Crea gli iteratori sui termini della query presenti nel dizionario.
+     * 
+     * @param terms I termini della query
+     * @return Gli iteratori dei termini, nell'ordine della query
+     */
+    protected List<DocIdIterator> createTermIterators(String[] terms) {
+        List<DocIdIterator> iterators = new ArrayList<>();
+        
+        for (String term : terms) {
+            term = normalizeTerm(term);
+            
+            if (term != null && dictionary.containsTerm(term)) {
+                recordQueryTerm(term);
+                iterators.add(new TermIterator(dictionary.getPostingList(term)));
+            }
+        }
+        
+        return iterators;
+    }
+
+    /**
+     * Crea un iteratore pigro per una query congiuntiva (AND).
+     * I documenti vengono calcolati solo quando richiesti.
+     * 
+     * @param terms I termini della query
+     * @return L'iteratore sui documenti che contengono tutti i termini
+     */
+    public DocIdIterator createConjunctiveIterator(String[] terms) {
+        List<DocIdIterator> iterators = createTermIterators(terms);
+        return iterators.isEmpty() ? DocIdIterator.empty() : new ConjunctionIterator(iterators);
+    }
+
+    /**
+     * Crea un iteratore pigro per una query disgiuntiva (OR).
+     * I documenti vengono calcolati solo quando richiesti.
+     * 
+     * @param terms I termini della query
+     * @return L'iteratore sui documenti che contengono almeno un termine
+     */
+    public DocIdIterator createDisjunctiveIterator(String[] terms) {
+        List<DocIdIterator> iterators = createTermIterators(terms);
+        return iterators.isEmpty() ? DocIdIterator.empty() : new DisjunctionIterator(iterators);
+    }
+
+    /**
+     * Indica se il pianificatore deve riordinare gli operandi in base al costo.
+     * 
+     * @return true per la pianificazione basata sui costi
+     */
+    protected boolean isCostBasedPlanning() {
+        return false;
+    }
+
+    /**
+     * Analizza e pianifica una query booleana con operatori AND, OR, NOT e parentesi.
+     * 
+     * @param query La query testuale
+     * @param defaultConjunction true se i termini adiacenti sono in AND, false se in OR
+     * @return Il piano di esecuzione della query
+     * @throws IllegalArgumentException Se la query non è sintatticamente valida
+     */
+    public QueryNode planQuery(String query, boolean defaultConjunction) {
+        QueryNode parsed = new QueryParser(defaultConjunction).parse(query);
+        return new QueryPlanner(this, isCostBasedPlanning()).plan(parsed);
+    }
+
+    /**
+     * Crea l'iteratore pigro che esegue un piano prodotto da {@link #planQuery(String, boolean)}.
+     * Se è impostata una cache dei risultati, i piani composti vengono cercati nella cache
+     * con la chiave normalizzata del piano. In caso di assenza l'iteratore resta pigro: il
+     * risultato viene raccolto man mano che il chiamante lo scorre e proposto alla cache
+     * solo se l'iterazione arriva in fondo senza superare la dimensione ammessa.
+     * 
+     * @param plan Il piano di esecuzione
+     * @return L'iteratore sui documenti che soddisfano la query
+     */
+    public DocIdIterator createQueryIterator(QueryNode plan) {
+        QueryPlanner planner = new QueryPlanner(this, isCostBasedPlanning());
+        QueryResultCache cache = resultCache;
+        // Il risultato di un termine singolo è già la sua lista di posting
+        if (cache == null || plan instanceof QueryNode.TermNode) {
+            return planner.createIterator(plan);
+        }
+        
+        String key = QueryResultCache.key(plan);
+        long generation = dictionary.getGeneration();
+        PostingList result = cache.get(key, generation);
+        if (result != null) {
+            return new TermIterator(result);
+        }
+        DocIdIterator iterator = planner.createIterator(plan);
+        return cache.getMaxPostings(key) > 0 ? new CachingIterator(iterator, cache, key, generation) : iterator;
+    }
+
     /**
      * Processa una query a termine singolo.
      * 
@@ -65,7 +561,7 @@ public class QueryProcessor {
      * @return La lista di posting per il termine
      */
     public PostingList processTerm(String term) {
-        term = term.toLowerCase();
+        term = TermNormalizer.toLowerCase(term);
         
         // Salta se è una stop word
         if (useStopList && stopList.isStopWord(term)) {
@@ -83,47 +579,53 @@ public class QueryProcessor {
     }
 
     /**
-     * Processa una query congiuntiva (AND).
+     * Processa una query congiuntiva (AND). I termini assenti dal dizionario vengono
+     * ignorati. Se è impostata una cache dei risultati, le query equivalenti dopo la
+     * normalizzazione vengono servite dalla cache.
+     * 
+     * La lista restituita può essere condivisa con la cache dei risultati o, per una query
+     * di un solo termine, con il dizionario: non va modificata. Per modificarla occorre
+     * farne una copia con {@link PostingList#copy()}.
      * 
      * @param terms I termini della query
-     * @return La lista di posting risultante dall'intersezione
+     * @return La lista di posting risultante dall'intersezione, da non modificare
      */
     public PostingList processConjunctiveQuery(String[] terms) {
-        if (terms.length == 0) {
+        List<String> validTerms = normalizeQueryTerms(terms);
+        if (validTerms.isEmpty()) {
             return new PostingList();
         }
         
-        List<String> validTerms = new ArrayList<>();
-        
-        // Elabora i termini
-        for (String term : terms) {
-            term = term.toLowerCase();
-            
-            // Salta se è una stop word
-            if (useStopList && stopList.isStopWord(term)) {
-                continue;
-            }
-            
-            // Applica lo stemming se abilitato
-            if (useStemming) {
-                term = stemmer.stem(term);
-            }
-            
-            if (dictionary.containsTerm(term)) {
-                validTerms.add(term);
+        long generation = dictionary.getGeneration();
+        String key = null;
+        if (resultCache != null) {
+            key = QueryResultCache.key("AND", validTerms);
+            PostingList cached = resultCache.get(key, generation);
+            if (cached != null) {
+                return cached;
             }
         }
         
-        if (validTerms.isEmpty()) {
-            return new PostingList();
+        PostingList result = intersectTerms(validTerms);
+        if (resultCache != null) {
+            resultCache.put(key, result, generation);
         }
-        
+        return result;
+    }
+
+    /**
+     * Interseca le liste di posting dei termini nell'ordine della query.
+     * 
+     * @param terms I termini normalizzati, tutti presenti nel dizionario
+     * @return La lista di posting risultante dall'intersezione
+     */
+    protected PostingList intersectTerms(List<String> terms) {
         // Prendi la posting list del primo termine
-        PostingList result = dictionary.getPostingList(validTerms.get(0));
+        PostingList result = dictionary.getPostingList(terms.get(0));
         
         // Interseca con le posting list degli altri termini
-        for (int i = 1; i < validTerms.size(); i++) {
-            PostingList nextList = dictionary.getPostingList(validTerms.get(i));
+        for (int i = 1; i < terms.size(); i++) {
+            PostingList nextList = dictionary.getPostingList(terms.get(i));
             result = result.intersect(nextList);
             
             // Se la posting list è vuota, non serve continuare
@@ -136,38 +638,74 @@ public class QueryProcessor {
     }
 
     /**
-     * Processa una query disgiuntiva (OR).
+     * Restituisce l'intersezione già pronta di una coppia di termini di una congiunzione,
+     * da cui partire al posto delle liste dei due termini. Il processore di base non
+     * conserva intersezioni e restituisce sempre null.
+     * 
+     * @param terms I termini normalizzati della congiunzione, tutti presenti nel dizionario,
+     *              in ordine crescente di frequenza dei documenti
+     * @param pair Array di due elementi in cui vengono scritte le posizioni in terms dei
+     *             termini intersecati
+     * @return L'intersezione della coppia, oppure null
+     */
+    protected PostingList intersectCachedPair(List<String> terms, int[] pair) {
+        return null;
+    }
+
+    /**
+     * Processa una query disgiuntiva (OR). Se è impostata una cache dei risultati, le
+     * query equivalenti dopo la normalizzazione vengono servite dalla cache.
+     * 
+     * Come per {@link #processConjunctiveQuery(String[])}, la lista restituita può essere
+     * condivisa con la cache dei risultati o con il dizionario e non va modificata.
      * 
      * @param terms I termini della query
-     * @return La lista di posting risultante dall'unione
+     * @return La lista di posting risultante dall'unione, da non modificare
      */
     public PostingList processDisjunctiveQuery(String[] terms) {
-        if (terms.length == 0) {
+        List<String> validTerms = normalizeQueryTerms(terms);
+        if (validTerms.isEmpty()) {
             return new PostingList();
         }
         
-        PostingList result = new PostingList();
-        
-        // Elabora i termini
-        for (String term : terms) {
-            term = term.toLowerCase();
-            
-            // Salta se è una stop word
-            if (useStopList && stopList.isStopWord(term)) {
-                continue;
-            }
-            
-            // Applica lo stemming se abilitato
-            if (useStemming) {
-                term = stemmer.stem(term);
-            }
-            
-            if (dictionary.containsTerm(term)) {
-                PostingList termList = dictionary.getPostingList(term);
-                result = result.union(termList);
+        long generation = dictionary.getGeneration();
+        String key = null;
+        if (resultCache != null) {
+            key = QueryResultCache.key("OR", validTerms);
+            PostingList cached = resultCache.get(key, generation);
+            if (cached != null) {
+                return cached;
             }
         }
         
+        List<PostingList> termLists = new ArrayList<>();
+        for (String term : validTerms) {
+            termLists.add(dictionary.getPostingList(term));
+        }
+        
+        // Unione k-way in un'unica passata su tutte le liste
+        PostingList result = PostingList.unionAll(termLists);
+        if (resultCache != null) {
+            resultCache.put(key, result, generation);
+        }
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Normalizza i termini di una query booleana, scartando stop word e termini assenti dal dizionario.
+     * 
+     * @param terms I termini della query
+     * @return I termini normalizzati presenti nel dizionario, nell'ordine della query
+     */
+    protected List<String> normalizeQueryTerms(String[] terms) {
+        List<String> validTerms = new ArrayList<>();
+        for (String term : terms) {
+            term = normalizeTerm(term);
+            if (term != null && dictionary.containsTerm(term)) {
+                recordQueryTerm(term);
+                validTerms.add(term);
+            }
+        }
+        return validTerms;
+    }
+}
@@ -0,0 +1,368 @@
+package ir.search;
+
+import ir.model.PostingList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache dei risultati delle query booleane, indicizzata dalla query normalizzata: il
+ * piano della query con termini normalizzati e operandi in ordine canonico, così query
+ * equivalenti condividono la stessa voce. La dimensione è limitata in byte, stimati dal
+ * numero di posting di ogni risultato.
+ *
+ * Con la politica {@link Policy#LRU} viene eliminata la voce usata meno di recente. Con
+ * {@link Policy#TINY_LFU} le nuove voci entrano in una finestra LRU piccola; quando ne
+ * escono competono con la vittima LRU della zona principale e vengono ammesse solo se la
+ * loro frequenza stimata è maggiore. Le frequenze sono stimate con un count-min sketch
+ * a contatori di 4 bit dimezzati periodicamente, così una query cercata una sola volta
+ * non scaccia quelle popolari.
+ *
+ * La cache è legata alla generazione dell'indice: un risultato chiesto con una
+ * generazione diversa da quella delle voci presenti svuota la cache. I metodi sono
+ * sincronizzati; i risultati restituiti sono condivisi e non vanno modificati.
+ */
+public class QueryResultCache {
+    /**
+     * Politica di sostituzione delle voci.
+     */
+    public enum Policy {
+        /**
+         * Elimina la voce usata meno di recente.
+         */
+        LRU,
+
+        /**
+         * Finestra LRU seguita da ammissione basata sulla frequenza stimata (W-TinyLFU).
+         */
+        TINY_LFU
+    }
+
+    /**
+     * Dimensione massima predefinita in byte.
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L << 20;
+
+    /**
+     * Stima in byte del costo fisso di una voce: oggetti, chiave e nodi della mappa.
+     */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    /**
+     * Frazione della dimensione massima riservata alla finestra di {@link Policy#TINY_LFU}.
+     */
+    private static final int WINDOW_PERCENT = 1;
+
+    private final long maxBytes;
+    private final Policy policy;
+    private final LinkedHashMap<String, Entry> window;
+    private final LinkedHashMap<String, Entry> main;
+    private final FrequencySketch sketch;
+    private final long windowBytesLimit;
+    private long windowBytes;
+    private long mainBytes;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long invalidations;
+
+    /**
+     * Costruttore per una nuova cache vuota.
+     *
+     * @param maxBytes La dimensione massima stimata in byte
+     * @param policy La politica di sostituzione
+     * @throws IllegalArgumentException Se la dimensione non è positiva
+     */
+    public QueryResultCache(long maxBytes, Policy policy) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("La dimensione della cache deve essere positiva: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.main = new LinkedHashMap<>(16, 0.75f, true);
+        if (policy == Policy.TINY_LFU) {
+            this.windowBytesLimit = Math.max(1, maxBytes * WINDOW_PERCENT / 100);
+            this.sketch = new FrequencySketch(maxBytes / ENTRY_OVERHEAD);
+        } else {
+            this.windowBytesLimit = 0;
+            this.sketch = null;
+        }
+    }
+
+    /**
+     * Costruisce la chiave normalizzata di una query: l'operatore seguito dai termini in
+     * ordine lessicografico, tra parentesi. Le ripetizioni restano nella chiave perché le
+     * frequenze del risultato sommano quelle di ogni occorrenza del termine. Coincide con
+     * la chiave di {@link #key(QueryNode)} per un piano con gli stessi termini e operatore.
+     *
+     * @param operator L'operatore tra i termini, ad esempio "AND" o "OR"
+     * @param terms I termini normalizzati della query
+     * @return La chiave della query
+     */
+    public static String key(String operator, List<String> terms) {
+        List<String> sorted = new ArrayList<>(terms);
+        Collections.sort(sorted);
+        return join(operator, sorted);
+    }
+
+    /**
+     * Costruisce la chiave normalizzata di un piano di query: gli operandi di AND e OR
+     * sono in ordine lessicografico, così piani che differiscono solo per l'ordine degli
+     * operandi condividono la stessa voce, e un termine espanso vale come l'OR dei suoi
+     * termini.
+     *
+     * @param plan Il piano della query, con i termini già normalizzati
+     * @return La chiave del piano
+     */
+    public static String key(QueryNode plan) {
+        if (plan instanceof QueryNode.TermNode) {
+            return ((QueryNode.TermNode) plan).getText();
+        }
+        if (plan instanceof QueryNode.MultiTermNode) {
+            return key("OR", ((QueryNode.MultiTermNode) plan).getTerms());
+        }
+        if (plan instanceof QueryNode.NotNode) {
+            return "(NOT " + key(((QueryNode.NotNode) plan).getChild()) + ")";
+        }
+        boolean conjunction = plan instanceof QueryNode.AndNode;
+        List<QueryNode> children = conjunction
+                ? ((QueryNode.AndNode) plan).getChildren()
+                : ((QueryNode.OrNode) plan).getChildren();
+        List<String> keys = new ArrayList<>(children.size());
+        for (QueryNode child : children) {
+            keys.add(key(child));
+        }
+        Collections.sort(keys);
+        return join(conjunction ? "AND" : "OR", keys);
+    }
+
+    private static String join(String operator, List<String> operands) {
+        StringBuilder key = new StringBuilder("(").append(operator);
+        for (String operand : operands) {
+            key.append(' ').append(operand);
+        }
+        return key.append(')').toString();
+    }
+
+    /**
+     * Cerca il risultato di una query.
+     *
+     * @param key La chiave normalizzata della query
+     * @param generation La generazione corrente dell'indice
+     * @return Il risultato, oppure null se non è in cache
+     */
+    public synchronized PostingList get(String key, long generation) {
+        checkGeneration(generation);
+        if (sketch != null) {
+            sketch.increment(key.hashCode());
+        }
+        Entry entry = main.get(key);
+        if (entry == null) {
+            entry = window.get(key);
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Inserisce il risultato di una query, se la politica lo ammette. Un risultato più
+     * grande della cache non viene inserito.
+     *
+     * @param key La chiave normalizzata della query
+     * @param result Il risultato della query
+     * @param generation La generazione dell'indice su cui è stato calcolato il risultato
+     */
+    public synchronized void put(String key, PostingList result, long generation) {
+        checkGeneration(generation);
+        Entry entry = new Entry(key, result);
+        if (entry.bytes > maxBytes - windowBytesLimit) {
+            rejections++;
+            return;
+        }
+        remove(key);
+        if (policy == Policy.LRU) {
+            main.put(key, entry);
+            mainBytes += entry.bytes;
+            while (mainBytes > maxBytes) {
+                evict(main.values().iterator());
+            }
+            return;
+        }
+
+        window.put(key, entry);
+        windowBytes += entry.bytes;
+        while (windowBytes > windowBytesLimit) {
+            Iterator<Entry> eldest = window.values().iterator();
+            Entry candidate = eldest.next();
+            eldest.remove();
+            windowBytes -= candidate.bytes;
+            admit(candidate);
+        }
+    }
+
+    /**
+     * Sposta nella zona principale una voce uscita dalla finestra, eliminando le vittime
+     * LRU meno frequenti della voce; se una vittima è più frequente la voce viene scartata.
+     */
+    private void admit(Entry candidate) {
+        long limit = maxBytes - windowBytesLimit;
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        Iterator<Entry> victims = main.values().iterator();
+        long freed = 0;
+        List<Entry> evicted = new ArrayList<>();
+        while (mainBytes - freed + candidate.bytes > limit) {
+            Entry victim = victims.next();
+            if (sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+                rejections++;
+                return;
+            }
+            evicted.add(victim);
+            freed += victim.bytes;
+        }
+        for (Entry victim : evicted) {
+            main.remove(victim.key);
+            mainBytes -= victim.bytes;
+            evictions++;
+        }
+        main.put(candidate.key, candidate);
+        mainBytes += candidate.bytes;
+    }
+
+    private void evict(Iterator<Entry> eldest) {
+        Entry entry = eldest.next();
+        eldest.remove();
+        mainBytes -= entry.bytes;
+        evictions++;
+    }
+
+    private void remove(String key) {
+        Entry entry = main.remove(key);
+        if (entry != null) {
+            mainBytes -= entry.bytes;
+        }
+        entry = window.remove(key);
+        if (entry != null) {
+            windowBytes -= entry.bytes;
+        }
+    }
+
+    private void checkGeneration(long generation) {
+        if (generation != this.generation) {
+            if (!main.isEmpty() || !window.isEmpty()) {
+                invalidations++;
+            }
+            clear();
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Svuota la cache, mantenendo le statistiche di utilizzo.
+     */
+    public synchronized void clear() {
+        main.clear();
+        window.clear();
+        mainBytes = 0;
+        windowBytes = 0;
+    }
+
+    /**
+     * Restituisce il numero di voci in cache.
+     *
+     * @return Il numero di voci
+     */
+    public synchronized int size() {
+        return main.size() + window.size();
+    }
+
+    /**
+     * Restituisce la dimensione stimata delle voci in cache.
+     *
+     * @return La dimensione in byte
+     */
+    public synchronized long getBytes() {
+        return mainBytes + windowBytes;
+    }
+
+    /**
+     * Restituisce il numero massimo di posting di un risultato che può essere inserito
+     * con una chiave, oltre il quale {@link #put(String, PostingList, long)} lo rifiuta.
+     *
+     * @param key La chiave normalizzata della query
+     * @return Il numero massimo di posting, eventualmente 0
+     */
+    public long getMaxPostings(String key) {
+        return Math.max(0, (maxBytes - windowBytesLimit - ENTRY_OVERHEAD - 2L * key.length()) / 8);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Restituisce la frazione di ricerche servite dalla cache.
+     *
+     * @return Il tasso di successo, oppure 0 se non ci sono state ricerche
+     */
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests > 0 ? (double) hits / requests : 0.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryResultCache{politica=%s, voci=%d, byte=%d/%d, successi=%.2f%%, "
+                        + "eliminazioni=%d, rifiuti=%d, invalidazioni=%d}",
+                policy, size(), getBytes(), maxBytes, getHitRatio() * 100, evictions, rejections, invalidations);
+    }
+
+    /**
+     * Voce della cache con la sua dimensione stimata.
+     */
+    private static class Entry {
+        final String key;
+        final PostingList result;
+        final long bytes;
+
+        Entry(String key, PostingList result) {
+            this.key = key;
+            this.result = result;
+            this.bytes = ENTRY_OVERHEAD + 2L * key.length() + 8L * result.size();
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package ir.search;
+
+import ir.model.Dictionary;
+import ir.model.PostingList;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Processore di query classificate. La funzione di punteggio è configurabile
+ * ({@link TfIdfSimilarity} con similarità del coseno, predefinita, oppure {@link BM25Similarity}).
+ * Nella valutazione esaustiva i punteggi vengono accumulati termine per termine in array
+ * primitivi riutilizzati tra le query; le strategie WAND, Block-Max WAND e MaxScore scorrono
+ * invece le liste in parallelo e saltano i documenti che non possono entrare nel top-k. In ogni
+ * caso solo i migliori k documenti vengono mantenuti in uno heap di dimensione fissa.
+ * La strategia score-at-a-time usa invece un {@link ImpactIndex} con punteggi quantizzati
+ * e può essere interrotta da un limite di posting o di tempo, mentre la strategia a campioni
+ * valuta solo i documenti delle {@link ChampionLists} dei termini.
+ */
+public class RankedQueryProcessor extends QueryProcessor {
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("[\\p{L}]+(?:~[0-9]?)?");
+
+    /**
+     * Numero di posting valutati tra due controlli del limite di tempo nella strategia
+     * score-at-a-time, anche all'interno di un segmento.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private float[] accumulators;
+    private int[] marks;
+    private int[] candidates;
+    private int generation;
+    private Similarity similarity;
+    private final Map<String, ScoreBounds> boundsCache;
+    private Similarity boundsSimilarity;
+    private long boundsStamp;
+    private SearchStatistics lastStatistics;
+    private final Map<Similarity, ImpactIndex> impactIndexes;
+    private int impactBits;
+    private final Map<Similarity, ChampionLists> championLists;
+    private int championListSize;
+    private long championQueries;
+    private long championFallbacks;
+
+    /**
+     * Costruttore per un nuovo processore di query classificate.
+     * 
+     * @param dictionary Il dizionario dell'indice
+     */
+    public RankedQueryProcessor(Dictionary dictionary) {
+        super(dictionary);
+        this.accumulators = new float[0];
+        this.marks = new int[0];
+        this.candidates = new int[0];
+        this.generation = 0;
+        this.similarity = new TfIdfSimilarity();
+        this.boundsCache = new HashMap<>();
+        this.impactIndexes = new HashMap<>();
+        this.impactBits = ImpactIndex.DEFAULT_BITS;
+        this.championLists = new HashMap<>();
+        this.championListSize = ChampionLists.DEFAULT_SIZE;
+    }
+
+    /**
+     * Imposta la funzione di punteggio.
+     * 
+     * @param similarity La funzione di punteggio
+     */
+    public void setSimilarity(Similarity similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * Restituisce la funzione di punteggio corrente.
+     * 
+     * @return La funzione di punteggio
+     */
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Imposta il numero di bit dei livelli di impatto usati dalla strategia score-at-a-time.
+     * Gli indici per impatto registrati vengono scartati.
+     * 
+     * @param impactBits Il numero di bit (da 1 a 16)
+     * @throws IllegalArgumentException Se il numero di bit non è valido
+     */
+    public void setImpactBits(int impactBits) {
+        if (impactBits < 1 || impactBits > 16) {
+            throw new IllegalArgumentException("Il numero di bit deve essere compreso tra 1 e 16: " + impactBits);
+        }
+        this.impactBits = impactBits;
+        this.impactIndexes.clear();
+    }
+
+    /**
+     * Registra un indice per impatto costruito o letto in anticipo, usato dalla strategia
+     * score-at-a-time quando la funzione di punteggio corrente è quella dell'indice. Un
+     * indice viene registrato per ogni funzione di punteggio, così cambiarla non lo scarta.
+     * 
+     * @param impactIndex L'indice per impatto
+     */
+    public void setImpactIndex(ImpactIndex impactIndex) {
+        impactIndexes.put(impactIndex.getSimilarity(), impactIndex);
+    }
+
+    /**
+     * Imposta il numero di documenti delle liste dei campioni.
+     * Le liste registrate vengono scartate e ricalcolate alla prima richiesta.
+     * 
+     * @param championListSize Il numero di campioni per termine
+     * @throws IllegalArgumentException Se il numero di campioni non è positivo
+     */
+    public void setChampionListSize(int championListSize) {
+        if (championListSize <= 0) {
+            throw new IllegalArgumentException("Il numero di campioni deve essere positivo: " + championListSize);
+        }
+        this.championListSize = championListSize;
+        this.championLists.clear();
+    }
+
+    /**
+     * Registra le liste dei campioni calcolate o lette in anticipo, usate dalla strategia a
+     * campioni quando la funzione di punteggio corrente è quella delle liste. Le liste
+     * vengono registrate per ogni funzione di punteggio, così cambiarla non le scarta.
+     * 
+     * @param championLists Le liste dei campioni
+     */
+    public void setChampionLists(ChampionLists championLists) {
+        this.championLists.put(championLists.getSimilarity(), championLists);
+    }
+
+    /**
+     * Restituisce la frazione delle ricerche a campioni che hanno dovuto ripiegare
+     * sulle liste di posting complete.
+     * 
+     * @return La frazione di ripieghi, oppure 0 se non è stata eseguita alcuna ricerca a campioni
+     */
+    public double getChampionFallbackRate() {
+        return championQueries > 0 ? (double) championFallbacks / championQueries : 0.0;
+    }
+
+    /**
+     * Restituisce le statistiche dell'ultima ricerca eseguita.
+     * 
+     * @return Le statistiche, oppure null se non è stata ancora eseguita alcuna ricerca
+     */
+    public SearchStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    /**
+     * Esegue una ricerca classificata a testo libero con valutazione esaustiva.
+     * 
+     * @param query Il testo della query
+     * @param k Il numero massimo di risultati
+     * @return I migliori k documenti in ordine di punteggio decrescente
+     */
+    public ScoredDocument[] search(String query, int k) {
+        return search(query, k, TopKStrategy.EXHAUSTIVE);
+    }
+
+    /**
+     * Esegue una ricerca classificata a testo libero con la strategia top-k indicata.
+     * Tutte le strategie restituiscono gli stessi documenti con gli stessi punteggi;
+     * cambiano solo il numero di posting valutati e il tempo di esecuzione. Fa eccezione
+     * {@link TopKStrategy#SCORE_AT_A_TIME}, i cui punteggi sono quantizzati.
+     * 
+     * @param query Il testo della query
+     * @param k Il numero massimo di risultati
+     * @param strategy La strategia di valutazione
+     * @return I migliori k documenti in ordine di punteggio decrescente
+     */
+    public ScoredDocument[] search(String query, int k, TopKStrategy strategy) {
+        return search(query, k, strategy, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Esegue una ricerca score-at-a-time con un limite di posting e di tempo.
+     * I segmenti di impatto più alto vengono valutati per primi; quando uno dei limiti
+     * viene raggiunto la valutazione si interrompe e vengono restituiti i migliori
+     * documenti trovati fino a quel momento.
+     * 
+     * @param query Il testo della query
+     * @param k Il numero massimo di risultati
+     * @param postingBudget Il numero massimo di posting da valutare
+     * @param timeBudgetNanos Il tempo massimo di valutazione in nanosecondi
+     * @return I migliori k documenti trovati, in ordine di punteggio decrescente
+     */
+    public ScoredDocument[] searchAnytime(String query, int k, long postingBudget, long timeBudgetNanos) {
+        return search(query, k, TopKStrategy.SCORE_AT_A_TIME, postingBudget, timeBudgetNanos);
+    }
+
+    private ScoredDocument[] search(String query, int k, TopKStrategy strategy, long postingBudget,
+                                    long timeBudgetNanos) {
+        // Un indice per impatto mancante viene costruito prima di avviare il limite di tempo
+        ImpactIndex impactIndex = strategy == TopKStrategy.SCORE_AT_A_TIME ? getImpactIndex() : null;
+        long startTime = System.nanoTime();
+        SearchStatistics statistics = new SearchStatistics(strategy);
+        Map<String, Integer> queryTerms = parseQueryTerms(query);
+        TopKCollector collector = new TopKCollector(k);
+
+        if (!queryTerms.isEmpty()) {
+            similarity.prepare(dictionary);
+            int documentCount = dictionary.getLiveDocs().cardinality();
+            int termCount = queryTerms.size();
+            String[] texts = new String[termCount];
+            int[] queryFrequencies = new int[termCount];
+            PostingList[] postingLists = new PostingList[termCount];
+            Similarity.TermScorer[] scorers = new Similarity.TermScorer[termCount];
+            float sumOfSquaredWeights = 0f;
+
+            int t = 0;
+            for (Map.Entry<String, Integer> entry : queryTerms.entrySet()) {
+                texts[t] = entry.getKey();
+                queryFrequencies[t] = entry.getValue();
+                postingLists[t] = dictionary.getPostingList(texts[t]);
+                scorers[t] = similarity.termScorer(documentCount, postingLists[t].size(), queryFrequencies[t]);
+                sumOfSquaredWeights += scorers[t].queryWeight() * scorers[t].queryWeight();
+                t++;
+            }
+            float queryNormalization = similarity.queryNormalization(sumOfSquaredWeights);
+
+            if (strategy == TopKStrategy.SCORE_AT_A_TIME) {
+                long deadline = timeBudgetNanos < Long.MAX_VALUE - startTime ? startTime + timeBudgetNanos : Long.MAX_VALUE;
+                scoreAtATime(impactIndex, texts, queryFrequencies, postingLists, queryNormalization, postingBudget,
+                        deadline, collector, statistics);
+            } else if (strategy == TopKStrategy.CHAMPION_LISTS) {
+                scoreChampions(texts, postingLists, scorers, queryNormalization, k, collector, statistics);
+            } else if (strategy == TopKStrategy.EXHAUSTIVE) {
+                scoreExhaustive(postingLists, scorers, queryNormalization, collector, statistics);
+            } else {
+                TermCursor[] cursors = new TermCursor[termCount];
+                for (int i = 0; i < termCount; i++) {
+                    ScoreBounds bounds = getScoreBounds(texts[i], queryFrequencies[i], postingLists[i], scorers[i]);
+                    cursors[i] = new TermCursor(postingLists[i], scorers[i], bounds, queryNormalization);
+                }
+                if (strategy == TopKStrategy.MAX_SCORE) {
+                    new MaxScoreEvaluator(similarity, queryNormalization).evaluate(cursors, collector, statistics);
+                } else {
+                    new WandEvaluator(similarity, queryNormalization, strategy == TopKStrategy.BLOCK_MAX_WAND)
+                            .evaluate(cursors, collector, statistics);
+                }
+            }
+        }
+
+        statistics.setElapsedNanos(System.nanoTime() - startTime);
+        lastStatistics = statistics;
+        return collector.results();
+    }
+
+    /**
+     * Valutazione esaustiva termine per termine con accumulatori primitivi.
+     */
+    private void scoreExhaustive(PostingList[] postingLists, Similarity.TermScorer[] scorers, float queryNormalization,
+                                 TopKCollector collector, SearchStatistics statistics) {
+        ensureCapacity(dictionary.getLiveDocs().maxDocument() + 1);
+        int candidateCount = 0;
+
+        // Generazione corrente: gli accumulatori con marca diversa sono da considerare azzerati
+        if (++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+
+        for (int t = 0; t < postingLists.length; t++) {
+            PostingList postingList = postingLists[t];
+            Similarity.TermScorer scorer = scorers[t];
+
+            for (int i = 0; i < postingList.size(); i++) {
+                int documentId = postingList.getDocumentId(i);
+                float contribution = scorer.score(documentId, postingList.getFrequency(i));
+
+                if (marks[documentId] != generation) {
+                    marks[documentId] = generation;
+                    accumulators[documentId] = contribution;
+                    candidates[candidateCount++] = documentId;
+                } else {
+                    accumulators[documentId] += contribution;
+                }
+            }
+            statistics.addScoredPostings(postingList.size());
+        }
+
+        // Normalizza i punteggi e tiene solo i migliori k
+        for (int i = 0; i < candidateCount; i++) {
+            int documentId = candidates[i];
+            collector.offer(documentId, similarity.normalize(documentId, accumulators[documentId]) * queryNormalization);
+        }
+        statistics.addEvaluatedDocuments(candidateCount);
+    }
+
+    /**
+     * Valutazione sul livello dei campioni. I candidati sono l'unione delle liste dei campioni
+     * e ricevono il punteggio esatto, cercandoli con salti nelle liste complete; se i candidati
+     * sono meno di k e almeno una lista dei campioni è più corta della lista completa si
+     * ripiega sulla valutazione esaustiva.
+     */
+    private void scoreChampions(String[] texts, PostingList[] postingLists, Similarity.TermScorer[] scorers,
+                                float queryNormalization, int k, TopKCollector collector,
+                                SearchStatistics statistics) {
+        ChampionLists champions = getChampionLists();
+        ensureCapacity(dictionary.getLiveDocs().maxDocument() + 1);
+        int candidateCount = 0;
+
+        if (++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+
+        boolean truncated = false;
+        for (int t = 0; t < texts.length; t++) {
+            PostingList championList = champions.get(texts[t], postingLists[t], statistics);
+            truncated |= championList.size() < postingLists[t].size();
+            for (int i = 0; i < championList.size(); i++) {
+                int documentId = championList.getDocumentId(i);
+                if (marks[documentId] != generation) {
+                    marks[documentId] = generation;
+                    accumulators[documentId] = 0f;
+                    candidates[candidateCount++] = documentId;
+                }
+            }
+        }
+
+        championQueries++;
+        // Se nessuna lista è stata troncata i candidati sono già tutti i documenti della
+        // query e la valutazione esaustiva ripeterebbe lo stesso lavoro
+        if (candidateCount < k && truncated) {
+            championFallbacks++;
+            statistics.setFallback(true);
+            scoreExhaustive(postingLists, scorers, queryNormalization, collector, statistics);
+            return;
+        }
+
+        // Punteggi esatti dei candidati, termine per termine come nella valutazione esaustiva
+        Arrays.sort(candidates, 0, candidateCount);
+        for (int t = 0; t < postingLists.length; t++) {
+            PostingList postingList = postingLists[t];
+            Similarity.TermScorer scorer = scorers[t];
+            int index = 0;
+            long scored = 0;
+
+            for (int i = 0; i < candidateCount && index < postingList.size(); i++) {
+                int documentId = candidates[i];
+                index = postingList.advance(index, documentId);
+                if (index < postingList.size() && postingList.getDocumentId(index) == documentId) {
+                    accumulators[documentId] += scorer.score(documentId, postingList.getFrequency(index));
+                    scored++;
+                }
+            }
+            statistics.addScoredPostings(scored);
+        }
+
+        for (int i = 0; i < candidateCount; i++) {
+            int documentId = candidates[i];
+            collector.offer(documentId, similarity.normalize(documentId, accumulators[documentId]) * queryNormalization);
+        }
+        statistics.addEvaluatedDocuments(candidateCount);
+    }
+
+    /**
+     * Restituisce il livello dei campioni della funzione di punteggio corrente, creandone
+     * uno con liste calcolate alla prima richiesta se non è stato registrato o se le
+     * statistiche della collezione sono cambiate.
+     */
+    private ChampionLists getChampionLists() {
+        ChampionLists champions = championLists.get(similarity);
+        if (champions == null || !champions.isCurrent(dictionary) || champions.getSize() != championListSize) {
+            champions = new ChampionLists(dictionary, similarity, championListSize);
+            championLists.put(similarity, champions);
+        }
+        return champions;
+    }
+
+    /**
+     * Valutazione score-at-a-time sull'indice per impatto. I segmenti di tutti i termini
+     * vengono ordinati per impatto decrescente e valutati in quest'ordine finché non si
+     * esauriscono o non viene raggiunto uno dei limiti.
+     */
+    private void scoreAtATime(ImpactIndex index, String[] texts, int[] queryFrequencies,
+                              PostingList[] postingLists, float queryNormalization, long postingBudget, long deadline,
+                              TopKCollector collector, SearchStatistics statistics) {
+        ensureCapacity(dictionary.getLiveDocs().maxDocument() + 1);
+        int candidateCount = 0;
+
+        if (++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+
+        // Ogni segmento è codificato come priorità (bit del float positivo) nei 32 bit alti
+        // e come posizione nei 32 bit bassi, così l'ordinamento avviene su un array primitivo
+        int termCount = texts.length;
+        ImpactIndex.ImpactPostings[] termPostings = new ImpactIndex.ImpactPostings[termCount];
+        float[] multipliers = new float[termCount];
+        int segmentCount = 0;
+        for (int t = 0; t < termCount; t++) {
+            termPostings[t] = index.getImpactPostings(texts[t]);
+            multipliers[t] = index.queryMultiplier(postingLists[t].size(), queryFrequencies[t]);
+            if (termPostings[t] != null && multipliers[t] > 0) {
+                segmentCount += termPostings[t].getSegmentCount();
+            }
+        }
+
+        int[] segmentTerms = new int[segmentCount];
+        int[] segmentIndexes = new int[segmentCount];
+        long[] order = new long[segmentCount];
+        int position = 0;
+        for (int t = 0; t < termCount; t++) {
+            if (termPostings[t] == null || multipliers[t] <= 0) {
+                continue;
+            }
+            for (int segment = 0; segment < termPostings[t].getSegmentCount(); segment++) {
+                float priority = termPostings[t].getImpact(segment) * multipliers[t];
+                segmentTerms[position] = t;
+                segmentIndexes[position] = segment;
+                order[position] = ((long) Float.floatToIntBits(priority) << 32) | (segmentCount - 1 - position);
+                position++;
+            }
+        }
+        Arrays.sort(order);
+
+        long remaining = postingBudget;
+        for (int i = segmentCount - 1; i >= 0 && remaining > 0; i--) {
+            if (System.nanoTime() >= deadline) {
+                statistics.setTerminatedEarly(true);
+                break;
+            }
+            int segment = segmentCount - 1 - (int) order[i];
+            ImpactIndex.ImpactPostings impactPostings = termPostings[segmentTerms[segment]];
+            int start = impactPostings.getSegmentStart(segmentIndexes[segment]);
+            int end = impactPostings.getSegmentEnd(segmentIndexes[segment]);
+            if (end - start > remaining) {
+                end = start + (int) remaining;
+                statistics.setTerminatedEarly(true);
+            }
+            float contribution = impactPostings.getImpact(segmentIndexes[segment]) * multipliers[segmentTerms[segment]];
+
+            // Un segmento può contenere quasi tutta la lista di un termine frequente: il
+            // limite di tempo viene controllato anche al suo interno
+            boolean expired = false;
+            int p = start;
+            while (p < end) {
+                int chunkEnd = Math.min(end, p + DEADLINE_CHECK_INTERVAL);
+                for (; p < chunkEnd; p++) {
+                    int documentId = impactPostings.getDocumentId(p);
+                    if (marks[documentId] != generation) {
+                        marks[documentId] = generation;
+                        accumulators[documentId] = contribution;
+                        candidates[candidateCount++] = documentId;
+                    } else {
+                        accumulators[documentId] += contribution;
+                    }
+                }
+                if (p < end && System.nanoTime() >= deadline) {
+                    statistics.setTerminatedEarly(true);
+                    expired = true;
+                    break;
+                }
+            }
+            remaining -= p - start;
+            statistics.addScoredPostings(p - start);
+            if (expired) {
+                break;
+            }
+        }
+
+        // Riporta i punteggi quantizzati sulla scala della funzione di punteggio
+        float scale = index.getScale() * queryNormalization;
+        for (int i = 0; i < candidateCount; i++) {
+            int documentId = candidates[i];
+            collector.offer(documentId, accumulators[documentId] * scale);
+        }
+        statistics.addEvaluatedDocuments(candidateCount);
+    }
+
+    /**
+     * Restituisce l'indice per impatto della funzione di punteggio corrente, costruendolo
+     * se non è stato registrato o se le statistiche della collezione sono cambiate.
+     */
+    private ImpactIndex getImpactIndex() {
+        ImpactIndex index = impactIndexes.get(similarity);
+        if (index == null || !index.isCurrent(dictionary) || index.getLevels() != (1 << impactBits) - 1) {
+            index = ImpactIndex.build(dictionary, similarity, impactBits);
+            impactIndexes.put(similarity, index);
+        }
+        return index;
+    }
+
+    /**
+     * Restituisce i limiti superiori di un termine, calcolandoli alla prima richiesta.
+     * I limiti dipendono dalla funzione di punteggio e dalle statistiche della collezione,
+     * quindi la cache viene svuotata quando una delle due cambia.
+     */
+    private ScoreBounds getScoreBounds(String text, int queryFrequency, PostingList postingList,
+                                       Similarity.TermScorer scorer) {
+        long stamp = dictionary.getLiveDocs().cardinality() * 31L + dictionary.getDocumentLengths().getTotalLength();
+        if (boundsSimilarity != similarity || boundsStamp != stamp) {
+            boundsCache.clear();
+            boundsSimilarity = similarity;
+            boundsStamp = stamp;
+        }
+
+        String key = text + '#' + queryFrequency;
+        ScoreBounds bounds = boundsCache.get(key);
+        if (bounds == null) {
+            bounds = ScoreBounds.compute(postingList, similarity, scorer);
+            boundsCache.put(key, bounds);
+        }
+        return bounds;
+    }
+
+    /**
+     * Normalizza i termini della query e ne conta le occorrenze,
+     * scartando quelli assenti dal dizionario. Un termine approssimato ({@code parola~})
+     * viene espanso nei termini simili del dizionario, ognuno con una occorrenza.
+     * 
+     * @param query Il testo della query
+     * @return Le frequenze dei termini della query, nell'ordine di apparizione
+     * @throws IllegalArgumentException Se la distanza di un termine approssimato non è valida
+     */
+    protected Map<String, Integer> parseQueryTerms(String query) {
+        Map<String, Integer> queryTerms = new LinkedHashMap<>();
+        Matcher matcher = TOKEN_PATTERN.matcher(query);
+
+        while (matcher.find()) {
+            String token = matcher.group();
+            if (token.indexOf('~') >= 0) {
+                for (String term : expandFuzzyTerm(token)) {
+                    queryTerms.merge(term, 1, Integer::sum);
+                }
+                continue;
+            }
+            String term = normalizeTerm(token);
+            if (term != null && dictionary.containsTerm(term)) {
+                recordQueryTerm(term);
+                queryTerms.merge(term, 1, Integer::sum);
+            }
+        }
+        return queryTerms;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (accumulators.length < capacity) {
+            accumulators = new float[capacity];
+            marks = new int[capacity];
+            candidates = new int[capacity];
+            generation = 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ir.search;
+
+import ir.model.PostingList;
+
+/**
+ * Limiti superiori del contributo di un termine al punteggio dei documenti:
+ * il massimo sull'intera lista di posting e il massimo di ogni blocco di
+ * {@link #BLOCK_SIZE} posting consecutivi, insieme all'ultimo documento del blocco.
+ */
+public class ScoreBounds {
+    /**
+     * Numero di posting per blocco.
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    private final float maxScore;
+    private final float[] blockMaxScores;
+    private final int[] blockLastDocuments;
+
+    private ScoreBounds(float maxScore, float[] blockMaxScores, int[] blockLastDocuments) {
+        this.maxScore = maxScore;
+        this.blockMaxScores = blockMaxScores;
+        this.blockLastDocuments = blockLastDocuments;
+    }
+
+    /**
+     * Calcola i limiti scorrendo una volta la lista di posting.
+     * I contributi sono già normalizzati per documento con {@link Similarity#normalize(int, float)}.
+     * 
+     * @param postingList La lista di posting del termine
+     * @param similarity La funzione di punteggio
+     * @param scorer Lo scorer del termine
+     * @return I limiti del termine
+     */
+    public static ScoreBounds compute(PostingList postingList, Similarity similarity, Similarity.TermScorer scorer) {
+        int size = postingList.size();
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        float[] blockMaxScores = new float[blockCount];
+        int[] blockLastDocuments = new int[blockCount];
+        float maxScore = 0f;
+
+        for (int block = 0; block < blockCount; block++) {
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+            float blockMax = 0f;
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                int documentId = postingList.getDocumentId(i);
+                float score = similarity.normalize(documentId, scorer.score(documentId, postingList.getFrequency(i)));
+                blockMax = Math.max(blockMax, score);
+            }
+            blockMaxScores[block] = blockMax;
+            blockLastDocuments[block] = postingList.getDocumentId(end - 1);
+            maxScore = Math.max(maxScore, blockMax);
+        }
+
+        return new ScoreBounds(maxScore, blockMaxScores, blockLastDocuments);
+    }
+
+    /**
+     * Restituisce il contributo massimo del termine su tutta la lista.
+     * 
+     * @return Il punteggio massimo
+     */
+    public float getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Restituisce il numero di blocchi.
+     * 
+     * @return Il numero di blocchi
+     */
+    public int getBlockCount() {
+        return blockMaxScores.length;
+    }
+
+    /**
+     * Restituisce il contributo massimo del termine in un blocco.
+     * 
+     * @param block L'indice del blocco
+     * @return Il punteggio massimo del blocco
+     */
+    public float getBlockMaxScore(int block) {
+        return blockMaxScores[block];
+    }
+
+    /**
+     * Restituisce l'ID dell'ultimo documento di un blocco.
+     * 
+     * @param block L'indice del blocco
+     * @return L'ID dell'ultimo documento del blocco
+     */
+    public int getBlockLastDocument(int block) {
+        return blockLastDocuments[block];
+    }
+}
@@ -0,0 +1,116 @@
+package ir.search;
+
+import ir.model.Dictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * File dei livelli precalcolati per una funzione di punteggio ({@link ImpactIndex},
+ * {@link ChampionLists}). Il file inizia con numero magico, versione, rappresentazione
+ * testuale della funzione di punteggio, numero di documenti e lunghezza totale della
+ * collezione, prosegue con il contenuto del livello e termina con il checksum CRC32C di
+ * tutto ciò che lo precede. Tutti gli interi sono big-endian.
+ */
+final class ScoreTierFile {
+    /**
+     * Scrittura del contenuto di un livello dopo l'intestazione.
+     */
+    interface Content {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private ScoreTierFile() {
+    }
+
+    /**
+     * Scrive un file con l'intestazione comune, il contenuto e il checksum.
+     */
+    static void write(String filePath, int magic, int version, Similarity similarity, int documentCount,
+                      long totalLength, Content content) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(Files.newOutputStream(Paths.get(filePath)));
+        CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32C());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            writeText(out, similarity.toString());
+            out.writeInt(documentCount);
+            out.writeLong(totalLength);
+            content.write(out);
+            out.flush();
+            // Il checksum non comprende se stesso e viene scritto direttamente sullo stream sottostante
+            int checksum = (int) checked.getChecksum().getValue();
+            new DataOutputStream(buffered).writeInt(checksum);
+        }
+    }
+
+    /**
+     * Legge un file e ne verifica checksum e intestazione.
+     *
+     * @param description Il nome del livello nei messaggi di errore, ad esempio "dell'indice per impatto"
+     * @return Il contenuto che segue l'intestazione, escluso il checksum
+     * @throws IOException Se il file non è valido o non corrisponde al dizionario o alla funzione di punteggio
+     */
+    static ByteBuffer read(String filePath, int magic, int version, String description, Dictionary dictionary,
+                           Similarity similarity) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(filePath));
+        if (bytes.length < 12) {
+            throw new IOException("File " + description + " troncato: " + filePath);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 4);
+        if (ByteBuffer.wrap(bytes).getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new IOException("Checksum " + description + " non valido: " + filePath);
+        }
+        ByteBuffer data = ByteBuffer.wrap(bytes, 0, bytes.length - 4);
+        try {
+            if (data.getInt() != magic) {
+                throw new IOException("File " + description + " non valido: " + filePath);
+            }
+            int fileVersion = data.getInt();
+            if (fileVersion != version) {
+                throw new IOException("Versione " + description + " non supportata: " + fileVersion);
+            }
+            String name = readText(data);
+            if (!name.equals(similarity.toString())) {
+                throw new IOException("File " + description + " calcolato con " + name + " invece di " + similarity);
+            }
+            if (data.getInt() != dictionary.getLiveDocs().cardinality()
+                    || data.getLong() != dictionary.getDocumentLengths().getTotalLength()) {
+                throw new IOException("File " + description + " non aggiornato: " + filePath);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("File " + description + " troncato: " + filePath, e);
+        }
+        return data;
+    }
+
+    static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Legge un testo scritto con {@link #writeText(DataOutputStream, String)}.
+     *
+     * @throws IOException Se la lunghezza del testo supera il contenuto rimasto
+     */
+    static String readText(ByteBuffer data) throws IOException {
+        int length = data.getInt();
+        if (length < 0 || length > data.remaining()) {
+            throw new IOException("Testo di lunghezza non valida: " + length);
+        }
+        String text = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return text;
+    }
+}
@@ -0,0 +1,33 @@
+package ir.search;
+
+/**
+ * Documento restituito da una ricerca classificata, con il suo punteggio.
+ */
+public class ScoredDocument {
+    private final int documentId;
+    private final float score;
+
+    /**
+     * Costruttore per un nuovo documento con punteggio.
+     * 
+     * @param documentId L'ID del documento
+     * @param score Il punteggio del documento
+     */
+    public ScoredDocument(int documentId, float score) {
+        this.documentId = documentId;
+        this.score = score;
+    }
+
+    public int getDocumentId() {
+        return documentId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return documentId + ":" + score;
+    }
+}
@@ -0,0 +1,97 @@
+package ir.search;
+
+/**
+ * Strumentazione di una ricerca classificata: strategia usata, posting valutati,
+ * documenti valutati completamente, tempo di esecuzione, interruzione anticipata
+ * e ripiego sulle liste complete.
+ */
+public class SearchStatistics {
+    private final TopKStrategy strategy;
+    private long scoredPostings;
+    private long evaluatedDocuments;
+    private long skippedBlocks;
+    private long elapsedNanos;
+    private boolean terminatedEarly;
+    private boolean fallback;
+
+    /**
+     * Costruttore per nuove statistiche azzerate.
+     * 
+     * @param strategy La strategia di valutazione
+     */
+    public SearchStatistics(TopKStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public TopKStrategy getStrategy() {
+        return strategy;
+    }
+
+    public long getScoredPostings() {
+        return scoredPostings;
+    }
+
+    public long getEvaluatedDocuments() {
+        return evaluatedDocuments;
+    }
+
+    public long getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Indica se la valutazione è stata interrotta da un limite di posting o di tempo.
+     * 
+     * @return true se i risultati sono i migliori trovati prima dell'interruzione
+     */
+    public boolean isTerminatedEarly() {
+        return terminatedEarly;
+    }
+
+    /**
+     * Indica se la ricerca a campioni ha dovuto ripiegare sulle liste di posting complete.
+     * 
+     * @return true se i candidati dei campioni non bastavano
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    void addScoredPostings(long count) {
+        scoredPostings += count;
+    }
+
+    void addEvaluatedDocuments(long count) {
+        evaluatedDocuments += count;
+    }
+
+    void addSkippedBlocks(long count) {
+        skippedBlocks += count;
+    }
+
+    void setTerminatedEarly(boolean terminatedEarly) {
+        this.terminatedEarly = terminatedEarly;
+    }
+
+    void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return strategy + ": " + scoredPostings + " posting valutati, "
+                + evaluatedDocuments + " documenti valutati, "
+                + skippedBlocks + " blocchi saltati, "
+                + (elapsedNanos / 1_000_000.0) + " ms"
+                + (terminatedEarly ? " (interrotta)" : "")
+                + (fallback ? " (ripiego sulle liste complete)" : "");
+    }
+}
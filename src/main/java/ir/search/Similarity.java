@@ -0,0 +1,76 @@
+package ir.search;
+
+import ir.model.Dictionary;
+
+/**
+ * Funzione di punteggio per la ricerca classificata.
+ * Per ogni termine della query viene creato uno {@link TermScorer}, che calcola il
+ * contributo di un posting senza allocare oggetti; la somma dei contributi viene poi
+ * normalizzata per documento e per query.
+ */
+public abstract class Similarity {
+
+    /**
+     * Prepara le tabelle per documento che dipendono dall'indice.
+     * Viene chiamato all'inizio di ogni query e deve essere economico se l'indice non è cambiato.
+     * 
+     * @param dictionary Il dizionario dell'indice
+     */
+    public void prepare(Dictionary dictionary) {
+    }
+
+    /**
+     * Crea lo scorer per un termine della query.
+     * 
+     * @param documentCount Il numero di documenti della collezione
+     * @param documentFrequency Il numero di documenti che contengono il termine
+     * @param queryFrequency Il numero di occorrenze del termine nella query
+     * @return Lo scorer del termine
+     */
+    public abstract TermScorer termScorer(int documentCount, int documentFrequency, int queryFrequency);
+
+    /**
+     * Normalizza il punteggio accumulato da un documento.
+     * La normalizzazione deve essere lineare nel punteggio (ad esempio una divisione per
+     * una costante del documento), perché le strategie top-k con pruning stimano il
+     * punteggio come somma dei contributi normalizzati dei singoli termini.
+     * 
+     * @param documentId L'ID del documento
+     * @param score La somma dei contributi dei termini
+     * @return Il punteggio normalizzato
+     */
+    public float normalize(int documentId, float score) {
+        return score;
+    }
+
+    /**
+     * Restituisce il fattore di normalizzazione della query.
+     * 
+     * @param sumOfSquaredWeights La somma dei quadrati dei pesi dei termini della query
+     * @return Il fattore per cui moltiplicare tutti i punteggi
+     */
+    public float queryNormalization(float sumOfSquaredWeights) {
+        return 1f;
+    }
+
+    /**
+     * Calcola i contributi dei posting di un singolo termine della query.
+     */
+    public abstract static class TermScorer {
+        /**
+         * Restituisce il peso del termine nella query.
+         * 
+         * @return Il peso del termine
+         */
+        public abstract float queryWeight();
+
+        /**
+         * Calcola il contributo di un posting al punteggio del documento.
+         * 
+         * @param documentId L'ID del documento
+         * @param frequency La frequenza del termine nel documento
+         * @return Il contributo al punteggio
+         */
+        public abstract float score(int documentId, int frequency);
+    }
+}
@@ -0,0 +1,87 @@
+package ir.search;
+
+import ir.model.PostingList;
+
+/**
+ * Cursore su una lista di posting usato dalle strategie top-k con pruning dinamico.
+ * Mantiene il documento corrente, lo scorer del termine e i suoi limiti superiori,
+ * già moltiplicati per il fattore di normalizzazione della query.
+ */
+class TermCursor {
+    /**
+     * Margine relativo applicato ai limiti superiori per assorbire gli errori di
+     * arrotondamento tra la somma dei limiti e il punteggio effettivo.
+     */
+    static final float BOUND_SLACK = 1.0001f;
+
+    final PostingList postingList;
+    final Similarity.TermScorer scorer;
+    final ScoreBounds bounds;
+    final float upperBound;
+    private final float scale;
+    private int position;
+    private int block;
+    int docId;
+
+    TermCursor(PostingList postingList, Similarity.TermScorer scorer, ScoreBounds bounds, float queryNormalization) {
+        this.postingList = postingList;
+        this.scorer = scorer;
+        this.bounds = bounds;
+        this.scale = queryNormalization * BOUND_SLACK;
+        this.upperBound = bounds.getMaxScore() * scale;
+        this.position = 0;
+        this.block = 0;
+        this.docId = postingList.isEmpty() ? DocIdIterator.NO_MORE_DOCS : postingList.getDocumentId(0);
+    }
+
+    /**
+     * Passa al posting successivo.
+     */
+    int nextDoc() {
+        position++;
+        return docId = position < postingList.size() ? postingList.getDocumentId(position) : DocIdIterator.NO_MORE_DOCS;
+    }
+
+    /**
+     * Avanza al primo posting con documento maggiore o uguale a quello dato.
+     */
+    int advance(int target) {
+        position = postingList.advance(position, target);
+        return docId = position < postingList.size() ? postingList.getDocumentId(position) : DocIdIterator.NO_MORE_DOCS;
+    }
+
+    /**
+     * Calcola il contributo non normalizzato del posting corrente.
+     */
+    float score() {
+        return scorer.score(docId, postingList.getFrequency(position));
+    }
+
+    /**
+     * Sposta solo l'indice di blocco sul blocco che può contenere il documento dato,
+     * senza decodificare né muovere il cursore.
+     */
+    void shallowAdvance(int target) {
+        while (block < bounds.getBlockCount() && bounds.getBlockLastDocument(block) < target) {
+            block++;
+        }
+    }
+
+    /**
+     * Limite superiore del blocco corrente, zero se il cursore ha superato l'ultimo blocco.
+     */
+    float blockUpperBound() {
+        return block < bounds.getBlockCount() ? bounds.getBlockMaxScore(block) * scale : 0f;
+    }
+
+    /**
+     * Primo documento successivo al blocco corrente.
+     */
+    int blockEnd() {
+        if (block >= bounds.getBlockCount()) {
+            return DocIdIterator.NO_MORE_DOCS;
+        }
+        int last = bounds.getBlockLastDocument(block);
+        return last == DocIdIterator.NO_MORE_DOCS ? last : last + 1;
+    }
+}
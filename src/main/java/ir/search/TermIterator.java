@@ -0,0 +1,51 @@
+package ir.search;
+
+import ir.model.PostingList;
+
+/**
+ * Iteratore sui documenti di una singola lista di posting.
+ */
+public class TermIterator extends DocIdIterator {
+    private final PostingList postingList;
+    private int index;
+    private int docId;
+
+    /**
+     * Costruttore per un nuovo iteratore di termine.
+     *
+     * @param postingList La lista di posting del termine
+     */
+    public TermIterator(PostingList postingList) {
+        this.postingList = postingList;
+        this.index = -1;
+        this.docId = -1;
+    }
+
+    @Override
+    public int docId() {
+        return docId;
+    }
+
+    @Override
+    public int nextDoc() {
+        index++;
+        return docId = index < postingList.size() ? postingList.getDocumentId(index) : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int advance(int target) {
+        // La ricerca esponenziale rende economici sia i salti brevi che quelli lunghi
+        index = postingList.advance(index + 1, target);
+        return docId = index < postingList.size() ? postingList.getDocumentId(index) : NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+        return postingList.size();
+    }
+
+    @Override
+    public int frequency() {
+        return postingList.getFrequency(index);
+    }
+}
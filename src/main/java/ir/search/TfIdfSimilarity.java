@@ -0,0 +1,53 @@
+package ir.search;
+
+import ir.model.Dictionary;
+import ir.model.DocumentNorms;
+
+/**
+ * Punteggio TF-IDF con similarità del coseno. Il peso di un termine è
+ * (1 + log10 tf) * log10(N / df), sia nella query sia nei documenti, e il prodotto
+ * scalare viene diviso per le norme precalcolate dei vettori dei documenti.
+ */
+public class TfIdfSimilarity extends Similarity {
+    private DocumentNorms norms;
+
+    @Override
+    public void prepare(Dictionary dictionary) {
+        norms = dictionary.getDocumentNorms();
+    }
+
+    @Override
+    public TermScorer termScorer(int documentCount, int documentFrequency, int queryFrequency) {
+        final float idf = (float) DocumentNorms.idf(documentCount, documentFrequency);
+        final float queryWeight = (float) DocumentNorms.tf(queryFrequency) * idf;
+        final float weight = queryWeight * idf;
+
+        return new TermScorer() {
+            @Override
+            public float queryWeight() {
+                return queryWeight;
+            }
+
+            @Override
+            public float score(int documentId, int frequency) {
+                return weight * (float) DocumentNorms.tf(frequency);
+            }
+        };
+    }
+
+    @Override
+    public float normalize(int documentId, float score) {
+        float norm = norms.get(documentId);
+        return norm > 0 ? score / norm : 0f;
+    }
+
+    @Override
+    public float queryNormalization(float sumOfSquaredWeights) {
+        return sumOfSquaredWeights > 0 ? (float) (1.0 / Math.sqrt(sumOfSquaredWeights)) : 0f;
+    }
+
+    @Override
+    public String toString() {
+        return "TF-IDF";
+    }
+}
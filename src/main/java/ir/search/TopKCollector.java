@@ -0,0 +1,148 @@
+package ir.search;
+
+/**
+ * Raccoglie i k documenti con punteggio più alto in uno heap di dimensione fissa.
+ * Lo heap è un min-heap su array primitivi: la radice è il peggiore dei k migliori,
+ * quindi ogni nuovo candidato costa O(1) se scartato e O(log k) se accettato.
+ * A parità di punteggio vince il documento con ID minore.
+ */
+public class TopKCollector {
+    private final int[] documentIds;
+    private final float[] scores;
+    private int size;
+
+    /**
+     * Costruttore per un nuovo collettore.
+     * 
+     * @param k Il numero massimo di documenti da mantenere
+     */
+    public TopKCollector(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Il numero di risultati deve essere positivo: " + k);
+        }
+        this.documentIds = new int[k];
+        this.scores = new float[k];
+        this.size = 0;
+    }
+
+    /**
+     * Propone un documento al collettore.
+     * 
+     * @param documentId L'ID del documento
+     * @param score Il punteggio del documento
+     * @return true se il documento è entrato tra i migliori k
+     */
+    public boolean offer(int documentId, float score) {
+        if (size < documentIds.length) {
+            documentIds[size] = documentId;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (!isBetter(documentId, score, documentIds[0], scores[0])) {
+            return false;
+        }
+        documentIds[0] = documentId;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Restituisce il punteggio minimo per entrare tra i migliori k.
+     * Finché il collettore non è pieno qualsiasi punteggio è sufficiente.
+     * 
+     * @return Il punteggio del peggiore dei k migliori, oppure meno infinito
+     */
+    public float threshold() {
+        return size < documentIds.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Verifica se il collettore contiene già k documenti.
+     * 
+     * @return true se il collettore è pieno
+     */
+    public boolean isFull() {
+        return size == documentIds.length;
+    }
+
+    /**
+     * Restituisce il numero di documenti raccolti.
+     * 
+     * @return Il numero di documenti
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce i documenti raccolti in ordine di punteggio decrescente.
+     * Ordina solo i k documenti raccolti, non l'intero insieme dei candidati.
+     * 
+     * @return I documenti con punteggio
+     */
+    public ScoredDocument[] results() {
+        int[] heapIds = documentIds.clone();
+        float[] heapScores = scores.clone();
+        int remaining = size;
+        ScoredDocument[] results = new ScoredDocument[size];
+
+        // Estrae ripetutamente il minimo e riempie l'array dal fondo
+        while (remaining > 0) {
+            results[remaining - 1] = new ScoredDocument(heapIds[0], heapScores[0]);
+            remaining--;
+            heapIds[0] = heapIds[remaining];
+            heapScores[0] = heapScores[remaining];
+            siftDown(heapIds, heapScores, remaining, 0);
+        }
+        return results;
+    }
+
+    private static boolean isBetter(int documentId, float score, int otherId, float otherScore) {
+        return score > otherScore || (score == otherScore && documentId < otherId);
+    }
+
+    private void siftUp(int position) {
+        int documentId = documentIds[position];
+        float score = scores[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBetter(documentIds[parent], scores[parent], documentId, score)) {
+                break;
+            }
+            documentIds[position] = documentIds[parent];
+            scores[position] = scores[parent];
+            position = parent;
+        }
+        documentIds[position] = documentId;
+        scores[position] = score;
+    }
+
+    private void siftDown(int position) {
+        siftDown(documentIds, scores, size, position);
+    }
+
+    private static void siftDown(int[] ids, float[] values, int heapSize, int position) {
+        int documentId = ids[position];
+        float score = values[position];
+        while (true) {
+            int child = (position << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            int right = child + 1;
+            if (right < heapSize && isBetter(ids[child], values[child], ids[right], values[right])) {
+                child = right;
+            }
+            if (!isBetter(documentId, score, ids[child], values[child])) {
+                break;
+            }
+            ids[position] = ids[child];
+            values[position] = values[child];
+            position = child;
+        }
+        ids[position] = documentId;
+        values[position] = score;
+    }
+}
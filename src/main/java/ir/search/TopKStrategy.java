@@ -0,0 +1,54 @@
+package ir.search;
+
+/**
+ * Strategia di valutazione delle query classificate top-k.
+ */
+public enum TopKStrategy {
+    /**
+     * Valutazione esaustiva termine per termine: ogni posting viene valutato.
+     */
+    EXHAUSTIVE,
+
+    /**
+     * WAND: salta i documenti che non possono superare la soglia del top-k usando il
+     * punteggio massimo di ciascun termine.
+     */
+    WAND,
+
+    /**
+     * Block-Max WAND: come WAND, ma affina la stima con i punteggi massimi dei blocchi
+     * di posting e salta interi blocchi.
+     */
+    BLOCK_MAX_WAND,
+
+    /**
+     * MaxScore: divide i termini in essenziali e non essenziali in base al loro punteggio
+     * massimo e alla soglia del top-k; i candidati provengono solo dai termini essenziali
+     * e le liste non essenziali vengono consultate solo per questi.
+     */
+    MAX_SCORE,
+
+    /**
+     * Score-at-a-time: valuta i posting di un indice ordinato per impatto, dai segmenti
+     * di impatto più alto, e può essere interrotta da un limite di posting o di tempo.
+     * I punteggi sono quantizzati, quindi possono differire leggermente da quelli esatti.
+     */
+    SCORE_AT_A_TIME,
+
+    /**
+     * Liste dei campioni: valuta solo i documenti che compaiono tra i migliori di almeno
+     * un termine della query e ripiega sulla valutazione esaustiva se sono meno di k.
+     * I punteggi sono esatti, ma un documento fuori dalle liste dei campioni può mancare.
+     */
+    CHAMPION_LISTS;
+
+    /**
+     * Indica se la strategia restituisce sempre gli stessi documenti e punteggi della
+     * valutazione esaustiva, a meno degli arrotondamenti e dell'ordine tra punteggi pari.
+     *
+     * @return true se la strategia è esatta
+     */
+    public boolean isExact() {
+        return this != SCORE_AT_A_TIME && this != CHAMPION_LISTS;
+    }
+}
@@ -0,0 +1,138 @@
+package ir.search;
+
+/**
+ * Valutazione top-k delle query disgiuntive con WAND e Block-Max WAND.
+ * I cursori sono ordinati per documento corrente; il pivot è il primo documento per
+ * cui la somma dei limiti superiori dei termini che lo precedono supera la soglia del
+ * top-k, e tutti i documenti precedenti vengono saltati senza essere valutati. Con i
+ * limiti per blocco, anche un pivot promettente viene scartato se i blocchi che lo
+ * contengono non possono superare la soglia, saltando direttamente alla fine del blocco.
+ * Ogni documento valutato riceve esattamente lo stesso punteggio della valutazione esaustiva.
+ */
+class WandEvaluator {
+    private final Similarity similarity;
+    private final float queryNormalization;
+    private final boolean blockMax;
+
+    /**
+     * Costruttore per un nuovo valutatore.
+     * 
+     * @param similarity La funzione di punteggio
+     * @param queryNormalization Il fattore di normalizzazione della query
+     * @param blockMax true per usare anche i limiti per blocco (BMW)
+     */
+    WandEvaluator(Similarity similarity, float queryNormalization, boolean blockMax) {
+        this.similarity = similarity;
+        this.queryNormalization = queryNormalization;
+        this.blockMax = blockMax;
+    }
+
+    /**
+     * Valuta la query e raccoglie i migliori documenti.
+     * 
+     * @param terms I cursori dei termini, nell'ordine della query
+     * @param collector Il collettore dei risultati
+     * @param statistics Le statistiche da aggiornare
+     */
+    void evaluate(TermCursor[] terms, TopKCollector collector, SearchStatistics statistics) {
+        TermCursor[] cursors = terms.clone();
+        int count = cursors.length;
+
+        while (true) {
+            sortByDocument(cursors, count);
+            // I cursori esauriti finiscono in fondo e non servono più
+            while (count > 0 && cursors[count - 1].docId == DocIdIterator.NO_MORE_DOCS) {
+                count--;
+            }
+
+            float threshold = collector.threshold();
+            int pivot = findPivot(cursors, count, threshold);
+            if (pivot < 0) {
+                break;
+            }
+
+            int pivotDoc = cursors[pivot].docId;
+            // Include nel pivot tutti i cursori posizionati sullo stesso documento
+            while (pivot + 1 < count && cursors[pivot + 1].docId == pivotDoc) {
+                pivot++;
+            }
+
+            if (blockMax) {
+                float blockBound = 0f;
+                int nextCandidate = pivot + 1 < count ? cursors[pivot + 1].docId : DocIdIterator.NO_MORE_DOCS;
+                for (int i = 0; i <= pivot; i++) {
+                    cursors[i].shallowAdvance(pivotDoc);
+                    blockBound += cursors[i].blockUpperBound();
+                    nextCandidate = Math.min(nextCandidate, cursors[i].blockEnd());
+                }
+                if (blockBound <= threshold) {
+                    // Nessun documento prima di nextCandidate può entrare nel top-k
+                    for (int i = 0; i <= pivot; i++) {
+                        if (cursors[i].docId < nextCandidate) {
+                            cursors[i].advance(nextCandidate);
+                        }
+                    }
+                    statistics.addSkippedBlocks(1);
+                    continue;
+                }
+            }
+
+            if (cursors[0].docId == pivotDoc) {
+                // Tutti i cursori fino al pivot sono sul documento: valutazione completa
+                collector.offer(pivotDoc, score(terms, pivotDoc, statistics));
+                statistics.addEvaluatedDocuments(1);
+                for (int i = 0; i <= pivot; i++) {
+                    cursors[i].nextDoc();
+                }
+            } else {
+                // Porta i cursori in ritardo sul documento pivot
+                for (int i = 0; i < pivot; i++) {
+                    if (cursors[i].docId < pivotDoc) {
+                        cursors[i].advance(pivotDoc);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcola il punteggio di un documento sommando i contributi nell'ordine della query,
+     * come la valutazione esaustiva.
+     */
+    private float score(TermCursor[] terms, int documentId, SearchStatistics statistics) {
+        float sum = 0f;
+        int scored = 0;
+        for (TermCursor term : terms) {
+            if (term.docId == documentId) {
+                sum += term.score();
+                scored++;
+            }
+        }
+        statistics.addScoredPostings(scored);
+        return similarity.normalize(documentId, sum) * queryNormalization;
+    }
+
+    private static int findPivot(TermCursor[] cursors, int count, float threshold) {
+        float bound = 0f;
+        for (int i = 0; i < count; i++) {
+            bound += cursors[i].upperBound;
+            if (bound > threshold) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void sortByDocument(TermCursor[] cursors, int count) {
+        // Ordinamento per inserimento: i cursori sono pochi e quasi ordinati
+        for (int i = 1; i < count; i++) {
+            TermCursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].docId > cursor.docId) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+    }
+}
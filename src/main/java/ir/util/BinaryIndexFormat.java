@@ -0,0 +1,767 @@
+package ir.util;
+
+import ir.model.CollectionStatistics;
+import ir.model.Dictionary;
+import ir.model.DocumentLengths;
+import ir.model.DocumentNorms;
+import ir.model.FrozenDictionary;
+import ir.model.LiveDocs;
+import ir.model.PostingList;
+import ir.model.PostingSource;
+import ir.model.Term;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Formato binario versionato del file dell'indice.
+ *
+ * Il file inizia con un'intestazione di dimensione fissa: numero magico, versione,
+ * numero di termini, dimensione dei blocchi, lunghezza massima dei termini, termini per
+ * sezione di posting e numero di sezioni di posting, seguiti dalla posizione di ogni
+ * sezione del file. Le sezioni, nell'ordine, sono:
+ * <ul>
+ *   <li>termini: posizioni dei blocchi e blocchi con front coding, nello stesso formato
+ *       del {@link FrozenDictionary}, quindi ordinati per byte UTF-8;</li>
+ *   <li>frequenze: frequenze di documento e di collezione, per ID di termine;</li>
+ *   <li>indice dei posting: posizione e lunghezza di ogni sezione di posting;</li>
+ *   <li>sezioni di posting: ognuna copre {@link #TERMS_PER_SECTION} termini consecutivi e
+ *       contiene le posizioni relative delle sue liste seguite dalle liste nel formato di
+ *       {@link PostingList#decode(ByteBuffer, int)}, così le sezioni possono essere
+ *       codificate in scrittura e decodificate da {@link #read(String)} in parallelo, e
+ *       verificate e decodificate una alla volta da {@link #open(String)};</li>
+ *   <li>documenti: bitmap dei documenti, lunghezze e norme;</li>
+ *   <li>statistiche della collezione;</li>
+ *   <li>checksum CRC32C delle sezioni precedenti e di ogni sezione di posting.</li>
+ * </ul>
+ * L'intestazione termina con il proprio checksum. Le sezioni lette all'apertura vengono
+ * verificate subito, le sezioni di posting la prima volta che vengono lette. I file delle
+ * versioni 1, con un'unica sezione di posting, e 2, senza checksum, vengono ancora letti.
+ * Tutti gli interi a lunghezza fissa sono big-endian. La scrittura legge direttamente dal
+ * dizionario senza copie intermedie dell'indice.
+ */
+public class BinaryIndexFormat {
+    /**
+     * Numero magico all'inizio del file ("IRBX").
+     */
+    public static final int MAGIC = 0x49524258;
+
+    /**
+     * Versione corrente del formato.
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * Numero di termini di ogni sezione delle liste di posting.
+     */
+    public static final int TERMS_PER_SECTION = 8192;
+
+    static final int SECTION_TERMS = 0;
+    static final int SECTION_FREQUENCIES = 1;
+    static final int SECTION_DIRECTORY = 2;
+    static final int SECTION_DOCUMENTS = 3;
+    static final int SECTION_STATISTICS = 4;
+    static final int SECTION_CHECKSUMS = 5;
+    static final int SECTION_COUNT = 6;
+
+    /**
+     * Dimensione dell'intestazione: sette interi, le posizioni delle sezioni, la fine del
+     * file e il checksum dell'intestazione stessa.
+     */
+    static final int HEADER_SIZE = 7 * 4 + (SECTION_COUNT + 1) * 8 + 4;
+
+    /**
+     * Dimensione dell'intestazione della versione 1, che aveva un'unica sezione di posting.
+     */
+    private static final int HEADER_SIZE_V1 = 5 * 4 + 7 * 8;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int PAGE_SIZE = 4096;
+    private static final int INTERRUPT_CHECK_BYTES = 1024 * PAGE_SIZE;
+
+    /**
+     * Destinazione delle letture di {@link #preload(String)}, così non vengono eliminate.
+     */
+    private static volatile int touched;
+
+    private BinaryIndexFormat() {
+    }
+
+    /**
+     * Scrive un dizionario su file. Se il dizionario non è congelato i termini vengono
+     * ordinati e codificati senza modificarlo. Le sezioni delle liste di posting vengono
+     * dimensionate e poi codificate in parallelo sul pool fork-join comune; ognuna viene
+     * scritta nella sua posizione del file con una scrittura posizionale, mentre il resto
+     * del file viene scritto in sequenza.
+     *
+     * @param dictionary Il dizionario da scrivere
+     * @param filePath Il percorso del file di output
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public static void write(Dictionary dictionary, String filePath) throws IOException {
+        FrozenDictionary vocabulary = dictionary.toFrozenDictionary();
+        int termCount = vocabulary.size();
+        int sectionCount = (termCount + TERMS_PER_SECTION - 1) / TERMS_PER_SECTION;
+        long[] sizes = new long[sectionCount];
+        IntStream.range(0, sectionCount).parallel().forEach(section -> sizes[section] = sectionSize(vocabulary, section));
+        long[] sections = new long[SECTION_COUNT + 1];
+        long[] positions = new long[sectionCount];
+        int[] checksums = new int[SECTION_CHECKSUMS + sectionCount];
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            try (Output out = new Output(channel)) {
+                // L'intestazione viene scritta alla fine, quando le posizioni delle sezioni sono note
+                out.skip(HEADER_SIZE);
+
+                sections[SECTION_TERMS] = out.position();
+                out.beginChecksum();
+                int[] blockOffsets = vocabulary.getBlockOffsets();
+                ByteBuffer termBuffer = vocabulary.getTermBuffer();
+                termBuffer.clear();
+                out.writeInt(blockOffsets.length);
+                out.writeInt(termBuffer.remaining());
+                for (int offset : blockOffsets) {
+                    out.writeInt(offset);
+                }
+                out.writeBytes(termBuffer);
+                checksums[SECTION_TERMS] = out.endChecksum();
+
+                sections[SECTION_FREQUENCIES] = out.position();
+                out.beginChecksum();
+                for (int termId = 0; termId < termCount; termId++) {
+                    out.writeInt(vocabulary.getDocumentFrequency(termId));
+                }
+                for (int termId = 0; termId < termCount; termId++) {
+                    out.writeInt(vocabulary.getCollectionFrequency(termId));
+                }
+                checksums[SECTION_FREQUENCIES] = out.endChecksum();
+
+                // Indice delle sezioni dei posting, che seguono subito dopo
+                sections[SECTION_DIRECTORY] = out.position();
+                out.beginChecksum();
+                long position = out.position() + sectionCount * 16L;
+                for (int section = 0; section < sectionCount; section++) {
+                    positions[section] = position;
+                    out.writeLong(position);
+                    out.writeLong(sizes[section]);
+                    position += sizes[section];
+                }
+                checksums[SECTION_DIRECTORY] = out.endChecksum();
+                out.skip(position - out.position());
+
+                sections[SECTION_DOCUMENTS] = out.position();
+                out.beginChecksum();
+                writeDocuments(out, dictionary);
+                checksums[SECTION_DOCUMENTS] = out.endChecksum();
+
+                sections[SECTION_STATISTICS] = out.position();
+                out.beginChecksum();
+                writeStatistics(out, dictionary.getCollectionStatistics());
+                checksums[SECTION_STATISTICS] = out.endChecksum();
+
+                // I checksum vengono scritti alla fine, quando sono noti quelli delle sezioni dei posting
+                sections[SECTION_CHECKSUMS] = out.position();
+                out.skip(checksums.length * 4L);
+
+                sections[SECTION_COUNT] = out.position();
+            }
+
+            try {
+                IntStream.range(0, sectionCount).parallel().forEach(section -> {
+                    try {
+                        ByteBuffer encoded = encodeSection(vocabulary, section, sizes[section]);
+                        checksums[SECTION_CHECKSUMS + section] = checksum(encoded);
+                        writeFully(channel, encoded, positions[section]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            ByteBuffer checksumBuffer = ByteBuffer.allocate(checksums.length * 4);
+            checksumBuffer.asIntBuffer().put(checksums);
+            writeFully(channel, checksumBuffer, sections[SECTION_CHECKSUMS]);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(termCount);
+            header.putInt(FrozenDictionary.BLOCK_SIZE);
+            header.putInt(vocabulary.getMaxTermLength());
+            header.putInt(TERMS_PER_SECTION);
+            header.putInt(sectionCount);
+            for (long section : sections) {
+                header.putLong(section);
+            }
+            header.putInt(checksum(slice(header, 0, HEADER_SIZE - 4)));
+            header.flip();
+            writeFully(channel, header, 0);
+        }
+    }
+
+    /**
+     * Legge un dizionario scritto con {@link #write(Dictionary, String)} caricandolo
+     * interamente nello heap. Le sezioni delle liste di posting vengono decodificate in
+     * parallelo. Il dizionario restituito è congelato.
+     *
+     * L'applicazione non usa questo caricamento: apre l'indice pubblicato con
+     * {@link #open(String)}, che decodifica solo le liste richieste, quindi la decodifica
+     * parallela riguarda solo chi carica l'intero indice, come {@code IndexBenchmark}
+     * per il confronto tra i due caricamenti.
+     *
+     * @param filePath Il percorso del file
+     * @return Il dizionario letto
+     * @throws IOException Se si verifica un errore di I/O o il file non è valido
+     */
+    public static Dictionary read(String filePath) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            data = ByteBuffer.allocate(checkSize(channel.size(), filePath));
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("File di indice troncato: " + filePath);
+                }
+            }
+        }
+        return load(data, filePath, false);
+    }
+
+    /**
+     * Apre un dizionario scritto con {@link #write(Dictionary, String)} mappando il file in
+     * memoria in sola lettura. I termini vengono cercati direttamente nella mappatura e le
+     * liste di posting decodificate solo quando vengono richieste; nello heap vengono
+     * caricate solo le posizioni dei blocchi dei termini e le tabelle per documento.
+     * Il file non deve essere modificato finché il dizionario è in uso.
+     *
+     * @param filePath Il percorso del file
+     * @return Il dizionario congelato
+     * @throws IOException Se si verifica un errore di I/O o il file non è valido
+     */
+    public static Dictionary open(String filePath) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, checkSize(channel.size(), filePath));
+        }
+        return load(data, filePath, true);
+    }
+
+    /**
+     * Carica nella cache delle pagine del sistema operativo le sezioni del file lette da
+     * ogni ricerca: termini, frequenze, indice dei posting, tabelle dei documenti e
+     * statistiche. Come {@link java.nio.MappedByteBuffer#load()}, ma senza le sezioni di
+     * posting: viene letto un byte per pagina di una mappatura in sola lettura. Se il
+     * thread viene interrotto il caricamento si ferma prima della fine.
+     *
+     * @param filePath Il percorso del file
+     * @return Il numero di byte caricati
+     * @throws IOException Se si verifica un errore di I/O o il file non è valido
+     */
+    public static long preload(String filePath) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, checkSize(channel.size(), filePath));
+        }
+        if (data.capacity() < HEADER_SIZE_V1 || data.getInt(0) != MAGIC) {
+            throw new IOException("File di indice non valido: " + filePath);
+        }
+        int version = data.getInt(4);
+        int postingsStart;
+        int postingsEnd;
+        if (version == 1) {
+            postingsStart = (int) data.getLong(5 * 4 + 3 * 8);
+            postingsEnd = (int) data.getLong(5 * 4 + 4 * 8);
+        } else {
+            int sectionCount = data.getInt(24);
+            postingsStart = (int) data.getLong(7 * 4 + SECTION_DIRECTORY * 8) + sectionCount * 16;
+            postingsEnd = (int) data.getLong(7 * 4 + SECTION_DOCUMENTS * 8);
+        }
+        if (postingsStart < 0 || postingsStart > postingsEnd || postingsEnd > data.capacity()) {
+            throw new IOException("File di indice non valido: " + filePath);
+        }
+        return touch(data, 0, postingsStart) + touch(data, postingsEnd, data.capacity());
+    }
+
+    private static long touch(ByteBuffer data, int from, int to) {
+        int sum = 0;
+        int position = from;
+        for (; position < to; position += PAGE_SIZE) {
+            if ((position - from) % INTERRUPT_CHECK_BYTES == 0 && Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            sum += data.get(position);
+        }
+        touched = sum;
+        return Math.min(position, to) - from;
+    }
+
+    private static int checkSize(long size, String filePath) throws IOException {
+        // Un singolo buffer è indicizzato con int
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File di indice troppo grande: " + filePath);
+        }
+        return (int) size;
+    }
+
+    private static Dictionary load(ByteBuffer data, String filePath, boolean lazy) throws IOException {
+        if (data.capacity() < HEADER_SIZE_V1 || data.getInt(0) != MAGIC) {
+            throw new IOException("File di indice non valido: " + filePath);
+        }
+        int version = data.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Versione del formato dell'indice non supportata: " + version);
+        }
+        int termCount = data.getInt(8);
+        int blockSize = data.getInt(12);
+        if (blockSize != FrozenDictionary.BLOCK_SIZE) {
+            throw new IOException("Dimensione dei blocchi dei termini non supportata: " + blockSize);
+        }
+        int maxTermLength = data.getInt(16);
+
+        // Nella versione 1 le posizioni delle sezioni seguono subito i primi cinque interi;
+        // la versione 2 non ha checksum
+        int headerInts = version == 1 ? 5 : 7;
+        int sectionTotal = version == 1 ? 7 : version == 2 ? SECTION_CHECKSUMS + 1 : SECTION_COUNT + 1;
+        if (data.capacity() < headerInts * 4 + sectionTotal * 8 + (version >= 3 ? 4 : 0)) {
+            throw new IOException("File di indice troncato: " + filePath);
+        }
+        if (version >= 3 && data.getInt(HEADER_SIZE - 4) != checksum(slice(data, 0, HEADER_SIZE - 4))) {
+            throw new IOException("Checksum dell'intestazione non valido: " + filePath);
+        }
+        long[] sections = new long[sectionTotal];
+        for (int i = 0; i < sectionTotal; i++) {
+            sections[i] = data.getLong(headerInts * 4 + i * 8);
+        }
+        if (sections[sectionTotal - 1] != data.capacity()) {
+            throw new IOException("File di indice troncato: " + filePath);
+        }
+
+        int[] checksums = null;
+        if (version >= 3) {
+            // Le sezioni lette all'apertura vengono verificate subito, quelle dei posting al primo accesso
+            int sectionCount = data.getInt(24);
+            checksums = new int[SECTION_CHECKSUMS + sectionCount];
+            slice(data, (int) sections[SECTION_CHECKSUMS], checksums.length * 4).asIntBuffer().get(checksums);
+            for (int section = SECTION_TERMS; section < SECTION_CHECKSUMS; section++) {
+                int length = (int) (sections[section + 1] - sections[section]);
+                if (section == SECTION_DIRECTORY) {
+                    length = sectionCount * 16;
+                }
+                if (checksum(slice(data, (int) sections[section], length)) != checksums[section]) {
+                    throw new IOException("Checksum non valido per la sezione " + section + " del file di indice: "
+                            + filePath);
+                }
+            }
+        }
+
+        data.position((int) sections[SECTION_TERMS]);
+        int blockCount = data.getInt();
+        int termBytesLength = data.getInt();
+        int[] blockOffsets = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            blockOffsets[i] = data.getInt();
+        }
+        ByteBuffer terms = slice(data, data.position(), termBytesLength);
+
+        int frequencies = (int) sections[SECTION_FREQUENCIES];
+        IntBuffer documentFrequencies = slice(data, frequencies, termCount * 4).asIntBuffer();
+        IntBuffer collectionFrequencies = slice(data, frequencies + termCount * 4, termCount * 4).asIntBuffer();
+
+        PostingSource postings;
+        int documents;
+        int statistics;
+        if (version == 1) {
+            int postingsStart = (int) sections[3];
+            LongBuffer postingOffsets = slice(data, (int) sections[2], (termCount + 1) * 8).asLongBuffer();
+            ByteBuffer encoded = slice(data, postingsStart, (int) (sections[4] - postingsStart));
+            postings = termId -> PostingList.decode(encoded, (int) postingOffsets.get(termId));
+            documents = (int) sections[4];
+            statistics = (int) sections[5];
+        } else {
+            int termsPerSection = data.getInt(20);
+            int sectionCount = data.getInt(24);
+            ByteBuffer[] encoded = new ByteBuffer[sectionCount];
+            int directory = (int) sections[SECTION_DIRECTORY];
+            for (int section = 0; section < sectionCount; section++) {
+                int position = (int) data.getLong(directory + section * 16);
+                int length = (int) data.getLong(directory + section * 16 + 8);
+                encoded[section] = slice(data, position, length);
+            }
+            postings = new SectionedPostings(encoded, termsPerSection, termCount, checksums, filePath);
+            documents = (int) sections[SECTION_DOCUMENTS];
+            statistics = (int) sections[SECTION_STATISTICS];
+        }
+
+        FrozenDictionary vocabulary;
+        if (lazy) {
+            vocabulary = new FrozenDictionary(terms, blockOffsets, termCount, maxTermLength,
+                    documentFrequencies, collectionFrequencies, postings);
+        } else {
+            // Copia dei termini, così il buffer dell'intero file non resta raggiungibile
+            ByteBuffer termCopy = ByteBuffer.allocate(termBytesLength);
+            termCopy.put(terms).flip();
+            int[] documentFrequencyArray = new int[termCount];
+            int[] collectionFrequencyArray = new int[termCount];
+            documentFrequencies.get(documentFrequencyArray);
+            collectionFrequencies.get(collectionFrequencyArray);
+            PostingList[] postingLists = new PostingList[termCount];
+            int chunks = (termCount + TERMS_PER_SECTION - 1) / TERMS_PER_SECTION;
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int last = Math.min(termCount, (chunk + 1) * TERMS_PER_SECTION);
+                for (int termId = chunk * TERMS_PER_SECTION; termId < last; termId++) {
+                    postingLists[termId] = postings.get(termId);
+                }
+            });
+            vocabulary = new FrozenDictionary(termCopy, blockOffsets, termCount, maxTermLength,
+                    documentFrequencyArray, collectionFrequencyArray, postingLists);
+        }
+        Dictionary dictionary = new Dictionary(vocabulary);
+
+        data.position(documents);
+        readDocuments(data, dictionary);
+
+        data.position(statistics);
+        dictionary.setCollectionStatistics(readStatistics(data));
+        return dictionary;
+    }
+
+    /**
+     * Verifica se un file inizia con il numero magico del formato binario.
+     *
+     * @param filePath Il percorso del file
+     * @return true se il file è un indice in formato binario
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public static boolean isBinaryIndex(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    private static void writeDocuments(Output out, Dictionary dictionary) throws IOException {
+        long[] words = dictionary.getLiveDocs().toWords();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+        int[] lengths = dictionary.getDocumentLengths().toArray();
+        out.writeInt(lengths.length);
+        for (int length : lengths) {
+            out.writeInt(length);
+        }
+        float[] norms = dictionary.getDocumentNorms().toArray();
+        out.writeInt(norms.length);
+        for (float norm : norms) {
+            out.writeFloat(norm);
+        }
+    }
+
+    private static void readDocuments(ByteBuffer data, Dictionary dictionary) {
+        long[] words = new long[data.getInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = data.getLong();
+        }
+        int[] lengths = new int[data.getInt()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = data.getInt();
+        }
+        float[] norms = new float[data.getInt()];
+        for (int i = 0; i < norms.length; i++) {
+            norms[i] = data.getFloat();
+        }
+        // Le norme vanno impostate dopo la bitmap, che le invalida
+        dictionary.setLiveDocs(new LiveDocs(words));
+        dictionary.setDocumentLengths(new DocumentLengths(lengths));
+        dictionary.setDocumentNorms(new DocumentNorms(norms));
+    }
+
+    private static void writeStatistics(Output out, CollectionStatistics statistics) throws IOException {
+        List<Term> topTerms = statistics.getTopTerms();
+        out.writeInt(statistics.getCapacity());
+        out.writeInt(topTerms.size());
+        for (Term term : topTerms) {
+            byte[] text = term.getText().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.writeBytes(ByteBuffer.wrap(text));
+            out.writeInt(term.getDocumentFrequency());
+            out.writeInt(term.getCollectionFrequency());
+        }
+        out.writeLong(statistics.getTotalTokens());
+        long[] growthTokens = statistics.getGrowthTokens();
+        int[] growthVocabulary = statistics.getGrowthVocabulary();
+        out.writeInt(growthTokens.length);
+        for (int i = 0; i < growthTokens.length; i++) {
+            out.writeLong(growthTokens[i]);
+            out.writeInt(growthVocabulary[i]);
+        }
+        out.writeLong(statistics.getSampleInterval());
+    }
+
+    private static CollectionStatistics readStatistics(ByteBuffer data) {
+        int capacity = data.getInt();
+        int topCount = data.getInt();
+        List<Term> topTerms = new ArrayList<>(topCount);
+        for (int i = 0; i < topCount; i++) {
+            byte[] text = new byte[data.getInt()];
+            data.get(text);
+            Term term = new Term(new String(text, StandardCharsets.UTF_8));
+            term.setDocumentFrequency(data.getInt());
+            term.setCollectionFrequency(data.getInt());
+            topTerms.add(term);
+        }
+        long totalTokens = data.getLong();
+        int points = data.getInt();
+        long[] growthTokens = new long[points];
+        int[] growthVocabulary = new int[points];
+        for (int i = 0; i < points; i++) {
+            growthTokens[i] = data.getLong();
+            growthVocabulary[i] = data.getInt();
+        }
+        long sampleInterval = data.getLong();
+        return new CollectionStatistics(capacity, topTerms, totalTokens, growthTokens, growthVocabulary,
+                sampleInterval);
+    }
+
+    /**
+     * Calcola il checksum CRC32C del contenuto di un buffer, senza modificarne la posizione.
+     */
+    static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int position, int length) {
+        ByteBuffer duplicate = data.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * Calcola la dimensione di una sezione: posizioni relative delle liste seguite dalle liste.
+     */
+    private static long sectionSize(FrozenDictionary vocabulary, int section) {
+        int first = section * TERMS_PER_SECTION;
+        int last = Math.min(vocabulary.size(), first + TERMS_PER_SECTION);
+        long size = (last - first + 1) * 4L;
+        for (int termId = first; termId < last; termId++) {
+            size += encodedSize(vocabulary.getPostingList(termId));
+        }
+        return size;
+    }
+
+    private static ByteBuffer encodeSection(FrozenDictionary vocabulary, int section, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Sezione delle liste di posting troppo grande: " + size);
+        }
+        int first = section * TERMS_PER_SECTION;
+        int last = Math.min(vocabulary.size(), first + TERMS_PER_SECTION);
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        int dataStart = (last - first + 1) * 4;
+        buffer.position(dataStart);
+        for (int termId = first; termId < last; termId++) {
+            buffer.putInt((termId - first) * 4, buffer.position() - dataStart);
+            PostingList postingList = vocabulary.getPostingList(termId);
+            putVInt(buffer, postingList.size());
+            int previous = 0;
+            for (int i = 0; i < postingList.size(); i++) {
+                int documentId = postingList.getDocumentId(i);
+                putVInt(buffer, documentId - previous);
+                putVInt(buffer, postingList.getFrequency(i));
+                previous = documentId;
+            }
+        }
+        buffer.putInt((last - first) * 4, buffer.position() - dataStart);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void putVInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static long encodedSize(PostingList postingList) {
+        long size = vIntSize(postingList.size());
+        int previous = 0;
+        for (int i = 0; i < postingList.size(); i++) {
+            int documentId = postingList.getDocumentId(i);
+            size += vIntSize(documentId - previous) + vIntSize(postingList.getFrequency(i));
+            previous = documentId;
+        }
+        return size;
+    }
+
+    private static int vIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Liste di posting divise in sezioni di {@link #TERMS_PER_SECTION} termini consecutivi.
+     * Ogni sezione inizia con la posizione relativa di ogni sua lista, più la fine delle
+     * liste, e può essere decodificata indipendentemente dalle altre. Se il file ha i
+     * checksum, ogni sezione viene verificata la prima volta che se ne legge una lista.
+     */
+    private static class SectionedPostings implements PostingSource {
+        private final ByteBuffer[] sections;
+        private final int[] dataStarts;
+        private final int termsPerSection;
+        private final int[] checksums;
+        private final boolean[] verified;
+        private final String filePath;
+
+        SectionedPostings(ByteBuffer[] sections, int termsPerSection, int termCount, int[] checksums,
+                          String filePath) {
+            this.sections = sections;
+            this.termsPerSection = termsPerSection;
+            this.checksums = checksums;
+            this.verified = new boolean[sections.length];
+            this.filePath = filePath;
+            this.dataStarts = new int[sections.length];
+            for (int section = 0; section < sections.length; section++) {
+                int count = Math.min(termsPerSection, termCount - section * termsPerSection);
+                dataStarts[section] = (count + 1) * 4;
+            }
+        }
+
+        @Override
+        public PostingList get(int termId) {
+            int section = termId / termsPerSection;
+            ByteBuffer buffer = sections[section];
+            if (checksums != null && !verified[section]) {
+                verify(section);
+            }
+            int offset = buffer.getInt((termId - section * termsPerSection) * 4);
+            return PostingList.decode(buffer, dataStarts[section] + offset);
+        }
+
+        private void verify(int section) {
+            if (checksum(sections[section]) != checksums[SECTION_CHECKSUMS + section]) {
+                throw new UncheckedIOException(new IOException("Checksum non valido per la sezione di posting "
+                        + section + " del file di indice: " + filePath));
+            }
+            // Più thread possono verificare la stessa sezione: il risultato è lo stesso
+            verified[section] = true;
+        }
+    }
+
+    /**
+     * Scrittura bufferizzata su un canale che tiene traccia della posizione nel file.
+     */
+    private static class Output implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32C checksum = new CRC32C();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        /**
+         * Inizia il calcolo del checksum dei byte scritti da questo punto.
+         */
+        void beginChecksum() throws IOException {
+            flush();
+            checksum.reset();
+        }
+
+        /**
+         * Restituisce il checksum dei byte scritti da {@link #beginChecksum()}.
+         */
+        int endChecksum() throws IOException {
+            flush();
+            return (int) checksum.getValue();
+        }
+
+        long position() throws IOException {
+            return channel.position() + buffer.position();
+        }
+
+        void skip(long count) throws IOException {
+            flush();
+            channel.position(channel.position() + count);
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void writeFloat(float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        void writeBytes(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                ensure(1);
+                int count = Math.min(source.remaining(), buffer.remaining());
+                ByteBuffer chunk = source.duplicate();
+                chunk.limit(chunk.position() + count);
+                buffer.put(chunk);
+                source.position(source.position() + count);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int count) throws IOException {
+            if (buffer.remaining() < count) {
+                flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
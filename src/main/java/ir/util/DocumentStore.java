@@ -0,0 +1,399 @@
+package ir.util;
+
+import ir.model.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * File del contenuto dei documenti diviso in blocchi compressi con deflate.
+ *
+ * Il file contiene un'intestazione (numero magico, versione, numero di documenti e di
+ * blocchi, checksum delle tabelle), la tabella degli ID dei documenti, per ogni blocco la
+ * posizione del primo documento, la posizione nel file e il checksum CRC32C, e infine i
+ * blocchi. Le tabelle vengono verificate all'apertura, ogni blocco la prima volta che
+ * viene decompresso. Ogni blocco contiene documenti
+ * consecutivi, ognuno come nome e contenuto in UTF-8 preceduti dalla lunghezza, fino a
+ * circa {@link #BLOCK_SIZE} byte non compressi. Il file viene mappato in memoria e un
+ * documento viene letto decomprimendo solo il suo blocco; l'ultimo blocco decompresso
+ * viene conservato, così una lettura sequenziale decomprime ogni blocco una volta sola.
+ *
+ * L'elenco è immutabile e può essere letto da più thread.
+ */
+public class DocumentStore extends AbstractList<Document> implements RandomAccess {
+    /**
+     * Numero magico all'inizio del file ("IRDS").
+     */
+    public static final int MAGIC = 0x49524453;
+
+    /**
+     * Versione corrente del formato.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Dimensione indicativa in byte del contenuto non compresso di un blocco.
+     */
+    public static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int HEADER_SIZE_V1 = 4 * 4;
+
+    private final ByteBuffer data;
+    private final int[] documentIds;
+    private final boolean sortedIds;
+    private final int[] blockStarts;
+    private final int[] blockOffsets;
+    private final int[] checksums;
+    private final boolean[] verified;
+    private volatile DecodedBlock lastBlock;
+
+    private DocumentStore(ByteBuffer data, int[] documentIds, int[] blockStarts, int[] blockOffsets,
+                          int[] checksums) {
+        this.data = data;
+        this.documentIds = documentIds;
+        this.blockStarts = blockStarts;
+        this.blockOffsets = blockOffsets;
+        this.checksums = checksums;
+        this.verified = new boolean[blockStarts.length - 1];
+        boolean sorted = true;
+        for (int i = 1; i < documentIds.length && sorted; i++) {
+            sorted = documentIds[i - 1] < documentIds[i];
+        }
+        this.sortedIds = sorted;
+    }
+
+    /**
+     * Scrive un elenco di documenti su file. I blocchi vengono compressi in parallelo sul
+     * pool fork-join comune e poi scritti in ordine.
+     *
+     * @param documents I documenti da scrivere
+     * @param filePath Il percorso del file di output
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public static void write(List<Document> documents, String filePath) throws IOException {
+        int documentCount = documents.size();
+        byte[][] names = new byte[documentCount][];
+        byte[][] contents = new byte[documentCount][];
+        int[] starts = new int[documentCount + 1];
+        int blockCount = 0;
+        long blockBytes = 0;
+        for (int i = 0; i < documentCount; i++) {
+            Document document = documents.get(i);
+            names[i] = document.getName().getBytes(StandardCharsets.UTF_8);
+            contents[i] = document.getContent().getBytes(StandardCharsets.UTF_8);
+            if (i == 0 || blockBytes >= BLOCK_SIZE) {
+                starts[blockCount++] = i;
+                blockBytes = 0;
+            }
+            blockBytes += 8 + names[i].length + contents[i].length;
+        }
+        starts[blockCount] = documentCount;
+        int[] blockStarts = Arrays.copyOf(starts, blockCount + 1);
+
+        byte[][] blocks = new byte[blockCount][];
+        IntStream.range(0, blockCount).parallel().forEach(block ->
+                blocks[block] = compress(names, contents, blockStarts[block], blockStarts[block + 1]));
+
+        ByteBuffer tables = ByteBuffer.allocate(documentCount * 4 + (blockCount + 1) * 12);
+        long position = HEADER_SIZE + tables.capacity();
+        for (Document document : documents) {
+            tables.putInt(document.getId());
+        }
+        for (int block = 0; block <= blockCount; block++) {
+            tables.putInt(blockStarts[block]);
+            tables.putInt(checkOffset(position, filePath));
+            if (block < blockCount) {
+                CRC32C crc = new CRC32C();
+                crc.update(blocks[block]);
+                tables.putInt((int) crc.getValue());
+                position += 4 + blocks[block].length;
+            } else {
+                tables.putInt(0);
+            }
+        }
+        tables.flip();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(documentCount);
+            out.writeInt(blockCount);
+            out.writeInt(BinaryIndexFormat.checksum(tables));
+            out.write(tables.array(), 0, tables.limit());
+            for (int block = 0; block < blockCount; block++) {
+                out.writeInt(uncompressedSize(names, contents, blockStarts[block], blockStarts[block + 1]));
+                out.write(blocks[block]);
+            }
+        }
+    }
+
+    /**
+     * Apre un file scritto con {@link #write(List, String)} mappandolo in memoria. Vengono
+     * letti solo l'intestazione e le tabelle; i documenti vengono decompressi quando
+     * vengono richiesti. Il file non deve essere modificato finché l'elenco è in uso.
+     *
+     * @param filePath Il percorso del file
+     * @return L'elenco dei documenti
+     * @throws IOException Se si verifica un errore di I/O o il file non è valido
+     */
+    public static DocumentStore open(String filePath) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File dei documenti troppo grande: " + filePath);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (data.capacity() < HEADER_SIZE_V1 || data.getInt(0) != MAGIC) {
+            throw new IOException("File dei documenti non valido: " + filePath);
+        }
+        int version = data.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Versione del formato dei documenti non supportata: " + version);
+        }
+        int documentCount = data.getInt(8);
+        int blockCount = data.getInt(12);
+        // La versione 1 non ha checksum
+        int headerSize = version == 1 ? HEADER_SIZE_V1 : HEADER_SIZE;
+        int entrySize = version == 1 ? 8 : 12;
+        long tablesSize = documentCount * 4L + (blockCount + 1L) * entrySize;
+        if (headerSize + tablesSize > data.capacity()) {
+            throw new IOException("File dei documenti troncato: " + filePath);
+        }
+        if (version >= 2) {
+            ByteBuffer tables = data.duplicate();
+            tables.position(headerSize).limit(headerSize + (int) tablesSize);
+            if (BinaryIndexFormat.checksum(tables) != data.getInt(16)) {
+                throw new IOException("Checksum delle tabelle dei documenti non valido: " + filePath);
+            }
+        }
+
+        data.position(headerSize);
+        int[] documentIds = new int[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            documentIds[i] = data.getInt();
+        }
+        int[] blockStarts = new int[blockCount + 1];
+        int[] blockOffsets = new int[blockCount + 1];
+        int[] checksums = version >= 2 ? new int[blockCount + 1] : null;
+        for (int block = 0; block <= blockCount; block++) {
+            blockStarts[block] = data.getInt();
+            blockOffsets[block] = data.getInt();
+            if (checksums != null) {
+                checksums[block] = data.getInt();
+            }
+        }
+        if (blockOffsets[blockCount] != data.capacity()) {
+            throw new IOException("File dei documenti troncato: " + filePath);
+        }
+        return new DocumentStore(data, documentIds, blockStarts, blockOffsets, checksums);
+    }
+
+    /**
+     * Verifica se un file inizia con il numero magico del formato.
+     *
+     * @param filePath Il percorso del file
+     * @return true se il file è nel formato a blocchi compressi
+     * @throws IOException Se si verifica un errore di I/O
+     */
+    public static boolean isDocumentStore(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Restituisce il documento in una data posizione, decomprimendo il suo blocco se non è
+     * l'ultimo letto.
+     *
+     * @param index La posizione del documento
+     * @return Il documento
+     * @throws IndexOutOfBoundsException Se la posizione non è valida
+     */
+    @Override
+    public Document get(int index) {
+        if (index < 0 || index >= documentIds.length) {
+            throw new IndexOutOfBoundsException("Posizione del documento non valida: " + index);
+        }
+        DecodedBlock block = lastBlock;
+        if (block == null || index < block.start || index >= block.end) {
+            block = decode(findBlock(index));
+            lastBlock = block;
+        }
+        return block.documents[index - block.start];
+    }
+
+    /**
+     * Cerca un documento per ID.
+     *
+     * @param documentId L'ID del documento
+     * @return Il documento, oppure null se non esiste
+     */
+    public Document getById(int documentId) {
+        int index = indexOfId(documentId);
+        return index >= 0 ? get(index) : null;
+    }
+
+    private int indexOfId(int documentId) {
+        if (sortedIds) {
+            int index = Arrays.binarySearch(documentIds, documentId);
+            return index >= 0 ? index : -1;
+        }
+        for (int i = 0; i < documentIds.length; i++) {
+            if (documentIds[i] == documentId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return documentIds.length;
+    }
+
+    private int findBlock(int index) {
+        int block = Arrays.binarySearch(blockStarts, index);
+        return block >= 0 ? block : -block - 2;
+    }
+
+    private DecodedBlock decode(int block) {
+        int offset = blockOffsets[block];
+        int uncompressedSize = data.getInt(offset);
+        byte[] input = new byte[blockOffsets[block + 1] - offset - 4];
+        ByteBuffer compressed = data.duplicate();
+        compressed.position(offset + 4);
+        compressed.get(input);
+        if (checksums != null && !verified[block]) {
+            CRC32C crc = new CRC32C();
+            crc.update(input);
+            if ((int) crc.getValue() != checksums[block]) {
+                throw new UncheckedIOException(new IOException("Checksum non valido per il blocco dei documenti: "
+                        + block));
+            }
+            // Più thread possono verificare lo stesso blocco: il risultato è lo stesso
+            verified[block] = true;
+        }
+        byte[] output = new byte[uncompressedSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < output.length && !inflater.finished()) {
+                int count = inflater.inflate(output, length, output.length - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += count;
+            }
+            if (length != output.length) {
+                throw new UncheckedIOException(new IOException("Blocco dei documenti troncato: " + block));
+            }
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Blocco dei documenti non valido: " + block, e));
+        } finally {
+            inflater.end();
+        }
+
+        int start = blockStarts[block];
+        int end = blockStarts[block + 1];
+        Document[] documents = new Document[end - start];
+        ByteBuffer buffer = ByteBuffer.wrap(output);
+        for (int i = start; i < end; i++) {
+            String name = readString(buffer);
+            String content = readString(buffer);
+            documents[i - start] = new Document(documentIds[i], name, content);
+        }
+        return new DecodedBlock(start, end, documents);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String text = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+
+    private static byte[] compress(byte[][] names, byte[][] contents, int start, int end) {
+        ByteBuffer block = ByteBuffer.allocate(uncompressedSize(names, contents, start, end));
+        for (int i = start; i < end; i++) {
+            block.putInt(names[i].length).put(names[i]);
+            block.putInt(contents[i].length).put(contents[i]);
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(block.array());
+            deflater.finish();
+            byte[] output = new byte[Math.max(64, block.capacity() / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return Arrays.copyOf(output, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int uncompressedSize(byte[][] names, byte[][] contents, int start, int end) {
+        long size = 0;
+        for (int i = start; i < end; i++) {
+            size += 8 + names[i].length + contents[i].length;
+        }
+        // Un blocco supera BLOCK_SIZE solo per l'ultimo documento inserito
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Documento troppo grande per un blocco: " + size + " byte");
+        }
+        return (int) size;
+    }
+
+    private static int checkOffset(long position, String filePath) throws IOException {
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("File dei documenti troppo grande: " + filePath);
+        }
+        return (int) position;
+    }
+
+    /**
+     * Documenti decompressi di un blocco.
+     */
+    private static class DecodedBlock {
+        final int start;
+        final int end;
+        final Document[] documents;
+
+        DecodedBlock(int start, int end, Document[] documents) {
+            this.start = start;
+            this.end = end;
+            this.documents = documents;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package ir.util;
+
+import ir.model.Dictionary;
+import ir.model.Document;
+import ir.search.ChampionLists;
+import ir.search.ImpactIndex;
+import ir.search.Similarity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Pubblicazione atomica di un indice: file del dizionario ({@link BinaryIndexFormat}) e
+ * file dei documenti ({@link DocumentStore}) di una stessa generazione, descritti da un
+ * piccolo manifest.
+ *
+ * Una nuova generazione viene scritta in file temporanei, che vengono sincronizzati su
+ * disco e rinominati con il numero della generazione; solo allora il manifest viene
+ * scritto in un file temporaneo e rinominato atomicamente sopra quello precedente. Un
+ * arresto in qualsiasi punto lascia quindi il manifest precedente, che descrive una
+ * coppia di file completa, oppure quello nuovo. Il manifest contiene nome e dimensione
+ * dei due file e termina con il proprio checksum CRC32C; i file hanno i propri checksum
+ * per sezione, verificati alla prima lettura. All'avvio bastano la lettura del manifest
+ * e il controllo delle dimensioni dei file.
+ *
+ * Accanto ai due file vengono scritti, prima del manifest, gli indici per impatto
+ * ({@link ImpactIndex}) e le liste dei campioni ({@link ChampionLists}) delle funzioni di
+ * punteggio indicate, un file di ciascun tipo per funzione. Non sono
+ * elencati nel manifest: portano il numero della generazione nel nome e vengono
+ * verificati dal proprio checksum, quindi un file mancante o non valido viene
+ * semplicemente ricostruito da chi lo legge.
+ */
+public class IndexCommit {
+    /**
+     * Numero magico all'inizio del manifest ("IRCM").
+     */
+    public static final int MAGIC = 0x4952434D;
+
+    /**
+     * Versione corrente del formato del manifest.
+     */
+    public static final int VERSION = 1;
+
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final String DOCUMENTS_EXTENSION = ".docs";
+    private static final String IMPACT_EXTENSION = ".impact";
+    private static final String CHAMPIONS_EXTENSION = ".champions";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final long generation;
+    private final Path indexPath;
+    private final Path documentsPath;
+
+    private IndexCommit(long generation, Path indexPath, Path documentsPath) {
+        this.generation = generation;
+        this.indexPath = indexPath;
+        this.documentsPath = documentsPath;
+    }
+
+    /**
+     * Scrive e pubblica una nuova generazione dell'indice. Al termine i file delle
+     * generazioni precedenti vengono eliminati, se possibile.
+     *
+     * @param dictionary Il dizionario da scrivere
+     * @param documents I documenti da scrivere
+     * @param manifestPath Il percorso del manifest
+     * @param similarities Le funzioni di punteggio di cui scrivere indice per impatto e liste dei campioni
+     * @return La generazione pubblicata
+     * @throws IOException Se si verifica un errore di I/O; il manifest precedente resta valido
+     */
+    public static IndexCommit write(Dictionary dictionary, List<Document> documents, String manifestPath,
+                                    Similarity... similarities) throws IOException {
+        Path manifest = Paths.get(manifestPath).toAbsolutePath();
+        Path directory = manifest.getParent();
+        String baseName = baseName(manifest);
+
+        long generation = 1;
+        try {
+            IndexCommit previous = read(manifestPath);
+            if (previous != null) {
+                generation = previous.generation + 1;
+            }
+        } catch (IOException e) {
+            // Un manifest non valido viene sostituito dalla nuova generazione
+        }
+
+        Path indexPath = directory.resolve(baseName + "-" + generation + INDEX_EXTENSION);
+        Path indexTemporary = temporary(indexPath);
+        BinaryIndexFormat.write(dictionary, indexTemporary.toString());
+        publish(indexTemporary, indexPath);
+
+        Path documentsPath = directory.resolve(baseName + "-" + generation + DOCUMENTS_EXTENSION);
+        Path documentsTemporary = temporary(documentsPath);
+        DocumentStore.write(documents, documentsTemporary.toString());
+        publish(documentsTemporary, documentsPath);
+
+        for (Similarity similarity : similarities) {
+            Path impactPath = tierPath(indexPath, similarity, IMPACT_EXTENSION);
+            Path impactTemporary = temporary(impactPath);
+            ImpactIndex.build(dictionary, similarity, ImpactIndex.DEFAULT_BITS).write(impactTemporary.toString());
+            publish(impactTemporary, impactPath);
+
+            Path championsPath = tierPath(indexPath, similarity, CHAMPIONS_EXTENSION);
+            Path championsTemporary = temporary(championsPath);
+            ChampionLists.build(dictionary, similarity, ChampionLists.DEFAULT_SIZE)
+                    .write(championsTemporary.toString());
+            publish(championsTemporary, championsPath);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            writeName(out, indexPath);
+            out.writeLong(Files.size(indexPath));
+            writeName(out, documentsPath);
+            out.writeLong(Files.size(documentsPath));
+            CRC32C crc = new CRC32C();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        }
+        Path manifestTemporary = temporary(manifest);
+        Files.write(manifestTemporary, bytes.toByteArray());
+        publish(manifestTemporary, manifest);
+
+        deleteOtherGenerations(directory, baseName, generation);
+        return new IndexCommit(generation, indexPath, documentsPath);
+    }
+
+    /**
+     * Legge il manifest e verifica che i file della generazione pubblicata esistano e
+     * abbiano la dimensione registrata. Il contenuto dei file non viene letto.
+     *
+     * @param manifestPath Il percorso del manifest
+     * @return La generazione pubblicata, oppure null se il manifest non esiste
+     * @throws IOException Se il manifest non è valido o i file sono mancanti o incompleti
+     */
+    public static IndexCommit read(String manifestPath) throws IOException {
+        Path manifest = Paths.get(manifestPath).toAbsolutePath();
+        if (!Files.exists(manifest)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(manifest);
+        if (bytes.length < 20) {
+            throw new IOException("Manifest dell'indice troncato: " + manifestPath);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 4);
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        if (data.getInt(bytes.length - 4) != (int) crc.getValue()) {
+            throw new IOException("Checksum del manifest dell'indice non valido: " + manifestPath);
+        }
+        if (data.getInt() != MAGIC) {
+            throw new IOException("Manifest dell'indice non valido: " + manifestPath);
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("Versione del manifest dell'indice non supportata: " + version);
+        }
+        long generation = data.getLong();
+        Path directory = manifest.getParent();
+        Path indexPath = checkFile(directory.resolve(readName(data)), data.getLong());
+        Path documentsPath = checkFile(directory.resolve(readName(data)), data.getLong());
+        return new IndexCommit(generation, indexPath, documentsPath);
+    }
+
+    /**
+     * Apre il dizionario della generazione mappandone il file in memoria.
+     *
+     * @return Il dizionario congelato
+     * @throws IOException Se si verifica un errore di I/O o il file non è valido
+     */
+    public Dictionary openDictionary() throws IOException {
+        return BinaryIndexFormat.open(indexPath.toString());
+    }
+
+    /**
+     * Apre i documenti della generazione mappandone il file in memoria.
+     *
+     * @return L'elenco dei documenti
+     * @throws IOException Se si verifica un errore di I/O o il file non è valido
+     */
+    public List<Document> openDocuments() throws IOException {
+        return DocumentStore.open(documentsPath.toString());
+    }
+
+    /**
+     * Restituisce il percorso dell'indice per impatto di una funzione di punteggio in
+     * questa generazione. Il file esiste solo se la funzione è stata indicata alla scrittura.
+     *
+     * @param similarity La funzione di punteggio
+     * @return Il percorso del file
+     */
+    public String getImpactPath(Similarity similarity) {
+        return tierPath(indexPath, similarity, IMPACT_EXTENSION).toString();
+    }
+
+    /**
+     * Restituisce il percorso delle liste dei campioni di una funzione di punteggio in
+     * questa generazione. Il file esiste solo se la funzione è stata indicata alla scrittura.
+     *
+     * @param similarity La funzione di punteggio
+     * @return Il percorso del file
+     */
+    public String getChampionsPath(Similarity similarity) {
+        return tierPath(indexPath, similarity, CHAMPIONS_EXTENSION).toString();
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public String getIndexPath() {
+        return indexPath.toString();
+    }
+
+    public String getDocumentsPath() {
+        return documentsPath.toString();
+    }
+
+    private static String baseName(Path manifest) {
+        String name = manifest.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Percorso di un file derivato dall'indice per una funzione di punteggio, identificata
+     * dalla sua rappresentazione testuale ridotta a lettere minuscole, cifre e punti.
+     */
+    private static Path tierPath(Path indexPath, Similarity similarity, String extension) {
+        String name = indexPath.getFileName().toString();
+        String prefix = name.substring(0, name.length() - INDEX_EXTENSION.length());
+        String key = similarity.toString().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9.]+", "-")
+                .replaceAll("^-|-$", "");
+        return indexPath.resolveSibling(prefix + "." + key + extension);
+    }
+
+    private static Path temporary(Path path) {
+        return path.resolveSibling(path.getFileName() + TEMPORARY_EXTENSION);
+    }
+
+    /**
+     * Sincronizza un file temporaneo su disco e lo rinomina atomicamente nel percorso finale.
+     */
+    private static void publish(Path temporary, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(target.getParent());
+    }
+
+    private static void syncDirectory(Path directory) {
+        // Rende persistente la rinomina; non tutti i sistemi permettono di aprire una directory
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // La rinomina resta atomica anche senza sincronizzazione della directory
+        }
+    }
+
+    private static void deleteOtherGenerations(Path directory, String baseName, long generation) {
+        String current = baseName + "-" + generation + ".";
+        Pattern generationFile = Pattern.compile(Pattern.quote(baseName) + "-[0-9]+("
+                + Pattern.quote(INDEX_EXTENSION) + "|" + Pattern.quote(DOCUMENTS_EXTENSION)
+                + "|\\.[a-z0-9.-]+(" + Pattern.quote(IMPACT_EXTENSION) + "|" + Pattern.quote(CHAMPIONS_EXTENSION)
+                + "))(" + Pattern.quote(TEMPORARY_EXTENSION) + ")?");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, baseName + "-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!generationFile.matcher(name).matches()) {
+                    continue;
+                }
+                if (!name.startsWith(current) || name.endsWith(TEMPORARY_EXTENSION)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Un file ancora aperto verrà eliminato alla prossima pubblicazione
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // I file di generazioni precedenti non sono raggiungibili dal manifest
+        }
+    }
+
+    private static Path checkFile(Path file, long expectedSize) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("File dell'indice mancante: " + file);
+        }
+        long size = Files.size(file);
+        if (size != expectedSize) {
+            throw new IOException("File dell'indice incompleto: " + file + " (" + size + " byte invece di "
+                    + expectedSize + ")");
+        }
+        return file;
+    }
+
+    private static void writeName(DataOutputStream out, Path file) throws IOException {
+        byte[] name = file.getFileName().toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(name.length);
+        out.write(name);
+    }
+
+    private static String readName(ByteBuffer data) throws IOException {
+        int length = data.getInt();
+        if (length < 0 || length > data.remaining() - 4) {
+            throw new IOException("Manifest dell'indice non valido");
+        }
+        String text = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return text;
+    }
+}
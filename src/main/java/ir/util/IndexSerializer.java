@@ -1,14 +1,16 @@
 package ir.util;
 
+import ir.model.CollectionStatistics;
 import ir.model.Dictionary;
 import ir.model.Document;
-import ir.model.Posting;
+import ir.model.DocumentLengths;
+import ir.model.DocumentNorms;
+import ir.model.LiveDocs;
 import ir.model.PostingList;
 import ir.model.Term;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,45 +20,21 @@ import java.util.Map;
 public class IndexSerializer {
     
     /**
-     * Serializza un dizionario su file.
+     * Serializza un dizionario su file nel formato binario {@link BinaryIndexFormat}.
      * 
      * @param dictionary Il dizionario da serializzare
      * @param filePath Il percorso del file di output
      * @throws IOException Se si verifica un errore di I/O
      */
     public static void serializeDictionary(Dictionary dictionary, String filePath) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            // Creiamo una rappresentazione serializzabile del dizionario
-            Map<String, SerializableTerm> terms = new HashMap<>();
-            Map<String, List<SerializablePosting>> postings = new HashMap<>();
-            
-            for (String termText : dictionary.getTerms()) {
-                Term term = dictionary.getTerm(termText);
-                terms.put(termText, new SerializableTerm(
-                        termText, 
-                        term.getDocumentFrequency(), 
-                        term.getCollectionFrequency()));
-                
-                PostingList postingList = dictionary.getPostingList(termText);
-                List<SerializablePosting> serializablePostings = new ArrayList<>();
-                
-                for (Posting posting : postingList) {
-                    serializablePostings.add(new SerializablePosting(
-                            posting.getDocumentId(), 
-                            posting.getFrequency()));
-                }
-                
-                postings.put(termText, serializablePostings);
-            }
-            
-            // Scriviamo l'indice serializzato
-            SerializableIndex index = new SerializableIndex(terms, postings);
-            oos.writeObject(index);
-        }
+        BinaryIndexFormat.write(dictionary, filePath);
     }
     
     /**
-     * Deserializza un dizionario da file.
+     * Deserializza un dizionario da file. I file nel formato binario vengono mappati in
+     * memoria con {@link BinaryIndexFormat#open(String)}, senza decodificare le liste di
+     * posting; quelli salvati con la serializzazione Java delle versioni precedenti restano
+     * leggibili.
      * 
      * @param filePath Il percorso del file da cui deserializzare
      * @return Il dizionario deserializzato
@@ -64,59 +42,98 @@ public class IndexSerializer {
      * @throws ClassNotFoundException Se la classe serializzata non è trovata
      */
     public static Dictionary deserializeDictionary(String filePath) throws IOException, ClassNotFoundException {
+        if (BinaryIndexFormat.isBinaryIndex(filePath)) {
+            return BinaryIndexFormat.open(filePath);
+        }
+        
         Dictionary dictionary = new Dictionary();
         
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
             SerializableIndex index = (SerializableIndex) ois.readObject();
             
-            // Ricostruiamo il dizionario
+            // Ricostruiamo il dizionario: ogni lista è già ordinata e viene costruita in un'unica
+            // operazione, riusando le statistiche salvate
             for (Map.Entry<String, SerializableTerm> entry : index.getTerms().entrySet()) {
                 String termText = entry.getKey();
                 SerializableTerm serTerm = entry.getValue();
                 
-                Term term = dictionary.addTerm(termText);
+                Term term = new Term(termText);
                 term.setDocumentFrequency(serTerm.getDocumentFrequency());
                 term.setCollectionFrequency(serTerm.getCollectionFrequency());
                 
-                // Ricostruiamo la lista di posting
                 List<SerializablePosting> serPostings = index.getPostings().get(termText);
-                PostingList postingList = dictionary.getPostingList(termText);
+                dictionary.addTerm(term, toPostingList(serPostings));
                 
-                for (SerializablePosting serPosting : serPostings) {
-                    for (int i = 0; i < serPosting.getFrequency(); i++) {
-                        postingList.addPosting(serPosting.getDocumentId());
+                // Gli indici salvati senza bitmap la ricostruiscono dai posting
+                if (index.getLiveDocs() == null) {
+                    for (SerializablePosting serPosting : serPostings) {
+                        dictionary.addDocument(serPosting.getDocumentId());
                     }
                 }
             }
+            
+            if (index.getLiveDocs() != null) {
+                dictionary.setLiveDocs(new LiveDocs(index.getLiveDocs()));
+            }
+            
+            // Senza lunghezze salvate verranno ricalcolate dai posting al primo accesso
+            dictionary.setDocumentLengths(index.getDocumentLengths() != null
+                    ? new DocumentLengths(index.getDocumentLengths()) : null);
+            
+            // Senza statistiche salvate verranno ricalcolate dal dizionario al primo accesso
+            dictionary.setCollectionStatistics(index.getStatistics() != null
+                    ? index.getStatistics().toCollectionStatistics() : null);
+            
+            // Senza norme salvate verranno ricalcolate alla prima ricerca classificata
+            if (index.getDocumentNorms() != null) {
+                dictionary.setDocumentNorms(new DocumentNorms(index.getDocumentNorms()));
+            }
         }
         
         return dictionary;
     }
     
     /**
-     * Serializza l'elenco dei documenti su file.
+     * Costruisce una lista di posting dai posting salvati con gli array già della dimensione
+     * esatta. Le liste salvate sono ordinate per ID del documento; se non lo fossero i
+     * posting vengono inseriti uno alla volta.
+     */
+    private static PostingList toPostingList(List<SerializablePosting> serPostings) {
+        int size = serPostings.size();
+        int[] documentIds = new int[size];
+        int[] frequencies = new int[size];
+        for (int i = 0; i < size; i++) {
+            SerializablePosting serPosting = serPostings.get(i);
+            documentIds[i] = serPosting.getDocumentId();
+            frequencies[i] = serPosting.getFrequency();
+            if (i > 0 && documentIds[i] <= documentIds[i - 1]) {
+                PostingList postingList = new PostingList();
+                for (SerializablePosting posting : serPostings) {
+                    postingList.addPosting(posting.getDocumentId(), posting.getFrequency());
+                }
+                return postingList;
+            }
+        }
+        return new PostingList(documentIds, frequencies, size);
+    }
+    
+    /**
+     * Serializza l'elenco dei documenti su file nel formato a blocchi compressi
+     * {@link DocumentStore}.
      * 
      * @param documents La lista dei documenti
      * @param filePath Il percorso del file di output
      * @throws IOException Se si verifica un errore di I/O
      */
     public static void serializeDocuments(List<Document> documents, String filePath) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            List<SerializableDocument> serializableDocuments = new ArrayList<>();
-            
-            for (Document doc : documents) {
-                serializableDocuments.add(new SerializableDocument(
-                        doc.getId(),
-                        doc.getName(),
-                        doc.getContent()));
-            }
-            
-            oos.writeObject(serializableDocuments);
-        }
+        DocumentStore.write(documents, filePath);
     }
     
     /**
-     * Deserializza l'elenco dei documenti da file.
+     * Deserializza l'elenco dei documenti da file. I file a blocchi compressi vengono aperti
+     * con {@link DocumentStore#open(String)} e i documenti decompressi solo quando vengono
+     * letti; quelli salvati con la serializzazione Java delle versioni precedenti restano
+     * leggibili.
      * 
      * @param filePath Il percorso del file da cui deserializzare
      * @return La lista dei documenti deserializzati
@@ -125,9 +142,13 @@ public class IndexSerializer {
      */
     @SuppressWarnings("unchecked")
     public static List<Document> deserializeDocuments(String filePath) throws IOException, ClassNotFoundException {
+        if (DocumentStore.isDocumentStore(filePath)) {
+            return DocumentStore.open(filePath);
+        }
+        
         List<Document> documents = new ArrayList<>();
         
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
             List<SerializableDocument> serDocs = (List<SerializableDocument>) ois.readObject();
             
             for (SerializableDocument serDoc : serDocs) {
@@ -142,17 +163,16 @@ public class IndexSerializer {
     }
     
     /**
-     * Classe per la serializzazione di un indice.
+     * Classe per la serializzazione di un indice nel formato precedente, usata solo in lettura.
      */
     private static class SerializableIndex implements Serializable {
         private static final long serialVersionUID = 1L;
         private Map<String, SerializableTerm> terms;
         private Map<String, List<SerializablePosting>> postings;
-        
-        public SerializableIndex(Map<String, SerializableTerm> terms, Map<String, List<SerializablePosting>> postings) {
-            this.terms = terms;
-            this.postings = postings;
-        }
+        private long[] liveDocs;
+        private float[] documentNorms;
+        private int[] documentLengths;
+        private SerializableStatistics statistics;
         
         public Map<String, SerializableTerm> getTerms() {
             return terms;
@@ -161,6 +181,47 @@ public class IndexSerializer {
         public Map<String, List<SerializablePosting>> getPostings() {
             return postings;
         }
+        
+        public long[] getLiveDocs() {
+            return liveDocs;
+        }
+        
+        public float[] getDocumentNorms() {
+            return documentNorms;
+        }
+        
+        public int[] getDocumentLengths() {
+            return documentLengths;
+        }
+        
+        public SerializableStatistics getStatistics() {
+            return statistics;
+        }
+    }
+    
+    /**
+     * Classe per la serializzazione delle statistiche della collezione.
+     */
+    private static class SerializableStatistics implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private int capacity;
+        private List<SerializableTerm> topTerms;
+        private long totalTokens;
+        private long[] growthTokens;
+        private int[] growthVocabulary;
+        private long sampleInterval;
+        
+        public CollectionStatistics toCollectionStatistics() {
+            List<Term> terms = new ArrayList<>();
+            for (SerializableTerm serTerm : topTerms) {
+                Term term = new Term(serTerm.getText());
+                term.setDocumentFrequency(serTerm.getDocumentFrequency());
+                term.setCollectionFrequency(serTerm.getCollectionFrequency());
+                terms.add(term);
+            }
+            return new CollectionStatistics(capacity, terms, totalTokens, growthTokens, growthVocabulary,
+                    sampleInterval);
+        }
     }
     
     /**
@@ -172,12 +233,6 @@ public class IndexSerializer {
         private int documentFrequency;
         private int collectionFrequency;
         
-        public SerializableTerm(String text, int documentFrequency, int collectionFrequency) {
-            this.text = text;
-            this.documentFrequency = documentFrequency;
-            this.collectionFrequency = collectionFrequency;
-        }
-        
         public String getText() {
             return text;
         }
@@ -199,11 +254,6 @@ public class IndexSerializer {
         private int documentId;
         private int frequency;
         
-        public SerializablePosting(int documentId, int frequency) {
-            this.documentId = documentId;
-            this.frequency = frequency;
-        }
-        
         public int getDocumentId() {
             return documentId;
         }
@@ -214,7 +264,7 @@ public class IndexSerializer {
     }
     
     /**
-     * Classe per la serializzazione di un documento.
+     * Classe per la serializzazione di un documento nel formato precedente, usata solo in lettura.
      */
     private static class SerializableDocument implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -222,12 +272,6 @@ public class IndexSerializer {
         private String name;
         private String content;
         
-        public SerializableDocument(int id, String name, String content) {
-            this.id = id;
-            this.name = name;
-            this.content = content;
-        }
-        
         public int getId() {
             return id;
         }
@@ -0,0 +1,262 @@
+package ir.util;
+
+import ir.model.Dictionary;
+import ir.model.FrozenDictionary;
+import ir.model.PostingList;
+import ir.model.PostingListCache;
+import ir.search.QueryLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Riscaldamento di un indice aperto con {@link BinaryIndexFormat#open(String)}, eseguito
+ * in un thread in background dopo l'avvio. Prima vengono caricate nella cache delle pagine
+ * le sezioni del dizionario, poi vengono lette le liste di posting dei termini più cercati
+ * secondo le statistiche delle query e, fino al numero di termini configurato, di quelli
+ * con la frequenza di documento più alta. Se il dizionario ha una {@link PostingListCache}
+ * attiva, le liste dei termini più frequenti vi vengono prima bloccate e quelle lette
+ * restano in cache già decodificate. Leggere una lista carica e verifica l'intera
+ * sezione di posting che la contiene, quindi anche i termini vicini beneficiano del
+ * riscaldamento. Le query eseguite nel frattempo restano corrette, solo più lente.
+ *
+ * Il riscaldamento si ferma appena il thread viene interrotto, tra una lista e l'altra e
+ * durante il caricamento delle sezioni; {@link #stop(Thread)} lo interrompe e ne attende
+ * la fine, ad esempio prima di eliminare i file dell'indice.
+ */
+public class IndexWarmer implements Runnable {
+    /**
+     * Numero massimo predefinito di liste di posting lette.
+     */
+    public static final int DEFAULT_MAX_TERMS = 1000;
+
+    /**
+     * Numero massimo predefinito di liste di posting bloccate nella cache.
+     */
+    public static final int DEFAULT_PINNED_TERMS = 64;
+
+    private final Dictionary dictionary;
+    private final String indexPath;
+    private QueryLog queryLog;
+    private int maxTerms;
+    private int pinnedTerms;
+    private boolean preloadSections;
+    private volatile boolean finished;
+    private volatile int warmedTerms;
+    private volatile int pinnedCount;
+    private volatile long preloadedBytes;
+    private volatile long elapsedNanos;
+    private volatile Exception failure;
+
+    /**
+     * Costruttore per un nuovo riscaldamento.
+     *
+     * @param dictionary Il dizionario aperto dal file
+     * @param indexPath Il percorso del file dell'indice, oppure null per non caricarne le sezioni
+     */
+    public IndexWarmer(Dictionary dictionary, String indexPath) {
+        this.dictionary = dictionary;
+        this.indexPath = indexPath;
+        this.maxTerms = DEFAULT_MAX_TERMS;
+        this.pinnedTerms = DEFAULT_PINNED_TERMS;
+        this.preloadSections = true;
+    }
+
+    /**
+     * Imposta le statistiche delle query da cui scegliere i termini da riscaldare per primi.
+     *
+     * @param queryLog Le statistiche delle query, oppure null per usare solo le frequenze di documento
+     */
+    public void setQueryLog(QueryLog queryLog) {
+        this.queryLog = queryLog;
+    }
+
+    /**
+     * Imposta il numero massimo di liste di posting lette.
+     *
+     * @param maxTerms Il numero massimo di termini, 0 per caricare solo le sezioni del dizionario
+     * @throws IllegalArgumentException Se il numero è negativo
+     */
+    public void setMaxTerms(int maxTerms) {
+        if (maxTerms < 0) {
+            throw new IllegalArgumentException("Il numero di termini da riscaldare non può essere negativo: " + maxTerms);
+        }
+        this.maxTerms = maxTerms;
+    }
+
+    /**
+     * Imposta il numero massimo di liste di posting, quelle con la frequenza di documento
+     * più alta, da bloccare nella {@link PostingListCache} del dizionario se è attiva.
+     *
+     * @param pinnedTerms Il numero massimo di termini, 0 per non bloccarne nessuno
+     * @throws IllegalArgumentException Se il numero è negativo
+     */
+    public void setPinnedTerms(int pinnedTerms) {
+        if (pinnedTerms < 0) {
+            throw new IllegalArgumentException("Il numero di termini da bloccare non può essere negativo: " + pinnedTerms);
+        }
+        this.pinnedTerms = pinnedTerms;
+    }
+
+    /**
+     * Imposta se caricare le sezioni del dizionario nella cache delle pagine.
+     *
+     * @param preloadSections true per caricare le sezioni, false altrimenti
+     */
+    public void setPreloadSections(boolean preloadSections) {
+        this.preloadSections = preloadSections;
+    }
+
+    /**
+     * Avvia il riscaldamento in un thread daemon a priorità minima.
+     *
+     * @return Il thread avviato
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "index-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Interrompe un riscaldamento avviato con {@link #start()} e ne attende la fine. Al
+     * ritorno il thread non legge più il file dell'indice.
+     *
+     * @param thread Il thread restituito da {@link #start()}
+     */
+    public static void stop(Thread thread) {
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Esegue il riscaldamento nel thread corrente. Un errore di lettura interrompe il
+     * riscaldamento senza propagarsi ed è disponibile con {@link #getFailure()}.
+     */
+    @Override
+    public void run() {
+        long startTime = System.nanoTime();
+        try {
+            if (preloadSections && indexPath != null) {
+                preloadedBytes = BinaryIndexFormat.preload(indexPath);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            pinFrequentTerms();
+            int warmed = 0;
+            for (String term : selectTerms()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                PostingList postingList = dictionary.getPostingList(term);
+                if (postingList != null) {
+                    warmedTerms = ++warmed;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Un'interruzione durante la lettura chiude il canale: non è un errore dell'indice
+            if (!Thread.currentThread().isInterrupted()) {
+                failure = e;
+            }
+        } finally {
+            elapsedNanos = System.nanoTime() - startTime;
+            finished = true;
+        }
+    }
+
+    /**
+     * Blocca nella cache delle liste decodificate i termini più frequenti, finché c'è spazio.
+     */
+    private void pinFrequentTerms() {
+        FrozenDictionary vocabulary = dictionary.getFrozenDictionary();
+        PostingListCache cache = vocabulary != null ? vocabulary.getPostingCache() : null;
+        if (cache == null) {
+            return;
+        }
+        int pinned = 0;
+        for (int termId : vocabulary.getMostFrequentTerms(pinnedTerms)) {
+            if (Thread.currentThread().isInterrupted() || !cache.pin(termId)) {
+                break;
+            }
+            pinnedCount = ++pinned;
+        }
+    }
+
+    /**
+     * Sceglie i termini da riscaldare: prima i più cercati presenti nel dizionario, poi
+     * quelli con la frequenza di documento più alta.
+     */
+    private List<String> selectTerms() {
+        Set<String> terms = new LinkedHashSet<>();
+        if (queryLog != null) {
+            for (String term : queryLog.getTopTerms(maxTerms)) {
+                if (dictionary.containsTerm(term)) {
+                    terms.add(term);
+                }
+            }
+        }
+        if (maxTerms > 0 && terms.size() < maxTerms) {
+            FrozenDictionary vocabulary = dictionary.toFrozenDictionary();
+            for (int termId : vocabulary.getMostFrequentTerms(maxTerms)) {
+                if (terms.size() == maxTerms) {
+                    break;
+                }
+                terms.add(vocabulary.getText(termId));
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * Indica se il riscaldamento è terminato, anche per un errore.
+     *
+     * @return true se il riscaldamento è terminato
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getWarmedTerms() {
+        return warmedTerms;
+    }
+
+    public int getPinnedTerms() {
+        return pinnedCount;
+    }
+
+    public long getPreloadedBytes() {
+        return preloadedBytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public Exception getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IndexWarmer{termini=%d, bloccati=%d, byte precaricati=%d, tempo=%.1f ms%s}",
+                warmedTerms, pinnedCount, preloadedBytes, elapsedNanos / 1e6,
+                failure != null ? ", errore=" + failure.getMessage() : "");
+    }
+}